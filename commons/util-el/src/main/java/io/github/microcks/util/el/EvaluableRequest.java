@@ -28,6 +28,7 @@ import java.util.Map;
 public class EvaluableRequest {
 
    private String body;
+   private ParsedBody parsedBody;
    private String[] path;
    private Map<String, String> params;
    private Map<String, String> headers;
@@ -42,6 +43,26 @@ public class EvaluableRequest {
    }
    public void setBody(String body) {
       this.body = body;
+      this.parsedBody = null;
+   }
+
+   /**
+    * Get the lazily parsed form of body. It is created on first call if not shared using {@code setParsedBody()}.
+    * @return The parsed body of request
+    */
+   public ParsedBody getParsedBody() {
+      if (parsedBody == null) {
+         parsedBody = new ParsedBody(body);
+      }
+      return parsedBody;
+   }
+   /**
+    * Share an already parsed body with this request (body is also updated).
+    * @param parsedBody The parsed body of request
+    */
+   public void setParsedBody(ParsedBody parsedBody) {
+      this.body = parsedBody.getText();
+      this.parsedBody = parsedBody;
    }
 
    public String[] getPath() {
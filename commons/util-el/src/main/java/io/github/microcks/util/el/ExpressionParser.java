@@ -45,7 +45,8 @@ public class ExpressionParser {
 
    /**
     * Navigate the template for finding expressions that can be evaluated into this template. Expressions
-    * are returned into an ordered array.
+    * are returned into an ordered array. Variable references are resolved at evaluation time so that the returned
+    * expressions can be evaluated many times against different contexts having the same registered functions.
     * @param template The string to browse
     * @param context The EvaluationContext that may contains variable or function references
     * @param expressionPrefix The prefix starting new expression (ex: "{{")
@@ -130,15 +131,10 @@ public class ExpressionParser {
       if (hasVariable && (!hasArgs || varBeforeArgs)) {
          log.debug("Found a variable reference expression " + expressionString);
          String variableName = expressionString.substring(0, expressionString.indexOf('.'));
-         Object variable = context.lookupVariable(variableName);
          String pathExpression = expressionString.substring(expressionString.indexOf('.') + 1);
 
-         if (variable != null) {
-            return new VariableReferenceExpression(variable, pathExpression);
-         }
-         log.warn("Variable with name " + variableName + " cannot be found into EvaluationContext. " +
-               "Returning empty literal expression");
-         return new LiteralExpression("");
+         // Variable is resolved at evaluation time so that parsed expressions can be reused.
+         return VariableReferenceExpression.fromContextVariable(variableName, pathExpression);
       }
       
       // Check if it's a ELFunctionExpression
@@ -0,0 +1,154 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.util.el;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * A request body (or any textual payload) that is parsed lazily and at most once, as JSON tree or XML DOM, on
+ * first need. It is intended to be created per request and shared between the different components that have to
+ * inspect the payload (dispatchers, template expressions, validators...) so that each of them do not parse it again.
+ * Parsing failures are also remembered. This class is not thread-safe and parsed structures must be considered as
+ * read-only.
+ * @author laurent
+ */
+public class ParsedBody {
+
+   /** A simple logger for diagnostic messages. */
+   private static Logger log = LoggerFactory.getLogger(ParsedBody.class);
+
+   /** Jackson mapper is thread-safe once configured, it can be shared. */
+   private static final ObjectMapper MAPPER = new ObjectMapper();
+
+   private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDER = ThreadLocal.withInitial(() -> {
+      DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+      factory.setNamespaceAware(true);
+      try {
+         return factory.newDocumentBuilder();
+      } catch (ParserConfigurationException pce) {
+         throw new IllegalStateException("Cannot create a namespace aware DocumentBuilder", pce);
+      }
+   });
+
+   /** Stateless handler rethrowing fatal errors without printing them on console. */
+   private static final DefaultHandler ERROR_HANDLER = new DefaultHandler();
+
+   private final String text;
+
+   private JsonNode jsonNode;
+   private IOException jsonException;
+
+   private Document document;
+   private Exception xmlException;
+
+   /**
+    * Wrap a textual payload for lazy parsing.
+    * @param text The payload (may be null)
+    */
+   public ParsedBody(String text) {
+      this.text = text;
+   }
+
+   public String getText() {
+      return text;
+   }
+
+   /** @return Whether payload looks like a JSON object or array (without parsing it) */
+   public boolean isJson() {
+      if (text != null) {
+         String trimmed = text.trim();
+         return trimmed.startsWith("{") || trimmed.startsWith("[");
+      }
+      return false;
+   }
+
+   /** @return Whether payload looks like an XML document (without parsing it) */
+   public boolean isXml() {
+      return text != null && text.trim().startsWith("<");
+   }
+
+   /** @return Whether payload has already been successfully parsed as a JSON tree */
+   public boolean isJsonParsed() {
+      return jsonNode != null;
+   }
+
+   /**
+    * Get payload as a JSON tree, parsing it on first call.
+    * @return The root node of JSON tree
+    * @throws IOException if payload is null or cannot be parsed as JSON
+    */
+   public JsonNode getJsonNode() throws IOException {
+      if (jsonNode == null && jsonException == null) {
+         if (text == null) {
+            jsonException = new IOException("Cannot parse a null payload as JSON");
+         } else {
+            try {
+               jsonNode = MAPPER.readTree(text);
+            } catch (IOException ioe) {
+               log.debug("Payload cannot be parsed as JSON", ioe);
+               jsonException = ioe;
+            }
+         }
+      }
+      if (jsonException != null) {
+         throw jsonException;
+      }
+      return jsonNode;
+   }
+
+   /**
+    * Get payload as a namespace aware XML DOM, parsing it on first call.
+    * @return The DOM document
+    * @throws Exception if payload is null or cannot be parsed as XML
+    */
+   public Document getDocument() throws Exception {
+      if (document == null && xmlException == null) {
+         if (text == null) {
+            xmlException = new IOException("Cannot parse a null payload as XML");
+         } else {
+            DocumentBuilder builder = DOCUMENT_BUILDER.get();
+            builder.setErrorHandler(ERROR_HANDLER);
+            try {
+               document = builder.parse(new InputSource(new StringReader(text)));
+            } catch (Exception e) {
+               log.debug("Payload cannot be parsed as XML", e);
+               xmlException = e;
+            } finally {
+               builder.reset();
+            }
+         }
+      }
+      if (xmlException != null) {
+         throw xmlException;
+      }
+      return document;
+   }
+}
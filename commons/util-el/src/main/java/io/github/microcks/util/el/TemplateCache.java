@@ -0,0 +1,100 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.util.el;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * A bounded cache of parsed templates: the ordered {@code Expression} array of a string template. Entries are
+ * keyed by template content and evicted in least recently used order. As parsed expressions hold function
+ * instances, a cache should only be shared between {@code TemplateEngine} having the same registered functions.
+ * @author laurent
+ */
+public class TemplateCache {
+
+   public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+   private final Map<String, ParsedTemplate> templates;
+
+   /**
+    * Create a new cache.
+    * @param maxEntries The maximum number of parsed templates to keep
+    */
+   public TemplateCache(int maxEntries) {
+      this.templates = new LinkedHashMap<String, ParsedTemplate>(64, 0.75f, true) {
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<String, ParsedTemplate> eldest) {
+            return size() > maxEntries;
+         }
+      };
+   }
+
+   /**
+    * Get the parsed expressions of a template, parsing it if not already in cache.
+    * @param template The string template
+    * @param expressionPrefix The prefix starting expressions into template
+    * @param expressionSuffix The suffix closing expressions into template
+    * @param parser The supplier of parsed expressions if not in cache
+    * @return The array of expressions found into template
+    */
+   public Expression[] getExpressions(String template, String expressionPrefix, String expressionSuffix,
+                                      Supplier<Expression[]> parser) {
+      synchronized (templates) {
+         ParsedTemplate parsed = templates.get(template);
+         if (parsed != null && parsed.expressionPrefix.equals(expressionPrefix)
+               && parsed.expressionSuffix.equals(expressionSuffix)) {
+            return parsed.expressions;
+         }
+      }
+      // Parse outside of lock, concurrent parsing of the same template is harmless.
+      Expression[] expressions = parser.get();
+      synchronized (templates) {
+         templates.put(template, new ParsedTemplate(expressionPrefix, expressionSuffix, expressions));
+      }
+      return expressions;
+   }
+
+   /** @return The number of parsed templates in cache */
+   public int size() {
+      synchronized (templates) {
+         return templates.size();
+      }
+   }
+
+   /** Remove all parsed templates from cache. */
+   public void clear() {
+      synchronized (templates) {
+         templates.clear();
+      }
+   }
+
+   private static class ParsedTemplate {
+      private final String expressionPrefix;
+      private final String expressionSuffix;
+      private final Expression[] expressions;
+
+      private ParsedTemplate(String expressionPrefix, String expressionSuffix, Expression[] expressions) {
+         this.expressionPrefix = expressionPrefix;
+         this.expressionSuffix = expressionSuffix;
+         this.expressions = expressions;
+      }
+   }
+}
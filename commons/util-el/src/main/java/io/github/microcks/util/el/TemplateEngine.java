@@ -35,6 +35,8 @@ public class TemplateEngine {
 
    private EvaluationContext context = new EvaluationContext();
 
+   private TemplateCache templateCache;
+
    protected TemplateEngine() {}
 
    public String getExpressionPrefix() {
@@ -55,6 +57,17 @@ public class TemplateEngine {
       return context;
    }
 
+   public TemplateCache getTemplateCache() {
+      return templateCache;
+   }
+   /**
+    * Set a cache for reusing parsed templates between evaluations. Null means templates are parsed on each evaluation.
+    * @param templateCache The cache of parsed templates (should be shared only with engines having same functions)
+    */
+   public void setTemplateCache(TemplateCache templateCache) {
+      this.templateCache = templateCache;
+   }
+
    /**
     * Evaluate the given string template, finding expressions within and evaluating them.
     * @param template The string template to render.
@@ -64,7 +77,13 @@ public class TemplateEngine {
       StringBuilder builder = new StringBuilder();
 
       // Just delegate parsing stuffs to Expression parser to retrieve all the expressions ordered.
-      Expression[] expressions = ExpressionParser.parseExpressions(template, context, expressionPrefix, expressionSuffix);
+      Expression[] expressions;
+      if (templateCache != null) {
+         expressions = templateCache.getExpressions(template, expressionPrefix, expressionSuffix,
+               () -> ExpressionParser.parseExpressions(template, context, expressionPrefix, expressionSuffix));
+      } else {
+         expressions = ExpressionParser.parseExpressions(template, context, expressionPrefix, expressionSuffix);
+      }
 
       // Now just go through expressions and evaluate them.
       for (Expression expression : expressions) {
@@ -26,12 +26,26 @@ import io.github.microcks.util.el.function.*;
  */
 public class TemplateEngineFactory {
 
+   /** Parsed templates shared by engines having only the built-in functions. */
+   private static final TemplateCache BUILT_IN_TEMPLATE_CACHE = new TemplateCache(TemplateCache.DEFAULT_MAX_ENTRIES);
+
    /**
     * Helper method for getting a {@code TemplateEngine} initialized with built-in functions.
     * @return A new TemplateEngine instance.
     */
    public static TemplateEngine getTemplateEngine() {
+      return getTemplateEngine(BUILT_IN_TEMPLATE_CACHE);
+   }
+
+   /**
+    * Helper method for getting a {@code TemplateEngine} initialized with built-in functions and using a cache
+    * of parsed templates. If you're going to register other functions on engine, provide a specific cache or null.
+    * @param templateCache The cache of parsed templates to use (may be null for no caching)
+    * @return A new TemplateEngine instance.
+    */
+   public static TemplateEngine getTemplateEngine(TemplateCache templateCache) {
       TemplateEngine engine = new TemplateEngine();
+      engine.setTemplateCache(templateCache);
 
       // Register some built-in functions into evaluation context.
       engine.getContext().registerFunction("now", NowELFunction.class);
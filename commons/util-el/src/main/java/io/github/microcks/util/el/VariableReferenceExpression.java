@@ -18,21 +18,18 @@
  */
 package io.github.microcks.util.el;
 
-import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
-import java.io.StringReader;
 import java.lang.reflect.Method;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xml.sax.InputSource;
+import org.w3c.dom.Document;
 
 /**
  * An implementation of {@code Expression} that deals with variable references. Such expression is able to evaluate
@@ -52,7 +49,12 @@ public class VariableReferenceExpression implements Expression {
 
    private static final String[] PROPERTY_NAME_DELIMITERS = {"/", "["};
 
+   /** Compiled XPath expressions of templates, confined to evaluating threads. */
+   private static final XPathExpressionCache XPATH_CACHE =
+         new XPathExpressionCache(XPathExpressionCache.DEFAULT_MAX_ENTRIES_PER_THREAD);
+
    private Object variable;
+   private String variableName;
    private String pathExpression;
 
    /**
@@ -65,6 +67,19 @@ public class VariableReferenceExpression implements Expression {
       this.pathExpression = pathExpression;
    }
 
+   /**
+    * Create a new expression referencing a variable of the evaluation context by its name. Variable is
+    * looked up at evaluation time so that expression can be evaluated against different contexts.
+    * @param variableName The name of variable into EvaluationContext
+    * @param pathExpression Path expression to get value from root object (property name + path sub-query)
+    * @return A new expression referencing a context variable
+    */
+   public static VariableReferenceExpression fromContextVariable(String variableName, String pathExpression) {
+      VariableReferenceExpression expression = new VariableReferenceExpression(null, pathExpression);
+      expression.variableName = variableName;
+      return expression;
+   }
+
    public Object getVariable() {
       return variable;
    }
@@ -72,6 +87,10 @@ public class VariableReferenceExpression implements Expression {
       this.variable = variable;
    }
 
+   public String getVariableName() {
+      return variableName;
+   }
+
    public String getPathExpression() {
       return pathExpression;
    }
@@ -81,6 +100,16 @@ public class VariableReferenceExpression implements Expression {
 
    @Override
    public String getValue(EvaluationContext context) {
+      Object variable = this.variable;
+      if (variable == null && variableName != null) {
+         variable = context.lookupVariable(variableName);
+         if (variable == null) {
+            log.warn("Variable with name " + variableName + " cannot be found into EvaluationContext. " +
+                  "Returning empty value");
+            return "";
+         }
+      }
+
       String propertyName = pathExpression;
       String propertyPath = null;
       int delimiterIndex = -1;
@@ -105,13 +134,18 @@ public class VariableReferenceExpression implements Expression {
       if (propertyPath != null) {
          if (variableValue.getClass().equals(String.class)) {
             if (propertyPath.startsWith("/")) {
-               // This is a JSON Pointer or XPath expression to apply.
-               String variableString = String.valueOf(variableValue);
+               // This is a JSON Pointer or XPath expression to apply. Reuse request parsed body if possible.
+               ParsedBody parsedBody = null;
+               if (variable instanceof EvaluableRequest && "body".equals(propertyName)) {
+                  parsedBody = ((EvaluableRequest) variable).getParsedBody();
+               } else {
+                  parsedBody = new ParsedBody(String.valueOf(variableValue));
+               }
 
-               if (variableString.trim().startsWith("{")) {
-                  variableValue = getJsonPointerValue(variableString, propertyPath);
-               } else if (variableString.trim().startsWith("<")) {
-                  variableValue = getXPathValue(variableString, propertyPath);
+               if (parsedBody.getText().trim().startsWith("{")) {
+                  variableValue = getJsonPointerValue(parsedBody, propertyPath);
+               } else if (parsedBody.isXml()) {
+                  variableValue = getXPathValue(parsedBody, propertyPath);
                } else {
                   log.warn("Got a path query expression but content seems not to be JSON nor XML...");
                   variableValue = null;
@@ -170,12 +204,11 @@ public class VariableReferenceExpression implements Expression {
    }
 
    /** Extract a value from JSON using a JSON Pointer expression. */
-   private static String getJsonPointerValue(String jsonText, String jsonPointerExp) {
-      // Parse json text ang get root node.
+   private static String getJsonPointerValue(ParsedBody parsedBody, String jsonPointerExp) {
+      // Get parsed json root node.
       JsonNode rootNode;
       try {
-         ObjectMapper mapper = new ObjectMapper();
-         rootNode = mapper.readTree(new StringReader(jsonText));
+         rootNode = parsedBody.getJsonNode();
       } catch (Exception e) {
          log.warn("Exception while parsing Json text", e);
          return null;
@@ -187,11 +220,19 @@ public class VariableReferenceExpression implements Expression {
    }
 
    /** Extract a value from XML using a XPath expression. */
-   private static String getXPathValue(String xmlText, String xPathExp) {
-      XPath xpath = XPathFactory.newInstance().newXPath();
+   private static String getXPathValue(ParsedBody parsedBody, String xPathExp) {
+      Document document;
+      try {
+         document = parsedBody.getDocument();
+      } catch (Exception e) {
+         log.warn("Exception while parsing Xml text", e);
+         return null;
+      }
+
       try {
-         XPathExpression expression = xpath.compile(xPathExp);
-         return expression.evaluate(new InputSource(new StringReader(xmlText)));
+         XPathExpression expression = XPATH_CACHE.get(xPathExp,
+               exp -> XPathFactory.newInstance().newXPath().compile(exp));
+         return expression.evaluate(document);
       } catch (XPathExpressionException e) {
          log.warn("Exception while compiling/evaluating XPath", e);
          return null;
@@ -0,0 +1,78 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.util.el;
+
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of compiled XPath expressions indexed by their source (an expression or any rules string expressions are
+ * built from). As {@code XPathExpression} are not thread-safe, compiled expressions are confined to the thread that
+ * compiled them: each thread has its own bounded map, evicted in least recently used order.
+ * @author laurent
+ */
+public class XPathExpressionCache {
+
+   public static final int DEFAULT_MAX_ENTRIES_PER_THREAD = 256;
+
+   private final ThreadLocal<Map<String, XPathExpression>> expressions;
+
+   /**
+    * Create a new cache.
+    * @param maxEntriesPerThread The maximum number of compiled expressions to keep for each thread
+    */
+   public XPathExpressionCache(int maxEntriesPerThread) {
+      this.expressions = ThreadLocal.withInitial(() -> new LinkedHashMap<String, XPathExpression>(16, 0.75f, true) {
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<String, XPathExpression> eldest) {
+            return size() > maxEntriesPerThread;
+         }
+      });
+   }
+
+   /**
+    * Get the compiled expression for a source, compiling it if not already in cache for current thread.
+    * @param source The source of XPath expression
+    * @param compiler The compiler to use if expression is not in cache
+    * @return The compiled expression, only usable by current thread
+    * @throws XPathExpressionException if expression cannot be compiled
+    */
+   public XPathExpression get(String source, XPathCompiler compiler) throws XPathExpressionException {
+      Map<String, XPathExpression> threadExpressions = expressions.get();
+      XPathExpression expression = threadExpressions.get(source);
+      if (expression == null) {
+         expression = compiler.compile(source);
+         threadExpressions.put(source, expression);
+      }
+      return expression;
+   }
+
+   /** @return The number of compiled expressions in cache for current thread */
+   public int size() {
+      return expressions.get().size();
+   }
+
+   /** A compiler of XPath expression from a source. */
+   @FunctionalInterface
+   public interface XPathCompiler {
+      XPathExpression compile(String source) throws XPathExpressionException;
+   }
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.util.el;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * This is a test case for ParsedBody class.
+ * @author laurent
+ */
+public class ParsedBodyTest {
+
+   @Test
+   public void testParseOnce() throws Exception {
+      ParsedBody parsedBody = new ParsedBody("{\"name\": \"Laurent\"}");
+      assertTrue(parsedBody.isJson());
+      assertFalse(parsedBody.isXml());
+      assertSame(parsedBody.getJsonNode(), parsedBody.getJsonNode());
+      assertEquals("Laurent", parsedBody.getJsonNode().at("/name").asText());
+
+      parsedBody = new ParsedBody("<ns:request xmlns:ns=\"http://example.com/ns\"><ns:name>Laurent</ns:name></ns:request>");
+      assertTrue(parsedBody.isXml());
+      assertSame(parsedBody.getDocument(), parsedBody.getDocument());
+      assertEquals("http://example.com/ns", parsedBody.getDocument().getDocumentElement().getNamespaceURI());
+   }
+
+   @Test
+   public void testParsingFailureIsRemembered() {
+      ParsedBody parsedBody = new ParsedBody("not json");
+      IOException first = null;
+      try {
+         parsedBody.getJsonNode();
+         fail("IOException should have been raised");
+      } catch (IOException ioe) {
+         first = ioe;
+      }
+      try {
+         parsedBody.getJsonNode();
+         fail("IOException should have been raised");
+      } catch (IOException ioe) {
+         assertSame(first, ioe);
+      }
+   }
+
+   @Test
+   public void testSharedWithEvaluableRequest() {
+      ParsedBody parsedBody = new ParsedBody("{\"name\": \"Laurent\"}");
+      EvaluableRequest request = new EvaluableRequest(null, null);
+      request.setParsedBody(parsedBody);
+      assertEquals("{\"name\": \"Laurent\"}", request.getBody());
+      assertSame(parsedBody, request.getParsedBody());
+
+      TemplateEngine engine = TemplateEngineFactory.getTemplateEngine();
+      engine.getContext().setVariable("request", request);
+      assertEquals("Hello Laurent", engine.getValue("Hello {{ request.body/name }}"));
+   }
+}
@@ -86,4 +86,28 @@ public class TemplateEngineTest {
       assertTrue(content.startsWith("{\"signedAt\": \"1"));
       assertTrue(postmanContent.startsWith("{\"signedAt\": \"1"));
    }
+
+   @Test
+   public void testCachedTemplate() {
+      String template = "Hello {{ request.body/name }}, your id is {{ uuid() }}";
+      TemplateCache cache = new TemplateCache(10);
+
+      TemplateEngine engine = TemplateEngineFactory.getTemplateEngine(cache);
+      engine.getContext().setVariable("request", new EvaluableRequest("{\"name\": \"Laurent\"}", null));
+      String result = engine.getValue(template);
+      assertTrue(result.startsWith("Hello Laurent, your id is "));
+      assertEquals(1, cache.size());
+
+      // Parsed template is reused by another engine with another request.
+      engine = TemplateEngineFactory.getTemplateEngine(cache);
+      engine.getContext().setVariable("request", new EvaluableRequest("{\"name\": \"Yacine\"}", null));
+      result = engine.getValue(template);
+      assertTrue(result.startsWith("Hello Yacine, your id is "));
+      assertEquals(1, cache.size());
+
+      // Without request variable, reference is evaluated as empty.
+      engine = TemplateEngineFactory.getTemplateEngine(cache);
+      result = engine.getValue(template);
+      assertTrue(result.startsWith("Hello , your id is "));
+   }
 }
@@ -0,0 +1,67 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.util.el;
+
+import org.junit.Test;
+
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathFactory;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * This is a test case for XPathExpressionCache class.
+ * @author laurent
+ */
+public class XPathExpressionCacheTest {
+
+   @Test
+   public void testThreadConfinedExpressions() throws Exception {
+      XPathExpressionCache cache = new XPathExpressionCache(2);
+      AtomicInteger compilations = new AtomicInteger();
+      XPathExpressionCache.XPathCompiler compiler = exp -> {
+         compilations.incrementAndGet();
+         return XPathFactory.newInstance().newXPath().compile(exp);
+      };
+
+      XPathExpression expression = cache.get("//name", compiler);
+      assertSame(expression, cache.get("//name", compiler));
+      assertEquals(1, compilations.get());
+
+      // Another thread gets its own compiled expression.
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      try {
+         Future<XPathExpression> other = executor.submit(() -> cache.get("//name", compiler));
+         assertNotSame(expression, other.get());
+         assertEquals(2, compilations.get());
+      } finally {
+         executor.shutdown();
+      }
+
+      // Least recently used expression is evicted.
+      cache.get("//age", compiler);
+      cache.get("//city", compiler);
+      assertEquals(2, cache.size());
+      assertNotSame(expression, cache.get("//name", compiler));
+   }
+}
@@ -0,0 +1,175 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * A simple in-memory cache bounded by the total weight of its values and evicting least recently used
+ * entries first. Values are loaded outside of the cache lock; a value loaded concurrently to an invalidation
+ * is returned to caller but not kept so that invalidation always wins.
+ * @param <K> The type of cache keys
+ * @param <V> The type of cache values
+ * @author laurent
+ */
+public class BoundedCache<K, V> {
+
+   private final long maxWeight;
+   private final ToLongFunction<V> weigher;
+   private final LinkedHashMap<K, WeightedValue<V>> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+   private long weight = 0;
+   private long generation = 0;
+
+   private final LongAdder hitCount = new LongAdder();
+   private final LongAdder missCount = new LongAdder();
+   private final LongAdder putCount = new LongAdder();
+   private final LongAdder evictionCount = new LongAdder();
+
+   /**
+    * Create a new cache.
+    * @param maxWeight The maximum total weight of values in cache. 0 or negative means caching is disabled.
+    * @param weigher The function computing weight of a value (typically an approximation of its size in bytes)
+    */
+   public BoundedCache(long maxWeight, ToLongFunction<V> weigher) {
+      this.maxWeight = maxWeight;
+      this.weigher = weigher;
+   }
+
+   /**
+    * Get value associated to key, loading and caching it if absent.
+    * @param key The key of value to retrieve
+    * @param loader The function to use for loading value if not in cache
+    * @return The cached or freshly loaded value
+    */
+   public V get(K key, Function<? super K, ? extends V> loader) {
+      long loadGeneration;
+      synchronized (this) {
+         WeightedValue<V> cached = entries.get(key);
+         if (cached != null) {
+            hitCount.increment();
+            return cached.value;
+         }
+         loadGeneration = generation;
+      }
+      missCount.increment();
+      V value = loader.apply(key);
+      if (value != null && maxWeight > 0) {
+         put(key, value, loadGeneration);
+      }
+      return value;
+   }
+
+   /**
+    * Remove all entries whose key matches predicate.
+    * @param predicate The predicate on keys to invalidate
+    */
+   public void invalidateIf(Predicate<K> predicate) {
+      invalidateIf((key, value) -> predicate.test(key));
+   }
+
+   /**
+    * Remove all entries whose key and value match predicate.
+    * @param predicate The predicate on keys and values to invalidate
+    */
+   public synchronized void invalidateIf(BiPredicate<K, V> predicate) {
+      generation++;
+      Iterator<Map.Entry<K, WeightedValue<V>>> iterator = entries.entrySet().iterator();
+      while (iterator.hasNext()) {
+         Map.Entry<K, WeightedValue<V>> entry = iterator.next();
+         if (predicate.test(entry.getKey(), entry.getValue().value)) {
+            weight -= entry.getValue().weight;
+            iterator.remove();
+         }
+      }
+   }
+
+   /** Remove all entries of this cache. */
+   public synchronized void invalidateAll() {
+      generation++;
+      entries.clear();
+      weight = 0;
+   }
+
+   public synchronized long size() {
+      return entries.size();
+   }
+
+   public synchronized long weight() {
+      return weight;
+   }
+
+   public long getMaxWeight() {
+      return maxWeight;
+   }
+
+   public long hitCount() {
+      return hitCount.sum();
+   }
+
+   public long missCount() {
+      return missCount.sum();
+   }
+
+   public long putCount() {
+      return putCount.sum();
+   }
+
+   public long evictionCount() {
+      return evictionCount.sum();
+   }
+
+   private synchronized void put(K key, V value, long loadGeneration) {
+      long valueWeight = weigher.applyAsLong(value);
+      if (loadGeneration != generation || valueWeight > maxWeight) {
+         return;
+      }
+      WeightedValue<V> previous = entries.put(key, new WeightedValue<>(value, valueWeight));
+      if (previous != null) {
+         weight -= previous.weight;
+      }
+      weight += valueWeight;
+      putCount.increment();
+
+      // Evict least recently used entries until we fit into max weight.
+      Iterator<WeightedValue<V>> iterator = entries.values().iterator();
+      while (weight > maxWeight && iterator.hasNext()) {
+         weight -= iterator.next().weight;
+         iterator.remove();
+         evictionCount.increment();
+      }
+   }
+
+   private static class WeightedValue<V> {
+      private final V value;
+      private final long weight;
+
+      private WeightedValue(V value, long weight) {
+         this.value = value;
+         this.weight = weight;
+      }
+   }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.cache;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+
+/**
+ * Micrometer binder exposing the standard {@code cache.*} metrics of a BoundedCache, completed with
+ * its current and maximum weight.
+ * @author laurent
+ */
+public class BoundedCacheMetrics extends CacheMeterBinder {
+
+   private final BoundedCache<?, ?> cache;
+
+   /**
+    * Create a new binder for cache.
+    * @param cache The cache to expose metrics for
+    * @param cacheName The name of cache, used as the {@code cache} tag value
+    */
+   public BoundedCacheMetrics(BoundedCache<?, ?> cache, String cacheName) {
+      super(cache, cacheName, Tags.empty());
+      this.cache = cache;
+   }
+
+   @Override
+   protected Long size() {
+      return cache.size();
+   }
+
+   @Override
+   protected long hitCount() {
+      return cache.hitCount();
+   }
+
+   @Override
+   protected Long missCount() {
+      return cache.missCount();
+   }
+
+   @Override
+   protected Long evictionCount() {
+      return cache.evictionCount();
+   }
+
+   @Override
+   protected long putCount() {
+      return cache.putCount();
+   }
+
+   @Override
+   protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+      Gauge.builder("cache.weight", cache, BoundedCache::weight)
+            .tags(getTagsWithCacheName())
+            .description("The approximate weight in bytes of entries in cache")
+            .register(registry);
+      Gauge.builder("cache.max.weight", cache, BoundedCache::getMaxWeight)
+            .tags(getTagsWithCacheName())
+            .description("The maximum weight in bytes of entries in cache")
+            .register(registry);
+   }
+}
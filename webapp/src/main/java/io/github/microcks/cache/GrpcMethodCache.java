@@ -0,0 +1,187 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.cache;
+
+import io.github.microcks.domain.Operation;
+import io.github.microcks.domain.Resource;
+import io.github.microcks.domain.ResourceType;
+import io.github.microcks.domain.Service;
+import io.github.microcks.event.ServiceChangeEvent;
+import io.github.microcks.repository.ResourceRepository;
+import io.github.microcks.util.grpc.GrpcUtil;
+
+import com.google.protobuf.Descriptors;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+
+/**
+ * A cache of gRPC methods resolved by full method name: the mocked Service and Operation as well as the protobuf
+ * MethodDescriptor built from the binary descriptor stored at import time. Resolution is done on first call of a
+ * method so that next calls do not hit the repository nor rebuild descriptors. Methods of unknown Services or
+ * Operations are also remembered. A ServiceChangeEvent evicts the methods of the Service as well as the unknown
+ * ones (the event may be the creation of one of them). As ServiceCache also listens to these events, in no defined
+ * order, cached methods are checked against the Service currently held by ServiceCache before being returned.
+ * <p>
+ * Resolved methods are shared between calls and must be considered as read-only by callers.
+ * @author laurent
+ */
+@Component
+public class GrpcMethodCache implements ApplicationListener<ServiceChangeEvent> {
+
+   /** A simple logger for diagnostic messages. */
+   private static Logger log = LoggerFactory.getLogger(GrpcMethodCache.class);
+
+   @Autowired
+   private ServiceCache serviceCache;
+
+   @Autowired
+   private ResourceRepository resourceRepository;
+
+   @Autowired
+   private MeterRegistry meterRegistry;
+
+   @Value("${mocks.grpc-method-cache.max-entries:5000}")
+   private final Long maxEntries = 5000L;
+
+   private BoundedCache<String, GrpcMethod> cache;
+
+
+   @PostConstruct
+   public void initialize() {
+      log.info("Initializing gRPC methods cache with {} max entries", maxEntries);
+      cache = new BoundedCache<>(maxEntries, method -> 1L);
+      new BoundedCacheMetrics(cache, "grpc-methods").bindTo(meterRegistry);
+   }
+
+   /**
+    * Get a resolved gRPC method.
+    * @param fullMethodName The gRPC method full name (ex: io.github.microcks.grpc.hello.v1.HelloService/greeting)
+    * @return The resolved method, whose service, operation or descriptor may be null if not found
+    */
+   public GrpcMethod getMethod(String fullMethodName) {
+      GrpcMethod method = cache.get(fullMethodName, this::resolve);
+      if (method.getService() != serviceCache.getService(method.getServiceName(), method.getServiceVersion())) {
+         // ServiceCache may have received the ServiceChangeEvent after us and method was resolved from
+         // a stale Service in between: evict this method only and resolve it again from current Service.
+         GrpcMethod stale = method;
+         cache.invalidateIf((name, cached) -> cached == stale);
+         method = cache.get(fullMethodName, this::resolve);
+      }
+      if (method.getOperation() != null && method.getMethodDescriptor() == null) {
+         // Descriptor may be fixed without Service change, do not keep this failure.
+         cache.invalidateIf(fullMethodName::equals);
+      }
+      return method;
+   }
+
+   @Override
+   public void onApplicationEvent(ServiceChangeEvent event) {
+      log.debug("Received a ServiceChangeEvent on {}, evicting gRPC methods", event.getServiceId());
+      cache.invalidateIf((name, method) -> method.getService() == null
+            || event.getServiceId().equals(method.getService().getId()));
+   }
+
+   private GrpcMethod resolve(String fullMethodName) {
+      GrpcMethod method = new GrpcMethod(fullMethodName);
+      Service service = serviceCache.getService(method.getServiceName(), method.getServiceVersion());
+      if (service == null) {
+         return method;
+      }
+      method.service = service;
+      for (Operation operation : service.getOperations()) {
+         if (operation.getName().equals(method.getOperationName())) {
+            method.operation = operation;
+            break;
+         }
+      }
+      if (method.operation == null) {
+         return method;
+      }
+
+      // In order to inspect incoming byte array, we need the Protobuf binary descriptor that should
+      // have been processed while importing the .proto schema for the service.
+      List<Resource> resources = resourceRepository.findByServiceIdAndType(service.getId(), ResourceType.PROTOBUF_DESCRIPTOR);
+      if (resources == null || resources.size() != 1) {
+         log.error("Did not found any pre-processed Protobuf binary descriptor...");
+         return method;
+      }
+      try {
+         log.debug("Building Protobuf method descriptor for {}", fullMethodName);
+         method.methodDescriptor = GrpcUtil.findMethodDescriptor(resources.get(0).getContent(),
+               method.getServiceName(), method.getOperationName());
+      } catch (Exception e) {
+         log.error("Protobuf method descriptor cannot be built for " + fullMethodName, e);
+      }
+      return method;
+   }
+
+   /** A gRPC method resolved from its full name. */
+   public static class GrpcMethod {
+      private final String serviceName;
+      private final String serviceVersion;
+      private final String operationName;
+      private Service service;
+      private Operation operation;
+      private Descriptors.MethodDescriptor methodDescriptor;
+
+      private GrpcMethod(String fullMethodName) {
+         // Retrieve operation name, service name and version from fullMethodName.
+         operationName = fullMethodName.substring(fullMethodName.indexOf("/") + 1);
+         serviceName = fullMethodName.substring(fullMethodName.lastIndexOf(".") + 1, fullMethodName.indexOf("/"));
+         String packageName = fullMethodName.substring(0, fullMethodName.lastIndexOf("."));
+         String[] parts = packageName.split("\\.");
+         serviceVersion = (parts.length > 2 ? parts[parts.length - 1] : packageName);
+      }
+
+      public String getServiceName() {
+         return serviceName;
+      }
+
+      public String getServiceVersion() {
+         return serviceVersion;
+      }
+
+      public String getOperationName() {
+         return operationName;
+      }
+
+      /** @return The mocked Service or null if not found */
+      public Service getService() {
+         return service;
+      }
+
+      /** @return The mocked Operation or null if not found */
+      public Operation getOperation() {
+         return operation;
+      }
+
+      /** @return The protobuf method descriptor or null if it cannot be built */
+      public Descriptors.MethodDescriptor getMethodDescriptor() {
+         return methodDescriptor;
+      }
+   }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.cache;
+
+import io.github.microcks.domain.Operation;
+import io.github.microcks.domain.Service;
+import io.github.microcks.event.ServiceChangeEvent;
+import io.github.microcks.util.OperationPlan;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory cache of OperationPlan built per Service operation. Plans are lazily built on first request,
+ * bound to the Service instance they have been built from and evicted as soon as a ServiceChangeEvent is
+ * received for the Service.
+ * @author laurent
+ */
+@Component
+public class OperationPlanCache implements ApplicationListener<ServiceChangeEvent> {
+
+   /** A simple logger for diagnostic messages. */
+   private static Logger log = LoggerFactory.getLogger(OperationPlanCache.class);
+
+   /** Plans indexed by Service id (so name + version). */
+   private final Map<String, ServicePlans> plansByService = new ConcurrentHashMap<>();
+
+   /**
+    * Get the execution plan of a Service operation.
+    * @param service The Service holding operation
+    * @param operation The operation to get a plan for
+    * @return The execution plan of operation
+    */
+   public OperationPlan getPlan(Service service, Operation operation) {
+      ServicePlans plans = plansByService.get(service.getId());
+      if (plans == null || plans.service != service) {
+         plans = new ServicePlans(service);
+         plansByService.put(service.getId(), plans);
+      }
+      OperationPlan plan = plans.plansByOperation.get(operation.getName());
+      if (plan == null || plan.getOperation() != operation) {
+         log.debug("Building execution plan for operation {} of [{}, {}]", operation.getName(),
+               service.getName(), service.getVersion());
+         plan = new OperationPlan(operation);
+         plans.plansByOperation.put(operation.getName(), plan);
+      }
+      return plan;
+   }
+
+   @Override
+   public void onApplicationEvent(ServiceChangeEvent event) {
+      log.debug("Received a ServiceChangeEvent on {}, evicting operation plans", event.getServiceId());
+      plansByService.remove(event.getServiceId());
+   }
+
+   private static class ServicePlans {
+      private final Service service;
+      private final Map<String, OperationPlan> plansByOperation = new ConcurrentHashMap<>();
+
+      private ServicePlans(Service service) {
+         this.service = service;
+      }
+   }
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.cache;
+
+import io.github.microcks.domain.Service;
+import io.github.microcks.event.ServiceChangeEvent;
+import io.github.microcks.util.OperationRouteTrie;
+import io.github.microcks.util.SoapOperationIndex;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory cache of OperationRouteTrie built per Service and Http verb, and of SoapOperationIndex built
+ * per Service. Tries and indexes are lazily built on first request and evicted as soon as a ServiceChangeEvent
+ * is received for the Service. As Services are shared by the ServiceCache, they are also bound to the Service
+ * instance they have been built from and rebuilt if another instance is given.
+ * @author laurent
+ */
+@Component
+public class OperationRouteCache implements ApplicationListener<ServiceChangeEvent> {
+
+   /** A simple logger for diagnostic messages. */
+   private static Logger log = LoggerFactory.getLogger(OperationRouteCache.class);
+
+   /** Tries indexed by Service id (so name + version). */
+   private final Map<String, ServiceRoutes> routesByService = new ConcurrentHashMap<>();
+
+   /**
+    * Resolve the operation of a Service matching Http verb and resource path.
+    * @param service The Service to resolve an operation for
+    * @param method The Http verb of incoming request (upper case)
+    * @param resourcePath The resource path of incoming request (still URL encoded)
+    * @return A RouteMatch holding operation and its URI parts or null if no operation matches.
+    */
+   public OperationRouteTrie.RouteMatch resolve(Service service, String method, String resourcePath) {
+      ServiceRoutes routes = getServiceRoutes(service);
+      OperationRouteTrie trie = routes.triesByMethod.computeIfAbsent(method, m -> {
+         log.debug("Building operation route trie for [{}, {}] and verb {}", service.getName(), service.getVersion(), m);
+         return new OperationRouteTrie(service.getOperations(), m);
+      });
+      return trie.resolve(resourcePath);
+   }
+
+   /**
+    * Get the index of SOAP operations of a Service by action and name.
+    * @param service The Service to get an index for
+    * @return The SoapOperationIndex of Service operations
+    */
+   public SoapOperationIndex getSoapOperationIndex(Service service) {
+      ServiceRoutes routes = getServiceRoutes(service);
+      SoapOperationIndex index = routes.soapOperationIndex;
+      if (index == null) {
+         log.debug("Building SOAP operation index for [{}, {}]", service.getName(), service.getVersion());
+         index = new SoapOperationIndex(service.getOperations());
+         routes.soapOperationIndex = index;
+      }
+      return index;
+   }
+
+   private ServiceRoutes getServiceRoutes(Service service) {
+      ServiceRoutes routes = routesByService.get(service.getId());
+      if (routes == null || routes.service != service) {
+         routes = new ServiceRoutes(service);
+         routesByService.put(service.getId(), routes);
+      }
+      return routes;
+   }
+
+   @Override
+   public void onApplicationEvent(ServiceChangeEvent event) {
+      log.debug("Received a ServiceChangeEvent on {}, evicting operation route tries", event.getServiceId());
+      routesByService.remove(event.getServiceId());
+   }
+
+   private static class ServiceRoutes {
+      private final Service service;
+      private final Map<String, OperationRouteTrie> triesByMethod = new ConcurrentHashMap<>();
+      private volatile SoapOperationIndex soapOperationIndex;
+
+      private ServiceRoutes(Service service) {
+         this.service = service;
+      }
+   }
+}
@@ -0,0 +1,342 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.cache;
+
+import io.github.microcks.domain.Header;
+import io.github.microcks.domain.Response;
+import io.github.microcks.event.ServiceChangeEvent;
+import io.github.microcks.repository.ResponseRepository;
+import io.github.microcks.util.PreparedResponse;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.util.JsonFormat;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * An in-memory cache of Response lists sitting in front of ResponseRepository for mock controllers. Mock
+ * responses only change on import, deletion or operation override, all of them raising a ServiceChangeEvent
+ * that evicts the responses of the changed Service. Empty results are cached as well as they are very common
+ * when controllers try the different dispatch criteria.
+ * <p>
+ * Prepared Http representations of responses are also cached (keyed by response identifier) so that static
+ * responses can be written without re-building headers and re-encoding content on each request. In the same way,
+ * static gRPC responses are kept encoded as protobuf wire bytes.
+ * <p>
+ * The three caches share the {@code mocks.response-cache.max-weight-mb} budget that bounds their overall memory
+ * usage: half of it goes to Response lists and a quarter to each of the prepared and protobuf representations.
+ * @author laurent
+ */
+@Component
+public class ResponseCache implements ApplicationListener<ServiceChangeEvent> {
+
+   /** A simple logger for diagnostic messages. */
+   private static Logger log = LoggerFactory.getLogger(ResponseCache.class);
+
+   /** Jackson mapper is thread-safe once configured, it can be shared. */
+   private static final ObjectMapper MAPPER = new ObjectMapper();
+
+   /** Suffix of the key of streaming responses messages into protobuf cache. */
+   private static final String STREAM_KEY_SUFFIX = "#stream";
+
+   /** Approximate fixed overhead in bytes of a cache entry and of a Response object. */
+   private static final long ENTRY_OVERHEAD = 128;
+
+   @Autowired
+   private ResponseRepository responseRepository;
+
+   @Autowired
+   private MeterRegistry meterRegistry;
+
+   @Value("${mocks.response-cache.max-weight-mb:64}")
+   private final Long maxWeightMb = 64L;
+
+   private BoundedCache<ResponseKey, List<Response>> cache;
+
+   private BoundedCache<String, PreparedResponse> preparedCache;
+
+   private BoundedCache<String, EncodedResponse> protobufCache;
+
+
+   @PostConstruct
+   public void initialize() {
+      log.info("Initializing responses cache with a max weight of {} MB", maxWeightMb);
+      long maxWeight = maxWeightMb * 1024 * 1024;
+      cache = new BoundedCache<>(maxWeight / 2, ResponseCache::weigh);
+      new BoundedCacheMetrics(cache, "responses").bindTo(meterRegistry);
+      preparedCache = new BoundedCache<>(maxWeight / 4, prepared -> ENTRY_OVERHEAD + prepared.getSize());
+      new BoundedCacheMetrics(preparedCache, "prepared-responses").bindTo(meterRegistry);
+      protobufCache = new BoundedCache<>(maxWeight / 4, encoded -> ENTRY_OVERHEAD + encoded.getSize());
+      new BoundedCacheMetrics(protobufCache, "protobuf-responses").bindTo(meterRegistry);
+   }
+
+   /**
+    * Get the prepared Http representation of a response found by this cache.
+    * @param response The response to get representation for
+    * @return The shared prepared response
+    */
+   public PreparedResponse getPreparedResponse(Response response) {
+      if (response.getId() == null) {
+         return new PreparedResponse(response);
+      }
+      return preparedCache.get(response.getId(), key -> new PreparedResponse(response));
+   }
+
+   /**
+    * Get the protobuf wire bytes of a static response found by this cache (its content being the JSON
+    * representation of message). Response content must not hold any template expression.
+    * @param response The response to get bytes for
+    * @param messageType The descriptor of response message type
+    * @return The shared protobuf encoded message, it must not be modified
+    * @throws InvalidProtocolBufferException if response content cannot be merged into a message of this type
+    */
+   public byte[] getProtobufResponse(Response response, Descriptors.Descriptor messageType)
+         throws InvalidProtocolBufferException {
+      if (response.getId() == null) {
+         return encodeProtobuf(response.getContent(), messageType);
+      }
+      return getEncodedResponse(response.getId(), response,
+            () -> Collections.singletonList(encodeProtobuf(response.getContent(), messageType))).get(0);
+   }
+
+   /**
+    * Get the protobuf wire bytes of the messages of a static streaming response found by this cache (its content
+    * being the JSON representation of a message or a JSON array of messages). Response content must not hold any
+    * template expression.
+    * @param response The response to get messages for
+    * @param messageType The descriptor of response message type
+    * @return The shared protobuf encoded messages, they must not be modified
+    * @throws InvalidProtocolBufferException if response content cannot be merged into messages of this type
+    */
+   public List<byte[]> getProtobufStreamResponse(Response response, Descriptors.Descriptor messageType)
+         throws InvalidProtocolBufferException {
+      if (response.getId() == null) {
+         return encodeProtobufStream(response.getContent(), messageType);
+      }
+      return getEncodedResponse(response.getId() + STREAM_KEY_SUFFIX, response,
+            () -> encodeProtobufStream(response.getContent(), messageType));
+   }
+
+   /**
+    * Encode the JSON representation of a message as protobuf wire bytes.
+    * @param json The JSON representation of message
+    * @param messageType The descriptor of message type
+    * @return The protobuf encoded message
+    * @throws InvalidProtocolBufferException if JSON cannot be merged into a message of this type
+    */
+   public static byte[] encodeProtobuf(String json, Descriptors.Descriptor messageType)
+         throws InvalidProtocolBufferException {
+      DynamicMessage.Builder builder = DynamicMessage.newBuilder(messageType);
+      JsonFormat.parser().merge(json, builder);
+      return builder.build().toByteArray();
+   }
+
+   /**
+    * Encode the JSON representation of a stream of messages as protobuf wire bytes. A JSON array is considered
+    * as the sequence of messages, any other JSON value as a single message.
+    * @param json The JSON representation of message or the JSON array of messages
+    * @param messageType The descriptor of messages type
+    * @return The protobuf encoded messages
+    * @throws InvalidProtocolBufferException if JSON cannot be merged into messages of this type
+    */
+   public static List<byte[]> encodeProtobufStream(String json, Descriptors.Descriptor messageType)
+         throws InvalidProtocolBufferException {
+      JsonNode node;
+      try {
+         node = MAPPER.readTree(json);
+      } catch (IOException ioe) {
+         throw new InvalidProtocolBufferException(ioe);
+      }
+      if (node == null || !node.isArray()) {
+         return Collections.singletonList(encodeProtobuf(json, messageType));
+      }
+      List<byte[]> messages = new ArrayList<>(node.size());
+      for (JsonNode element : node) {
+         messages.add(encodeProtobuf(element.toString(), messageType));
+      }
+      return messages;
+   }
+
+   private List<byte[]> getEncodedResponse(String key, Response response, ProtobufEncoder encoder)
+         throws InvalidProtocolBufferException {
+      try {
+         return protobufCache.get(key, k -> {
+            try {
+               return new EncodedResponse(response.getOperationId(), encoder.encode());
+            } catch (InvalidProtocolBufferException ipbe) {
+               throw new EncodingException(ipbe);
+            }
+         }).messages;
+      } catch (EncodingException ee) {
+         throw ee.getCause();
+      }
+   }
+
+   /**
+    * Find responses of operation (cached equivalent of ResponseRepository.findByOperationId).
+    * @param operationId The identifier of operation
+    * @return An unmodifiable list of responses
+    */
+   public List<Response> findByOperationId(String operationId) {
+      return cache.get(new ResponseKey(operationId, LookupType.OPERATION, null),
+            key -> Collections.unmodifiableList(responseRepository.findByOperationId(operationId)));
+   }
+
+   /**
+    * Find responses of operation by name (cached equivalent of ResponseRepository.findByOperationIdAndName).
+    * @param operationId The identifier of operation
+    * @param name The name of response
+    * @return An unmodifiable list of responses
+    */
+   public List<Response> findByOperationIdAndName(String operationId, String name) {
+      return cache.get(new ResponseKey(operationId, LookupType.NAME, name),
+            key -> Collections.unmodifiableList(responseRepository.findByOperationIdAndName(operationId, name)));
+   }
+
+   /**
+    * Find responses of operation by dispatch criteria (cached equivalent of
+    * ResponseRepository.findByOperationIdAndDispatchCriteria).
+    * @param operationId The identifier of operation
+    * @param dispatchCriteria The dispatch criteria of response
+    * @return An unmodifiable list of responses
+    */
+   public List<Response> findByOperationIdAndDispatchCriteria(String operationId, String dispatchCriteria) {
+      return cache.get(new ResponseKey(operationId, LookupType.DISPATCH_CRITERIA, dispatchCriteria),
+            key -> Collections.unmodifiableList(
+                  responseRepository.findByOperationIdAndDispatchCriteria(operationId, dispatchCriteria)));
+   }
+
+   @Override
+   public void onApplicationEvent(ServiceChangeEvent event) {
+      log.debug("Received a ServiceChangeEvent on {}, evicting cached responses", event.getServiceId());
+      // Operation identifiers are built by prefixing operation name with service id.
+      String operationIdPrefix = event.getServiceId() + "-";
+      cache.invalidateIf(key -> key.operationId.startsWith(operationIdPrefix));
+      preparedCache.invalidateIf((key, prepared) -> prepared.getOperationId() == null
+            || prepared.getOperationId().startsWith(operationIdPrefix));
+      protobufCache.invalidateIf((key, encoded) -> encoded.operationId == null
+            || encoded.operationId.startsWith(operationIdPrefix));
+   }
+
+   /** Compute an approximation of the memory footprint of a list of responses. */
+   private static long weigh(List<Response> responses) {
+      long weight = ENTRY_OVERHEAD;
+      for (Response response : responses) {
+         weight += ENTRY_OVERHEAD;
+         weight += 2L * (response.getContent() != null ? response.getContent().length() : 0);
+         if (response.getHeaders() != null) {
+            for (Header header : response.getHeaders()) {
+               weight += 2L * header.getName().length();
+               for (String value : header.getValues()) {
+                  weight += 2L * value.length();
+               }
+            }
+         }
+      }
+      return weight;
+   }
+
+   private enum LookupType {
+      OPERATION,
+      NAME,
+      DISPATCH_CRITERIA
+   }
+
+   private static class ResponseKey {
+      private final String operationId;
+      private final LookupType lookupType;
+      private final String criterion;
+
+      private ResponseKey(String operationId, LookupType lookupType, String criterion) {
+         this.operationId = operationId;
+         this.lookupType = lookupType;
+         this.criterion = criterion;
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         if (this == o) {
+            return true;
+         }
+         if (!(o instanceof ResponseKey)) {
+            return false;
+         }
+         ResponseKey other = (ResponseKey) o;
+         return operationId.equals(other.operationId) && lookupType == other.lookupType
+               && Objects.equals(criterion, other.criterion);
+      }
+
+      @Override
+      public int hashCode() {
+         return Objects.hash(operationId, lookupType, criterion);
+      }
+   }
+
+   private static class EncodedResponse {
+      private final String operationId;
+      private final List<byte[]> messages;
+
+      private EncodedResponse(String operationId, List<byte[]> messages) {
+         this.operationId = operationId;
+         this.messages = Collections.unmodifiableList(messages);
+      }
+
+      private long getSize() {
+         long size = 0;
+         for (byte[] message : messages) {
+            size += message.length;
+         }
+         return size;
+      }
+   }
+
+   /** Encoder of response content to protobuf messages. */
+   @FunctionalInterface
+   private interface ProtobufEncoder {
+      List<byte[]> encode() throws InvalidProtocolBufferException;
+   }
+
+   /** Unchecked wrapper used to get encoding failures out of cache loader. */
+   private static class EncodingException extends RuntimeException {
+      private EncodingException(InvalidProtocolBufferException cause) {
+         super(cause);
+      }
+
+      @Override
+      public synchronized InvalidProtocolBufferException getCause() {
+         return (InvalidProtocolBufferException) super.getCause();
+      }
+   }
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import javax.annotation.PostConstruct;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A cache of Groovy scripts compiled once and evaluated many times with per-request bindings. Scripts
+ * are indexed by the hash of their source so that operations sharing the same dispatcher script also share
+ * the compiled one, and an updated script is naturally compiled again. A single Groovy engine is shared:
+ * compiled scripts are evaluated with their own bindings and never touch the engine scope.
+ * @author laurent
+ */
+@Component
+public class ScriptCache {
+
+   /** A simple logger for diagnostic messages. */
+   private static Logger log = LoggerFactory.getLogger(ScriptCache.class);
+
+   @Autowired
+   private MeterRegistry meterRegistry;
+
+   @Value("${mocks.script-cache.max-entries:1000}")
+   private final Long maxEntries = 1000L;
+
+   private ScriptEngine engine;
+
+   private BoundedCache<String, CompiledScript> cache;
+
+   private Counter compilationsCounter;
+
+
+   @PostConstruct
+   public void initialize() {
+      log.info("Initializing scripts cache with {} max entries", maxEntries);
+      engine = new ScriptEngineManager().getEngineByExtension("groovy");
+      cache = new BoundedCache<>(maxEntries, script -> 1L);
+      new BoundedCacheMetrics(cache, "scripts").bindTo(meterRegistry);
+      compilationsCounter = Counter.builder("mocks.script.compilations")
+            .description("The number of dispatcher scripts compilations")
+            .register(meterRegistry);
+   }
+
+   /**
+    * Create new bindings for evaluating a script.
+    * @return Empty bindings to fill with script environment
+    */
+   public Bindings createBindings() {
+      return engine.createBindings();
+   }
+
+   /**
+    * Evaluate a script with bindings, compiling it first if not already in cache.
+    * @param script The source of script to evaluate
+    * @param bindings The bindings to use for this evaluation
+    * @return The result of script evaluation
+    * @throws ScriptException if script cannot be compiled or evaluated
+    */
+   public Object eval(String script, Bindings bindings) throws ScriptException {
+      return getCompiledScript(script).eval(bindings);
+   }
+
+   /**
+    * Get the compiled form of a script.
+    * @param script The source of script to compile
+    * @return The compiled script
+    * @throws ScriptException if script cannot be compiled
+    */
+   public CompiledScript getCompiledScript(String script) throws ScriptException {
+      String hash = DigestUtils.md5DigestAsHex(script.getBytes(StandardCharsets.UTF_8));
+      try {
+         return cache.get(hash, key -> compile(script));
+      } catch (ScriptCompilationException sce) {
+         throw sce.getCause();
+      }
+   }
+
+   private CompiledScript compile(String script) {
+      log.debug("Compiling a new dispatcher script");
+      compilationsCounter.increment();
+      try {
+         return ((Compilable) engine).compile(script);
+      } catch (ScriptException se) {
+         throw new ScriptCompilationException(se);
+      }
+   }
+
+   /** Unchecked wrapper used to get compilation failures out of cache loader. */
+   private static class ScriptCompilationException extends RuntimeException {
+      private ScriptCompilationException(ScriptException cause) {
+         super(cause);
+      }
+
+      @Override
+      public synchronized ScriptException getCause() {
+         return (ScriptException) super.getCause();
+      }
+   }
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.cache;
+
+import io.github.microcks.domain.Service;
+import io.github.microcks.event.ServiceChangeEvent;
+import io.github.microcks.repository.ServiceRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Optional;
+
+/**
+ * A near-cache of Services resolved by name and version for mock controllers. Unknown Services are also
+ * remembered so that requests on them do not hit the repository anymore. As ServiceChangeEvent only holds
+ * Service identifier, an event evicts the matching Service as well as all the unknown Services markers
+ * (the event may be the creation of one of them).
+ * <p>
+ * Cached Services are shared between requests and must be considered as read-only by callers.
+ * @author laurent
+ */
+@Component
+public class ServiceCache implements ApplicationListener<ServiceChangeEvent> {
+
+   /** A simple logger for diagnostic messages. */
+   private static Logger log = LoggerFactory.getLogger(ServiceCache.class);
+
+   @Autowired
+   private ServiceRepository serviceRepository;
+
+   @Autowired
+   private MeterRegistry meterRegistry;
+
+   @Value("${mocks.service-cache.max-entries:5000}")
+   private final Long maxEntries = 5000L;
+
+   private BoundedCache<String, Optional<Service>> cache;
+
+
+   @PostConstruct
+   public void initialize() {
+      log.info("Initializing services cache with {} max entries", maxEntries);
+      cache = new BoundedCache<>(maxEntries, service -> 1L);
+      new BoundedCacheMetrics(cache, "services").bindTo(meterRegistry);
+   }
+
+   /**
+    * Get a Service using its name and version (cached equivalent of ServiceRepository.findByNameAndVersion).
+    * @param name The name of Service
+    * @param version The version of Service
+    * @return The Service or null if no Service matches
+    */
+   public Service getService(String name, String version) {
+      return cache.get(name + ":" + version,
+            key -> Optional.ofNullable(serviceRepository.findByNameAndVersion(name, version))).orElse(null);
+   }
+
+   @Override
+   public void onApplicationEvent(ServiceChangeEvent event) {
+      log.debug("Received a ServiceChangeEvent on {}, evicting Service", event.getServiceId());
+      cache.invalidateIf((key, service) -> service.isEmpty() || event.getServiceId().equals(service.get().getId()));
+   }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.cache;
+
+import io.github.microcks.domain.Service;
+import io.github.microcks.event.ServiceChangeEvent;
+
+import com.eviware.soapui.impl.wsdl.support.wsdl.WsdlContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A cache of loaded WsdlContext (WSDL definitions and compiled XmlBeans schema type loader) per Service, used for
+ * validating SOAP messages. A context is loaded on first validation of a Service, loading being done once even if
+ * many requests arrive at the same time, and evicted as soon as a ServiceChangeEvent is received for the Service.
+ * Contexts that cannot be loaded are not kept so that loading is attempted again on next validation. As WSDL url
+ * only depends on Service name and version and on configuration, contexts are simply indexed by Service id.
+ * @author laurent
+ */
+@Component
+public class WsdlContextCache implements ApplicationListener<ServiceChangeEvent> {
+
+   /** A simple logger for diagnostic messages. */
+   private static Logger log = LoggerFactory.getLogger(WsdlContextCache.class);
+
+   @Autowired
+   private MeterRegistry meterRegistry;
+
+   @Value("${mocks.wsdl-cache.max-entries:100}")
+   private final Long maxEntries = 100L;
+
+   private BoundedCache<String, CachedContext> cache;
+
+   /** Locks per Service id, for loading a context only once. */
+   private final Map<String, Object> loadingLocks = new ConcurrentHashMap<>();
+
+   private Counter loadsCounter;
+
+
+   @PostConstruct
+   public void initialize() {
+      log.info("Initializing WSDL contexts cache with {} max entries", maxEntries);
+      cache = new BoundedCache<>(maxEntries, context -> 1L);
+      new BoundedCacheMetrics(cache, "wsdl-contexts").bindTo(meterRegistry);
+      loadsCounter = Counter.builder("mocks.wsdl.loads")
+            .description("The number of WSDL contexts loadings for SOAP validation")
+            .register(meterRegistry);
+   }
+
+   /**
+    * Get the loaded WsdlContext of a Service, loading it from WSDL url if not already in cache.
+    * @param service The Service to get a context for
+    * @param wsdlUrl The URL where we can resolve service WSDL
+    * @return The loaded WsdlContext, with schema type loader ready
+    * @throws Exception if WSDL or its schemas cannot be loaded
+    */
+   public WsdlContext getWsdlContext(Service service, String wsdlUrl) throws Exception {
+      CachedContext cached = cache.get(service.getId(), id -> {
+         synchronized (loadingLocks.computeIfAbsent(id, k -> new Object())) {
+            // Another thread may have loaded it while we were waiting for lock.
+            return cache.get(id, key -> load(wsdlUrl));
+         }
+      });
+      if (cached.exception != null) {
+         // Failure has been shared with concurrent requests, next one will try again.
+         cache.invalidateIf(service.getId()::equals);
+         throw cached.exception;
+      }
+      return cached.context;
+   }
+
+   @Override
+   public void onApplicationEvent(ServiceChangeEvent event) {
+      log.debug("Received a ServiceChangeEvent on {}, evicting WSDL context", event.getServiceId());
+      cache.invalidateIf(event.getServiceId()::equals);
+      loadingLocks.remove(event.getServiceId());
+   }
+
+   private CachedContext load(String wsdlUrl) {
+      log.debug("Loading WSDL context from {}", wsdlUrl);
+      loadsCounter.increment();
+      WsdlContext context = new WsdlContext(wsdlUrl);
+      try {
+         // Force the loading of definitions and compilation of schemas now.
+         context.getSchemaTypeLoader();
+         return new CachedContext(context, null);
+      } catch (Exception e) {
+         log.error("WSDL context cannot be loaded from " + wsdlUrl, e);
+         return new CachedContext(null, e);
+      }
+   }
+
+   private static class CachedContext {
+      private final WsdlContext context;
+      private final Exception exception;
+
+      private CachedContext(WsdlContext context, Exception exception) {
+         this.context = context;
+         this.exception = exception;
+      }
+   }
+}
@@ -25,14 +25,28 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationListener;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * Application event listener that updates daily statistics on incoming event.
+ * <p>
+ * Invocations are counted in memory per day, service and minute using striped counters and are written to Mongo
+ * every {@code mocks.statistics.flush-interval-ms} as one bulk write per service. Invocations counted since the
+ * last flush (that is at most one interval) are lost if process crashes; they are written on graceful shutdown.
+ * Counts that cannot be written are kept for next flush. Counters of the current day are kept between flushes;
+ * counters of past days are pruned once idle for a whole interval.
  * @author laurent
  */
 @Component
@@ -43,9 +57,11 @@ public class DailyStatisticsFeeder implements ApplicationListener<MockInvocation
    
    @Autowired
    private DailyStatisticRepository statisticsRepository;
+
+   /** Invocation counters that have not been written yet. */
+   private final Map<InvocationKey, LongAdder> counters = new ConcurrentHashMap<>();
    
    @Override
-   @Async
    public void onApplicationEvent(MockInvocationEvent event){
       log.debug("Received a MockInvocationEvent on " + event.getServiceName() + " - v" + event.getServiceVersion());
       
@@ -54,61 +70,126 @@ public class DailyStatisticsFeeder implements ApplicationListener<MockInvocation
       calendar.setTime(event.getInvocationTimestamp());
       
       // Computing keys based on invocation date.
+      String day = formatDay(calendar);
+      int minute = (60 * calendar.get(Calendar.HOUR_OF_DAY)) + calendar.get(Calendar.MINUTE);
+
+      // Only count invocation, it will be written on next flush.
+      InvocationKey key = new InvocationKey(day, event.getServiceName(), event.getServiceVersion(), minute);
+      LongAdder counter = counters.computeIfAbsent(key, k -> new LongAdder());
+      counter.increment();
+      if (counters.get(key) != counter) {
+         // Late invocation of a past day whose counter has been pruned by flush in the meantime:
+         // move what flush may have missed to the current counter.
+         long missed = counter.sumThenReset();
+         if (missed > 0) {
+            counters.computeIfAbsent(key, k -> new LongAdder()).add(missed);
+         }
+      }
+   }
+
+   /** Write the invocations counted since last flush to Mongo, as one bulk write per service. */
+   @Scheduled(fixedDelayString = "${mocks.statistics.flush-interval-ms:5000}",
+         initialDelayString = "${mocks.statistics.flush-interval-ms:5000}")
+   @PreDestroy
+   public synchronized void flush() {
+      // Drain counters grouping them by service and day.
+      String today = formatDay(Calendar.getInstance());
+      Map<String, Map<String, Map<InvocationKey, Long>>> drained = new HashMap<>();
+      for (Map.Entry<InvocationKey, LongAdder> counter : counters.entrySet()) {
+         InvocationKey key = counter.getKey();
+         long count = counter.getValue().sumThenReset();
+         if (count == 0 && key.day.compareTo(today) < 0 && counters.remove(key, counter.getValue())) {
+            // Past day idle for a whole interval, get increments that may have happened in the meantime.
+            count = counter.getValue().sumThenReset();
+         }
+         if (count > 0) {
+            drained.computeIfAbsent(key.serviceName + ":" + key.serviceVersion, k -> new TreeMap<>())
+                  .computeIfAbsent(key.day, k -> new HashMap<>())
+                  .put(key, count);
+         }
+      }
+
+      for (Map<String, Map<InvocationKey, Long>> serviceCounts : drained.values()) {
+         List<Map<InvocationKey, Long>> dayCounts = new ArrayList<>(serviceCounts.values());
+         List<DailyStatistic> increments = new ArrayList<>(dayCounts.size());
+         for (Map<InvocationKey, Long> counts : dayCounts) {
+            increments.add(buildIncrement(counts));
+         }
+
+         InvocationKey first = dayCounts.get(0).keySet().iterator().next();
+         int applied = 0;
+         try {
+            applied = statisticsRepository.incrementDailyStatistics(first.serviceName, first.serviceVersion, increments);
+         } catch (Exception e) {
+            log.error("Statistics of " + first.serviceName + " - v" + first.serviceVersion
+                  + " cannot be written, they will be retried", e);
+         }
+         // Keep counts that have not been written for next flush.
+         for (Map<InvocationKey, Long> counts : dayCounts.subList(applied, dayCounts.size())) {
+            for (Map.Entry<InvocationKey, Long> count : counts.entrySet()) {
+               counters.computeIfAbsent(count.getKey(), k -> new LongAdder()).add(count.getValue());
+            }
+         }
+      }
+      if (log.isDebugEnabled() && !drained.isEmpty()) {
+         log.debug("Statistics of " + drained.size() + " services have been flushed");
+      }
+   }
+
+   /** Format the day of a calendar as yyyyMMdd. */
+   private static String formatDay(Calendar calendar) {
       int month = calendar.get(Calendar.MONTH) + 1;
       String monthStr = (month<10 ? "0" : "") + String.valueOf(month);
       int dayOfMonth = calendar.get(Calendar.DAY_OF_MONTH);
       String dayOfMonthStr = (dayOfMonth<10 ? "0" : "") + String.valueOf(dayOfMonth);
-      
-      String day = String.valueOf(calendar.get(Calendar.YEAR)) + monthStr + dayOfMonthStr;
-      String hourKey = String.valueOf(calendar.get(Calendar.HOUR_OF_DAY));
-      String minuteKey = String.valueOf((60 * calendar.get(Calendar.HOUR_OF_DAY)) + calendar.get(Calendar.MINUTE));
-      if (log.isDebugEnabled()){
-         log.debug("hourKey for statistic is " + hourKey);
-         log.debug("minuteKey for statistic is " + minuteKey);
-      }
-      
-      // First check if there's a statistic document for invocation day.
-      DailyStatistic statistic = statisticsRepository.findByDayAndServiceNameAndServiceVersion(day, 
-            event.getServiceName(), event.getServiceVersion());
-      
-      if (statistic == null){
-         // No statistic's yet...
-         log.debug("There's no statistics for " + day + " yet. Create one....");
-         // Initialize a new 0 filled structure.
-         statistic = new DailyStatistic();
-         statistic.setDay(day);
-         statistic.setServiceName(event.getServiceName());
-         statistic.setServiceVersion(event.getServiceVersion());
-         statistic.setHourlyCount(initializeHourlyMap());
-         statistic.setMinuteCount(initializeMinuteMap());
-         // Now set first values before saving.
-         statistic.setDailyCount(1);
-         statistic.getHourlyCount().put(hourKey, 1);
-         statistic.getMinuteCount().put(minuteKey, 1);
-         statisticsRepository.save(statistic);
-      } else {
-         // Already a statistic document for this day, increment fields.
-         log.debug("Found an existing statistic document for " + day);
-         statisticsRepository.incrementDailyStatistic(day, event.getServiceName(), event.getServiceVersion(),
-               hourKey, minuteKey);
-      }
-      
-      log.debug("Processing of MockInvocationEvent done !");
+      return String.valueOf(calendar.get(Calendar.YEAR)) + monthStr + dayOfMonthStr;
    }
-   
-   private Map<String, Integer> initializeHourlyMap(){
-      Map<String, Integer> result = new HashMap<String, Integer>(24);
-      for (int i=0; i<24; i++){
-         result.put(String.valueOf(i), 0);
+
+   /** Build the increment of a day statistic from the counts of its minutes. */
+   private DailyStatistic buildIncrement(Map<InvocationKey, Long> counts) {
+      DailyStatistic increment = new DailyStatistic();
+      long dailyCount = 0;
+      for (Map.Entry<InvocationKey, Long> count : counts.entrySet()) {
+         InvocationKey key = count.getKey();
+         increment.setDay(key.day);
+         dailyCount += count.getValue();
+         increment.getHourlyCount().merge(String.valueOf(key.minute / 60), count.getValue().intValue(), Integer::sum);
+         increment.getMinuteCount().put(String.valueOf(key.minute), count.getValue().intValue());
       }
-      return result;
+      increment.setDailyCount(dailyCount);
+      return increment;
    }
-   
-   private Map<String, Integer> initializeMinuteMap(){
-      Map<String, Integer> result = new HashMap<String, Integer>(24*60);
-      for (int i=0; i<24*60; i++){
-         result.put(String.valueOf(i), 0);
+
+   /** The key of an invocation counter. */
+   private static class InvocationKey {
+      private final String day;
+      private final String serviceName;
+      private final String serviceVersion;
+      private final int minute;
+
+      private InvocationKey(String day, String serviceName, String serviceVersion, int minute) {
+         this.day = day;
+         this.serviceName = serviceName;
+         this.serviceVersion = serviceVersion;
+         this.minute = minute;
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         if (this == o) {
+            return true;
+         }
+         if (!(o instanceof InvocationKey)) {
+            return false;
+         }
+         InvocationKey other = (InvocationKey) o;
+         return minute == other.minute && day.equals(other.day) && serviceName.equals(other.serviceName)
+               && Objects.equals(serviceVersion, other.serviceVersion);
+      }
+
+      @Override
+      public int hashCode() {
+         return Objects.hash(day, serviceName, serviceVersion, minute);
       }
-      return result;
    }
 }
@@ -30,6 +30,16 @@ public interface CustomDailyStatisticRepository {
 
    void incrementDailyStatistic(String day, String serviceName, String serviceVersion, String hourKey, String minuteKey);
 
+   /**
+    * Increment the statistics of a Service using a single bulk write. Statistics that do not exist yet are created
+    * with zero filled hourly and minute counts before being incremented.
+    * @param serviceName The name of Service
+    * @param serviceVersion The version of Service
+    * @param increments The counts to add, one per day (only non zero hourly and minute counts are required)
+    * @return The number of increments that have been applied, in order (all of them unless a write error occurs)
+    */
+   int incrementDailyStatistics(String serviceName, String serviceVersion, List<DailyStatistic> increments);
+
    DailyStatistic aggregateDailyStatistics(String day);
 
    List<InvocationCount> aggregateDailyStatistics(String afterday, String beforeday);
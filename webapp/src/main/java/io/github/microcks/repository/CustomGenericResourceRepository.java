@@ -20,6 +20,8 @@ package io.github.microcks.repository;
 
 import io.github.microcks.domain.GenericResource;
 
+import org.bson.Document;
+
 import java.util.List;
 
 /**
@@ -29,4 +31,13 @@ import java.util.List;
 public interface CustomGenericResourceRepository {
 
    List<GenericResource> findByServiceIdAndJSONQuery(String serviceId, String jsonQuery);
+
+   /**
+    * Find resources of a Service whose payload matches an already parsed query. Query keys are payload fields and
+    * query document is modified by this call.
+    * @param serviceId The identifier of Service owning resources
+    * @param query The parsed query on payload fields
+    * @return The matching resources
+    */
+   List<GenericResource> findByServiceIdAndQuery(String serviceId, Document query);
 }
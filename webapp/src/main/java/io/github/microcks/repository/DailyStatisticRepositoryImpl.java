@@ -25,6 +25,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Sort.Direction;
 import org.springframework.data.domain.Sort.Order;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.Aggregation;
 import org.springframework.data.mongodb.core.aggregation.AggregationResults;
@@ -33,7 +35,9 @@ import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.springframework.data.domain.Sort.Direction.ASC;
 import static org.springframework.data.mongodb.core.aggregation.Aggregation.*;
@@ -68,6 +72,43 @@ public class DailyStatisticRepositoryImpl implements CustomDailyStatisticReposit
       template.findAndModify(query, update, DailyStatistic.class);
    }
 
+   @Override
+   public int incrementDailyStatistics(String serviceName, String serviceVersion, List<DailyStatistic> increments) {
+      // Ordered so that a statistic is always created before being incremented.
+      BulkOperations operations = template.bulkOps(BulkOperations.BulkMode.ORDERED, DailyStatistic.class);
+      for (DailyStatistic increment : increments) {
+         Query query = new Query(Criteria.where("day").is(increment.getDay())
+               .and("serviceName").is(serviceName)
+               .and("serviceVersion").is(serviceVersion));
+
+         // Create a 0 filled statistic if none, as reduce functions expect every hour to be present.
+         operations.upsert(query, new Update()
+               .setOnInsert("dailyCount", 0L)
+               .setOnInsert("hourlyCount", initializeCountMap(24))
+               .setOnInsert("minuteCount", initializeCountMap(24 * 60)));
+
+         Update update = new Update().inc("dailyCount", increment.getDailyCount());
+         for (Map.Entry<String, Integer> hourCount : increment.getHourlyCount().entrySet()) {
+            update.inc("hourlyCount." + hourCount.getKey(), hourCount.getValue());
+         }
+         for (Map.Entry<String, Integer> minuteCount : increment.getMinuteCount().entrySet()) {
+            update.inc("minuteCount." + minuteCount.getKey(), minuteCount.getValue());
+         }
+         operations.updateOne(query, update);
+      }
+
+      try {
+         operations.execute();
+      } catch (BulkOperationException boe) {
+         // Operations are processed by pairs, those following the first error have not been applied.
+         int failedIndex = boe.getErrors().get(0).getIndex();
+         log.warn("Statistics of {}:{} have only been partially incremented: {}", serviceName, serviceVersion,
+               boe.getErrors().get(0).getMessage());
+         return failedIndex / 2;
+      }
+      return increments.size();
+   }
+
    @Override
    public DailyStatistic aggregateDailyStatistics(String day) {
       
@@ -125,6 +166,14 @@ public class DailyStatisticRepositoryImpl implements CustomDailyStatisticReposit
    }
    
    
+   private Map<String, Integer> initializeCountMap(int size) {
+      Map<String, Integer> result = new HashMap<>(size);
+      for (int i = 0; i < size; i++) {
+         result.put(String.valueOf(i), 0);
+      }
+      return result;
+   }
+
    /** Utility class used for wrapping a DailyStatistic object within MapReduce command results. */
    public class WrappedDailyStatistic{
       private String id;
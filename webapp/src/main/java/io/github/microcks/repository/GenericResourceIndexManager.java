@@ -0,0 +1,336 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.repository;
+
+import io.github.microcks.domain.GenericResource;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This component tracks the shapes of JSON queries on GenericResources (the payload fields they filter) and
+ * automatically manages Mongo compound indexes {@code (serviceId, payload.<field>...)} for them. Shapes are
+ * recorded on each query; a periodic review creates the index of a shape once it has been hit more than
+ * {@code mocks.generic-resource-store.auto-index.threshold} times, and drops the automatic indexes whose shapes
+ * have not been hit during {@code mocks.generic-resource-store.auto-index.idle-drop-ms}. Only indexes created by
+ * this component (named with the {@code auto_} prefix) are ever dropped. Index names end with a hash of their
+ * fields list so that different lists never share a name.
+ * <p>
+ * Only the top-level fields of queries are considered: fields within logical operators are not prefixed as
+ * payload fields by GenericResourceRepository and cannot use such indexes. This component is only active when
+ * Mongo store is used.
+ * @author laurent
+ */
+@Component
+@ConditionalOnProperty(value = "mocks.generic-resource-store.type", havingValue = "mongo", matchIfMissing = true)
+public class GenericResourceIndexManager {
+
+   /** A simple logger for diagnostic messages. */
+   private static Logger log = LoggerFactory.getLogger(GenericResourceIndexManager.class);
+
+   /** Prefix of the names of automatic indexes. */
+   public static final String AUTO_INDEX_PREFIX = "auto_";
+
+   /** Maximum number of payload fields of an indexed shape. */
+   private static final int MAX_INDEXED_FIELDS = 4;
+
+   /** Maximum number of tracked shapes, others are ignored. */
+   private static final int MAX_SHAPES = 10000;
+
+   /** The state of the automatic index of a query shape. */
+   public enum IndexState {
+      NONE,
+      CREATED,
+      FAILED,
+      TOO_WIDE
+   }
+
+   @Value("${mocks.generic-resource-store.auto-index.enabled:true}")
+   private final Boolean enabled = true;
+
+   @Value("${mocks.generic-resource-store.auto-index.threshold:100}")
+   private final Long threshold = 100L;
+
+   @Value("${mocks.generic-resource-store.auto-index.idle-drop-ms:86400000}")
+   private final Long idleDropDelay = 86400000L;
+
+   @Value("${mocks.generic-resource-store.auto-index.max-indexes:16}")
+   private final Integer maxIndexes = 16;
+
+   @Autowired
+   private MongoTemplate template;
+
+   /** Statistics of query shapes indexed by serviceId and fields. */
+   private final Map<List<String>, QueryShape> shapes = new ConcurrentHashMap<>();
+
+   /** Automatic indexes indexed by payload fields. */
+   private final Map<List<String>, AutoIndex> indexes = new ConcurrentHashMap<>();
+
+   private volatile boolean existingIndexesLoaded = false;
+
+
+   /**
+    * Record the shape of a query on GenericResources of a Service.
+    * @param serviceId The identifier of Service owning resources
+    * @param query The query on payload fields
+    */
+   public void recordQuery(String serviceId, Document query) {
+      List<String> fields = getQueryFields(query);
+      if (fields.isEmpty()) {
+         return;
+      }
+      List<String> key = new ArrayList<>(fields.size() + 1);
+      key.add(serviceId);
+      key.addAll(fields);
+      QueryShape shape = shapes.get(key);
+      if (shape == null) {
+         if (shapes.size() >= MAX_SHAPES) {
+            return;
+         }
+         shape = shapes.computeIfAbsent(key, k -> new QueryShape(serviceId, fields));
+      }
+      shape.hits.increment();
+      shape.lastSeen = System.currentTimeMillis();
+   }
+
+   /**
+    * Get the top-level payload fields filtered by a query, sorted by name. Logical operators are skipped.
+    * @param query The query on payload fields
+    * @return The filtered fields
+    */
+   public static List<String> getQueryFields(Document query) {
+      TreeSet<String> fields = new TreeSet<>();
+      for (String key : query.keySet()) {
+         if (!key.startsWith("$")) {
+            fields.add(key);
+         }
+      }
+      return new ArrayList<>(fields);
+   }
+
+   /**
+    * Build the name of the automatic index of payload fields.
+    * @param fields The payload fields, sorted by name
+    * @return The index name: prefix, fields and a hash of fields list
+    */
+   static String buildIndexName(List<String> fields) {
+      try {
+         MessageDigest digest = MessageDigest.getInstance("SHA-1");
+         // Null character cannot be part of a field name.
+         byte[] hash = digest.digest(String.join("\u0000", fields).getBytes(StandardCharsets.UTF_8));
+         StringBuilder name = new StringBuilder(AUTO_INDEX_PREFIX).append(String.join("_", fields)).append('_');
+         for (int i = 0; i < 4; i++) {
+            name.append(String.format("%02x", hash[i]));
+         }
+         return name.toString();
+      } catch (NoSuchAlgorithmException nsae) {
+         throw new IllegalStateException("SHA-1 is not available", nsae);
+      }
+   }
+
+   /** @return The observed query shapes with their hit counts and index state, most used first */
+   public List<QueryShape> getQueryShapes() {
+      List<QueryShape> results = new ArrayList<>(shapes.values());
+      results.sort((s1, s2) -> Long.compare(s2.getHits(), s1.getHits()));
+      return results;
+   }
+
+   /** Review query shapes for creating indexes of the most used ones and dropping the unused ones. */
+   @Scheduled(fixedDelayString = "${mocks.generic-resource-store.auto-index.review-interval-ms:60000}",
+         initialDelayString = "${mocks.generic-resource-store.auto-index.review-interval-ms:60000}")
+   public void reviewIndexes() {
+      if (!enabled) {
+         return;
+      }
+      IndexOperations indexOperations = template.indexOps(GenericResource.class);
+      if (!existingIndexesLoaded) {
+         loadExistingIndexes(indexOperations);
+      }
+
+      // Sum the hits and last use of each field set over services.
+      Map<List<String>, Long> hits = new HashMap<>();
+      Map<List<String>, Long> lastSeen = new HashMap<>();
+      for (QueryShape shape : shapes.values()) {
+         hits.merge(shape.fields, shape.getHits(), Long::sum);
+         lastSeen.merge(shape.fields, shape.lastSeen, Math::max);
+      }
+
+      // Create the indexes of the most used shapes first.
+      List<List<String>> candidates = new ArrayList<>(hits.keySet());
+      candidates.sort((f1, f2) -> Long.compare(hits.get(f2), hits.get(f1)));
+      for (List<String> fields : candidates) {
+         AutoIndex index = indexes.computeIfAbsent(fields, AutoIndex::new);
+         if (index.state == IndexState.NONE && hits.get(fields) - index.droppedHits >= threshold) {
+            if (fields.size() > MAX_INDEXED_FIELDS) {
+               index.state = IndexState.TOO_WIDE;
+            } else if (countCreatedIndexes() < maxIndexes) {
+               createIndex(indexOperations, index);
+            }
+         }
+      }
+
+      // Drop the automatic indexes that are no longer used.
+      long now = System.currentTimeMillis();
+      for (AutoIndex index : indexes.values()) {
+         long lastUse = Math.max(lastSeen.getOrDefault(index.fields, 0L), index.createdTime);
+         if (index.state == IndexState.CREATED && now - lastUse > idleDropDelay) {
+            dropIndex(indexOperations, index, hits.getOrDefault(index.fields, 0L));
+         }
+      }
+   }
+
+   private void loadExistingIndexes(IndexOperations indexOperations) {
+      try {
+         for (IndexInfo info : indexOperations.getIndexInfo()) {
+            if (info.getName().startsWith(AUTO_INDEX_PREFIX)) {
+               List<String> fields = new ArrayList<>();
+               info.getIndexFields().stream()
+                     .map(field -> field.getKey())
+                     .filter(field -> field.startsWith("payload."))
+                     .forEach(field -> fields.add(field.substring("payload.".length())));
+               // Keep actual name as it may have been built differently.
+               AutoIndex index = indexes.computeIfAbsent(fields, AutoIndex::new);
+               index.name = info.getName();
+               index.state = IndexState.CREATED;
+               index.createdTime = System.currentTimeMillis();
+            }
+         }
+         existingIndexesLoaded = true;
+      } catch (Exception e) {
+         log.warn("Existing GenericResource indexes cannot be listed", e);
+      }
+   }
+
+   private void createIndex(IndexOperations indexOperations, AutoIndex index) {
+      Index definition = new Index().on("serviceId", Sort.Direction.ASC).named(index.name).background();
+      for (String field : index.fields) {
+         definition.on("payload." + field, Sort.Direction.ASC);
+      }
+      try {
+         log.info("Creating GenericResource index {} for frequent queries on {}", index.name, index.fields);
+         indexOperations.ensureIndex(definition);
+         index.state = IndexState.CREATED;
+         index.createdTime = System.currentTimeMillis();
+         index.error = null;
+      } catch (Exception e) {
+         log.error("GenericResource index {} cannot be created", index.name, e);
+         index.state = IndexState.FAILED;
+         index.error = e.getMessage();
+      }
+   }
+
+   private void dropIndex(IndexOperations indexOperations, AutoIndex index, long currentHits) {
+      try {
+         log.info("Dropping unused GenericResource index {}", index.name);
+         indexOperations.dropIndex(index.name);
+         index.state = IndexState.NONE;
+         // Index will be created again only if shape is hit enough from now.
+         index.droppedHits = currentHits;
+      } catch (Exception e) {
+         log.error("GenericResource index {} cannot be dropped", index.name, e);
+      }
+   }
+
+   private long countCreatedIndexes() {
+      return indexes.values().stream().filter(index -> index.state == IndexState.CREATED).count();
+   }
+
+   /** An automatic index on a set of payload fields. */
+   private static class AutoIndex {
+      private final List<String> fields;
+      private volatile String name;
+      private volatile IndexState state = IndexState.NONE;
+      private volatile long createdTime;
+      private volatile String error;
+      private long droppedHits;
+
+      private AutoIndex(List<String> fields) {
+         this.fields = fields;
+         this.name = buildIndexName(fields);
+      }
+   }
+
+   /** The statistics of a query shape: the payload fields filtered by queries on the resources of a Service. */
+   public class QueryShape {
+      private final String serviceId;
+      private final List<String> fields;
+      private final LongAdder hits = new LongAdder();
+      private volatile long lastSeen;
+
+      private QueryShape(String serviceId, List<String> fields) {
+         this.serviceId = serviceId;
+         this.fields = Collections.unmodifiableList(fields);
+      }
+
+      public String getServiceId() {
+         return serviceId;
+      }
+
+      public List<String> getFields() {
+         return fields;
+      }
+
+      public long getHits() {
+         return hits.sum();
+      }
+
+      public Date getLastSeen() {
+         return new Date(lastSeen);
+      }
+
+      public String getIndexName() {
+         AutoIndex index = indexes.get(fields);
+         return index != null && index.state == IndexState.CREATED ? index.name : null;
+      }
+
+      public IndexState getIndexState() {
+         AutoIndex index = indexes.get(fields);
+         return index != null ? index.state : IndexState.NONE;
+      }
+
+      public String getIndexError() {
+         AutoIndex index = indexes.get(fields);
+         return index != null ? index.error : null;
+      }
+   }
+}
@@ -0,0 +1,419 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.repository;
+
+import org.bson.BsonRegularExpression;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * A compiled JSON query on GenericResource payloads (a Mongo query whose keys are payload fields) that can be
+ * evaluated in memory. Query is parsed once and turned into predicates following Mongo matching rules: dotted paths,
+ * array fields matching when one of their elements matches, numbers compared whatever their type. Supported
+ * operators are {@code $eq, $ne, $gt, $gte, $lt, $lte, $in, $nin, $exists, $regex, $size, $all, $elemMatch, $not,
+ * $and, $or} and {@code $nor}. Compiled queries are immutable and thread-safe.
+ * @author laurent
+ */
+public class GenericResourceQuery {
+
+   private final Predicate<Object> predicate;
+   private final Map<String, Object> equalityCriteria = new LinkedHashMap<>();
+
+   private GenericResourceQuery(Document query) {
+      this.predicate = compileDocument(query);
+      for (Map.Entry<String, Object> criterion : query.entrySet()) {
+         Object value = criterion.getValue();
+         if (isOperatorDocument(value) && ((Document) value).size() == 1 && ((Document) value).containsKey("$eq")) {
+            value = ((Document) value).get("$eq");
+         }
+         if (!criterion.getKey().startsWith("$") && isScalar(value)) {
+            equalityCriteria.put(criterion.getKey(), value);
+         }
+      }
+   }
+
+   /**
+    * Compile a JSON query.
+    * @param jsonQuery The JSON query to compile
+    * @return The compiled query
+    * @throws org.bson.json.JsonParseException if query is not a valid JSON document
+    * @throws IllegalArgumentException if query uses an unsupported operator
+    */
+   public static GenericResourceQuery compile(String jsonQuery) {
+      return new GenericResourceQuery(Document.parse(jsonQuery));
+   }
+
+   /**
+    * Tell if a resource payload matches this query.
+    * @param payload The payload to test
+    * @return True if payload matches
+    */
+   public boolean matches(Document payload) {
+      return payload != null && predicate.test(payload);
+   }
+
+   /** @return The fields constrained to be equal to a scalar value (usable for index lookups) and these values */
+   public Map<String, Object> getEqualityCriteria() {
+      return Collections.unmodifiableMap(equalityCriteria);
+   }
+
+   /**
+    * Resolve the values of a payload field as Mongo does: a dotted path traverses embedded documents and arrays,
+    * an array value gives the array itself and its elements.
+    * @param payload The payload to read
+    * @param path The dotted path of field
+    * @return The values of field, empty if field is missing
+    */
+   public static List<Object> resolveValues(Document payload, String path) {
+      List<Object> values = new ArrayList<>(2);
+      resolve(payload, path.split("\\."), 0, values);
+      return values;
+   }
+
+   private static void resolve(Object current, String[] segments, int index, List<Object> values) {
+      if (index == segments.length) {
+         values.add(current);
+         if (current instanceof List) {
+            values.addAll((List<?>) current);
+         }
+      } else if (current instanceof Map) {
+         Map<?, ?> map = (Map<?, ?>) current;
+         if (map.containsKey(segments[index])) {
+            resolve(map.get(segments[index]), segments, index + 1, values);
+         }
+      } else if (current instanceof List) {
+         List<?> list = (List<?>) current;
+         int position = parsePosition(segments[index]);
+         if (position >= 0 && position < list.size()) {
+            resolve(list.get(position), segments, index + 1, values);
+         }
+         for (Object element : list) {
+            if (element instanceof Map) {
+               resolve(element, segments, index, values);
+            }
+         }
+      }
+   }
+
+   private static int parsePosition(String segment) {
+      for (int i = 0; i < segment.length(); i++) {
+         if (!Character.isDigit(segment.charAt(i))) {
+            return -1;
+         }
+      }
+      return segment.isEmpty() || segment.length() > 9 ? -1 : Integer.parseInt(segment);
+   }
+
+   /** Compile a query document into a predicate on a document (non documents never match). */
+   private static Predicate<Object> compileDocument(Document query) {
+      List<Predicate<Document>> predicates = new ArrayList<>(query.size());
+      for (Map.Entry<String, Object> criterion : query.entrySet()) {
+         String key = criterion.getKey();
+         switch (key) {
+            case "$and":
+               List<Predicate<Object>> all = compileDocuments(key, criterion.getValue());
+               predicates.add(document -> all.stream().allMatch(p -> p.test(document)));
+               break;
+            case "$or":
+               List<Predicate<Object>> any = compileDocuments(key, criterion.getValue());
+               predicates.add(document -> any.stream().anyMatch(p -> p.test(document)));
+               break;
+            case "$nor":
+               List<Predicate<Object>> none = compileDocuments(key, criterion.getValue());
+               predicates.add(document -> none.stream().noneMatch(p -> p.test(document)));
+               break;
+            default:
+               if (key.startsWith("$")) {
+                  throw new IllegalArgumentException("Unsupported query operator " + key);
+               }
+               String[] segments = key.split("\\.");
+               Predicate<List<Object>> condition = compileCondition(criterion.getValue());
+               predicates.add(document -> {
+                  List<Object> values = new ArrayList<>(2);
+                  resolve(document, segments, 0, values);
+                  return condition.test(values);
+               });
+         }
+      }
+      return object -> {
+         if (!(object instanceof Document)) {
+            return false;
+         }
+         for (Predicate<Document> predicate : predicates) {
+            if (!predicate.test((Document) object)) {
+               return false;
+            }
+         }
+         return true;
+      };
+   }
+
+   private static List<Predicate<Object>> compileDocuments(String operator, Object operand) {
+      if (!(operand instanceof List)) {
+         throw new IllegalArgumentException(operator + " expects an array of queries");
+      }
+      List<Predicate<Object>> predicates = new ArrayList<>();
+      for (Object element : (List<?>) operand) {
+         if (!(element instanceof Document)) {
+            throw new IllegalArgumentException(operator + " expects an array of queries");
+         }
+         predicates.add(compileDocument((Document) element));
+      }
+      return predicates;
+   }
+
+   /** Compile the condition on a field: an operators document, a regular expression or a value to be equal to. */
+   private static Predicate<List<Object>> compileCondition(Object condition) {
+      if (isOperatorDocument(condition)) {
+         return compileOperators((Document) condition);
+      }
+      Pattern pattern = toPattern(condition, null);
+      if (pattern != null) {
+         return values -> anyMatchPattern(values, pattern);
+      }
+      return values -> anyEquals(values, condition);
+   }
+
+   private static Predicate<List<Object>> compileOperators(Document operators) {
+      List<Predicate<List<Object>>> predicates = new ArrayList<>(operators.size());
+      for (Map.Entry<String, Object> operator : operators.entrySet()) {
+         Object operand = operator.getValue();
+         switch (operator.getKey()) {
+            case "$eq":
+               predicates.add(values -> anyEquals(values, operand));
+               break;
+            case "$ne":
+               predicates.add(values -> !anyEquals(values, operand));
+               break;
+            case "$gt":
+               predicates.add(values -> anyCompare(values, operand, c -> c > 0));
+               break;
+            case "$gte":
+               predicates.add(values -> anyCompare(values, operand, c -> c >= 0));
+               break;
+            case "$lt":
+               predicates.add(values -> anyCompare(values, operand, c -> c < 0));
+               break;
+            case "$lte":
+               predicates.add(values -> anyCompare(values, operand, c -> c <= 0));
+               break;
+            case "$in":
+               List<?> in = toList(operator.getKey(), operand);
+               predicates.add(values -> in.stream().anyMatch(expected -> anyEquals(values, expected)));
+               break;
+            case "$nin":
+               List<?> nin = toList(operator.getKey(), operand);
+               predicates.add(values -> nin.stream().noneMatch(expected -> anyEquals(values, expected)));
+               break;
+            case "$all":
+               List<?> all = toList(operator.getKey(), operand);
+               predicates.add(values -> !all.isEmpty() && all.stream().allMatch(expected -> anyEquals(values, expected)));
+               break;
+            case "$exists":
+               boolean exists = !Boolean.FALSE.equals(operand) && !Integer.valueOf(0).equals(operand);
+               predicates.add(values -> values.isEmpty() != exists);
+               break;
+            case "$regex":
+               Object options = operators.get("$options");
+               Pattern pattern = toPattern(operand, options != null ? options.toString() : "");
+               if (pattern == null) {
+                  throw new IllegalArgumentException("$regex expects a regular expression");
+               }
+               predicates.add(values -> anyMatchPattern(values, pattern));
+               break;
+            case "$options":
+               // Consumed by $regex.
+               break;
+            case "$size":
+               if (!(operand instanceof Number)) {
+                  throw new IllegalArgumentException("$size expects a number");
+               }
+               int size = ((Number) operand).intValue();
+               predicates.add(values -> values.stream().anyMatch(v -> v instanceof List && ((List<?>) v).size() == size));
+               break;
+            case "$elemMatch":
+               if (!(operand instanceof Document)) {
+                  throw new IllegalArgumentException("$elemMatch expects a query");
+               }
+               Predicate<Object> elementPredicate;
+               if (isOperatorDocument(operand)) {
+                  Predicate<List<Object>> elementOperators = compileOperators((Document) operand);
+                  elementPredicate = element -> elementOperators.test(Collections.singletonList(element));
+               } else {
+                  elementPredicate = compileDocument((Document) operand);
+               }
+               predicates.add(values -> values.stream().anyMatch(v -> v instanceof List
+                     && ((List<?>) v).stream().anyMatch(elementPredicate)));
+               break;
+            case "$not":
+               Predicate<List<Object>> negated = compileCondition(operand);
+               predicates.add(values -> !negated.test(values));
+               break;
+            default:
+               throw new IllegalArgumentException("Unsupported query operator " + operator.getKey());
+         }
+      }
+      return values -> {
+         for (Predicate<List<Object>> predicate : predicates) {
+            if (!predicate.test(values)) {
+               return false;
+            }
+         }
+         return true;
+      };
+   }
+
+   private static boolean isOperatorDocument(Object condition) {
+      if (condition instanceof Document && !((Document) condition).isEmpty()) {
+         for (String key : ((Document) condition).keySet()) {
+            if (!key.startsWith("$")) {
+               return false;
+            }
+         }
+         return true;
+      }
+      return false;
+   }
+
+   private static boolean isScalar(Object value) {
+      return value != null && !(value instanceof Map) && !(value instanceof List)
+            && toPattern(value, null) == null;
+   }
+
+   private static List<?> toList(String operator, Object operand) {
+      if (!(operand instanceof List)) {
+         throw new IllegalArgumentException(operator + " expects an array");
+      }
+      return (List<?>) operand;
+   }
+
+   private static Pattern toPattern(Object value, String options) {
+      if (value instanceof Pattern) {
+         return (Pattern) value;
+      }
+      if (value instanceof BsonRegularExpression) {
+         BsonRegularExpression regex = (BsonRegularExpression) value;
+         return Pattern.compile(regex.getPattern(), toFlags(regex.getOptions()));
+      }
+      if (value instanceof String && options != null) {
+         return Pattern.compile((String) value, toFlags(options));
+      }
+      return null;
+   }
+
+   private static int toFlags(String options) {
+      int flags = 0;
+      if (options != null) {
+         flags |= options.contains("i") ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0;
+         flags |= options.contains("m") ? Pattern.MULTILINE : 0;
+         flags |= options.contains("s") ? Pattern.DOTALL : 0;
+         flags |= options.contains("x") ? Pattern.COMMENTS : 0;
+      }
+      return flags;
+   }
+
+   private static boolean anyMatchPattern(List<Object> values, Pattern pattern) {
+      for (Object value : values) {
+         if (value instanceof String && pattern.matcher((String) value).find()) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /** Mongo equality: a missing field equals null and array fields are equal if one of their elements is. */
+   private static boolean anyEquals(List<Object> values, Object expected) {
+      if (expected == null && values.isEmpty()) {
+         return true;
+      }
+      for (Object value : values) {
+         if (valueEquals(value, expected)) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   static boolean valueEquals(Object value, Object expected) {
+      if (value instanceof Number && expected instanceof Number) {
+         return compareNumbers((Number) value, (Number) expected) == 0;
+      }
+      if (value instanceof List && expected instanceof List) {
+         List<?> list = (List<?>) value;
+         List<?> expectedList = (List<?>) expected;
+         if (list.size() != expectedList.size()) {
+            return false;
+         }
+         for (int i = 0; i < list.size(); i++) {
+            if (!valueEquals(list.get(i), expectedList.get(i))) {
+               return false;
+            }
+         }
+         return true;
+      }
+      return Objects.equals(value, expected);
+   }
+
+   /** Comparisons only happen between values of the same type bracket (numbers, strings, dates, booleans). */
+   private static boolean anyCompare(List<Object> values, Object operand, Predicate<Integer> test) {
+      for (Object value : values) {
+         Integer comparison = compare(value, operand);
+         if (comparison != null && test.test(comparison)) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   @SuppressWarnings("unchecked")
+   private static Integer compare(Object value, Object operand) {
+      if (value instanceof Number && operand instanceof Number) {
+         return compareNumbers((Number) value, (Number) operand);
+      }
+      if ((value instanceof String && operand instanceof String)
+            || (value instanceof Date && operand instanceof Date)
+            || (value instanceof Boolean && operand instanceof Boolean)
+            || (value != null && operand != null && value.getClass().equals(operand.getClass())
+                  && value instanceof Comparable)) {
+         return ((Comparable<Object>) value).compareTo(operand);
+      }
+      return null;
+   }
+
+   private static int compareNumbers(Number a, Number b) {
+      if (isIntegral(a) && isIntegral(b)) {
+         return Long.compare(a.longValue(), b.longValue());
+      }
+      // Adding 0.0 turns -0.0 into 0.0 that Double.compare would consider as different.
+      return Double.compare(a.doubleValue() + 0.0, b.doubleValue() + 0.0);
+   }
+
+   private static boolean isIntegral(Number number) {
+      return number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte;
+   }
+}
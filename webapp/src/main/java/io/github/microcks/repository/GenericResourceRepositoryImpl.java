@@ -42,8 +42,13 @@ public class GenericResourceRepositoryImpl implements CustomGenericResourceRepos
 
    @Override
    public List<GenericResource> findByServiceIdAndJSONQuery(String serviceId, String jsonQuery) {
-      // First parse query document and prepare a list of key to rename then remove.
-      Document query = Document.parse(jsonQuery);
+      // First parse query document.
+      return findByServiceIdAndQuery(serviceId, Document.parse(jsonQuery));
+   }
+
+   @Override
+   public List<GenericResource> findByServiceIdAndQuery(String serviceId, Document query) {
+      // Prepare a list of key to rename then remove.
       ArrayList<String> keysToRemove = new ArrayList<>();
 
       // Collect the keys of document that should be updated.
@@ -60,6 +65,6 @@ public class GenericResourceRepositoryImpl implements CustomGenericResourceRepos
       // Finally, append serviceId criterion before launching selection.
       query.append("serviceId", serviceId);
 
-      return template.find(new BasicQuery(query.toJson()), GenericResource.class);
+      return template.find(new BasicQuery(query), GenericResource.class);
    }
 }
@@ -0,0 +1,127 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.repository;
+
+import io.github.microcks.domain.GenericResource;
+
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * A store for GenericResource domain objects used by dynamic mocks. Implementation is selected per deployment
+ * using the {@code mocks.generic-resource-store.type} property: {@code mongo} (the default) directly uses
+ * GenericResourceRepository whereas {@code memory} keeps resources in memory, optionally writing them behind
+ * to Mongo. Resources are always looked up within the scope of their Service.
+ * @author laurent
+ */
+public interface GenericResourceStore {
+
+   /**
+    * Save a new or existing resource. An identifier is assigned to new resources.
+    * @param resource The resource to save
+    * @return The saved resource
+    */
+   GenericResource save(GenericResource resource);
+
+   /**
+    * Insert a batch of new resources. Identifiers are assigned to resources.
+    * @param resources The resources to insert
+    * @param ordered Whether insertion should stop at first error (items after it are not processed)
+    * @return The error messages indexed by position of failed resource into batch, sorted by position (empty if none)
+    */
+   Map<Integer, String> insertAll(List<GenericResource> resources, boolean ordered);
+
+   /**
+    * Replace the payload of a batch of existing resources of a Service. Unknown resources are reported as errors.
+    * @param serviceId The identifier of Service owning resources
+    * @param resources The resources to update (with their identifier and new payload)
+    * @param ordered Whether update should stop at first error (items after it are not processed)
+    * @return The error messages indexed by position of failed resource into batch, sorted by position (empty if none)
+    */
+   Map<Integer, String> updateAll(String serviceId, List<GenericResource> resources, boolean ordered);
+
+   /**
+    * Delete a batch of resources of a Service. Unknown resources are reported as errors.
+    * @param serviceId The identifier of Service owning resources
+    * @param ids The identifiers of resources to delete
+    * @param ordered Whether deletion should stop at first error (items after it are not processed)
+    * @return The error messages indexed by position of failed identifier into batch, sorted by position (empty if none)
+    */
+   Map<Integer, String> deleteAll(String serviceId, List<String> ids, boolean ordered);
+
+   /**
+    * Find a resource of a Service.
+    * @param serviceId The identifier of Service owning resource
+    * @param id The identifier of resource
+    * @return The resource or null if not found
+    */
+   GenericResource findById(String serviceId, String id);
+
+   /**
+    * Delete a resource of a Service.
+    * @param serviceId The identifier of Service owning resource
+    * @param id The identifier of resource
+    */
+   void deleteById(String serviceId, String id);
+
+   /**
+    * Find a page of resources of a Service.
+    * @param serviceId The identifier of Service owning resources
+    * @param pageable The page to retrieve
+    * @return The resources of page
+    */
+   List<GenericResource> findByServiceId(String serviceId, Pageable pageable);
+
+   /**
+    * Stream a page of resources of a Service ordered by identifier (keyset pagination). Stream may hold a
+    * database cursor and must be closed once consumed.
+    * @param serviceId The identifier of Service owning resources
+    * @param afterId The identifier of the last resource of previous page (null for first page)
+    * @param size The maximum number of resources of page
+    * @return The stream of resources of page
+    */
+   Stream<GenericResource> streamByServiceId(String serviceId, String afterId, int size);
+
+   /**
+    * Get the continuation token of a page of resources of a Service ordered by identifier.
+    * @param serviceId The identifier of Service owning resources
+    * @param afterId The identifier of the last resource of previous page (null for first page)
+    * @param size The maximum number of resources of page
+    * @return The identifier of the last resource of page if other resources follow it, null otherwise
+    */
+   String getContinuationToken(String serviceId, String afterId, int size);
+
+   /**
+    * Find resources of a Service whose payload matches a JSON query (a Mongo query on payload fields).
+    * @param serviceId The identifier of Service owning resources
+    * @param jsonQuery The JSON query
+    * @return The matching resources
+    */
+   List<GenericResource> findByServiceIdAndJSONQuery(String serviceId, String jsonQuery);
+
+   /**
+    * Count the resources of a Service.
+    * @param serviceId The identifier of Service owning resources
+    * @return The number of resources
+    */
+   long countByServiceId(String serviceId);
+}
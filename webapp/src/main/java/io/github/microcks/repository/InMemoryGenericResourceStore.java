@@ -0,0 +1,454 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.repository;
+
+import io.github.microcks.cache.BoundedCache;
+import io.github.microcks.domain.GenericResource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * A GenericResourceStore keeping resources in memory, within a map per Service ordered by identifier. Payload
+ * fields listed into {@code mocks.generic-resource-store.indexed-fields} get a secondary index per Service, used
+ * by JSON queries having an equality criterion on them; other queries scan the Service resources.
+ * <p>
+ * When write-behind is enabled, resources of a Service are loaded from Mongo on first access and changes are
+ * written back asynchronously: the last change of each resource is queued and flushed in bulk every
+ * {@code mocks.generic-resource-store.write-behind.flush-interval-ms}. Changes of the last interval are lost if
+ * process crashes. When write-behind is disabled, resources only live in memory (for ephemeral environments).
+ * <p>
+ * Stored resources are never exposed: callers get copies of them with their own top-level payload document.
+ * @author laurent
+ */
+@Component
+@ConditionalOnProperty(value = "mocks.generic-resource-store.type", havingValue = "memory")
+public class InMemoryGenericResourceStore implements GenericResourceStore {
+
+   /** A simple logger for diagnostic messages. */
+   private static Logger log = LoggerFactory.getLogger(InMemoryGenericResourceStore.class);
+
+   /** Marker of a pending deletion into write-behind queue. */
+   private static final GenericResource DELETED = new GenericResource();
+
+   @Value("${mocks.generic-resource-store.indexed-fields:}")
+   private final String[] indexedFields = new String[0];
+
+   @Value("${mocks.generic-resource-store.write-behind.enabled:true}")
+   private final Boolean writeBehind = true;
+
+   @Value("${mocks.generic-resource-store.write-behind.flush-interval-ms:1000}")
+   private final Long flushInterval = 1000L;
+
+   @Value("${mocks.generic-resource-store.write-behind.batch-size:1000}")
+   private final Integer batchSize = 1000;
+
+   @Autowired
+   private GenericResourceRepository genericResourceRepository;
+
+   @Autowired
+   private MongoTemplate template;
+
+   @Autowired
+   private MeterRegistry meterRegistry;
+
+   private final Map<String, ServiceResources> services = new ConcurrentHashMap<>();
+
+   /** Last pending change of resources indexed by resource identifier. */
+   private final Map<String, GenericResource> pendingWrites = new ConcurrentHashMap<>();
+
+   private BoundedCache<String, GenericResourceQuery> queries;
+
+   private ScheduledThreadPoolExecutor writer;
+
+   private Counter flushedWrites;
+
+
+   @PostConstruct
+   public void initialize() {
+      queries = new BoundedCache<>(1000, query -> 1);
+      if (writeBehind) {
+         log.info("Writing GenericResources behind to Mongo every {} ms", flushInterval);
+         flushedWrites = Counter.builder("mocks.generic-resources.flushed")
+               .description("GenericResource changes written behind to Mongo")
+               .register(meterRegistry);
+         Gauge.builder("mocks.generic-resources.pending", pendingWrites, Map::size)
+               .description("GenericResource changes waiting to be written behind to Mongo")
+               .register(meterRegistry);
+         writer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "generic-resource-writer");
+            thread.setDaemon(true);
+            return thread;
+         });
+         writer.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+      } else {
+         log.info("GenericResources are only kept in memory, they will be lost on restart");
+      }
+   }
+
+   @PreDestroy
+   public void shutdown() {
+      if (writer != null) {
+         writer.shutdown();
+         try {
+            writer.awaitTermination(flushInterval, TimeUnit.MILLISECONDS);
+         } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+         }
+         // Write last changes before leaving.
+         flush();
+      }
+   }
+
+   @Override
+   public GenericResource save(GenericResource resource) {
+      if (resource.getId() == null) {
+         resource.setId(new ObjectId().toHexString());
+      }
+      GenericResource stored = copyOf(resource);
+      getServiceResources(resource.getServiceId()).put(stored);
+      if (writeBehind) {
+         pendingWrites.put(stored.getId(), stored);
+      }
+      return resource;
+   }
+
+   @Override
+   public Map<Integer, String> insertAll(List<GenericResource> resources, boolean ordered) {
+      for (GenericResource resource : resources) {
+         resource.setId(null);
+         save(resource);
+      }
+      return new TreeMap<>();
+   }
+
+   @Override
+   public Map<Integer, String> updateAll(String serviceId, List<GenericResource> resources, boolean ordered) {
+      Map<Integer, String> errors = new TreeMap<>();
+      ServiceResources serviceResources = getServiceResources(serviceId);
+      for (int i = 0; i < resources.size(); i++) {
+         GenericResource resource = resources.get(i);
+         if (!serviceResources.resources.containsKey(resource.getId())) {
+            errors.put(i, "Resource " + resource.getId() + " not found");
+            if (ordered) {
+               break;
+            }
+         } else {
+            resource.setServiceId(serviceId);
+            save(resource);
+         }
+      }
+      return errors;
+   }
+
+   @Override
+   public Map<Integer, String> deleteAll(String serviceId, List<String> ids, boolean ordered) {
+      Map<Integer, String> errors = new TreeMap<>();
+      ServiceResources serviceResources = getServiceResources(serviceId);
+      for (int i = 0; i < ids.size(); i++) {
+         if (serviceResources.remove(ids.get(i))) {
+            if (writeBehind) {
+               pendingWrites.put(ids.get(i), DELETED);
+            }
+         } else {
+            errors.put(i, "Resource " + ids.get(i) + " not found");
+            if (ordered) {
+               break;
+            }
+         }
+      }
+      return errors;
+   }
+
+   @Override
+   public GenericResource findById(String serviceId, String id) {
+      GenericResource resource = getServiceResources(serviceId).resources.get(id);
+      return resource != null ? copyOf(resource) : null;
+   }
+
+   @Override
+   public void deleteById(String serviceId, String id) {
+      if (getServiceResources(serviceId).remove(id) && writeBehind) {
+         pendingWrites.put(id, DELETED);
+      }
+   }
+
+   @Override
+   public List<GenericResource> findByServiceId(String serviceId, Pageable pageable) {
+      Iterator<GenericResource> iterator = getServiceResources(serviceId).resources.values().iterator();
+      long skipped = 0;
+      while (pageable.isPaged() && skipped < pageable.getOffset() && iterator.hasNext()) {
+         iterator.next();
+         skipped++;
+      }
+      List<GenericResource> results = new ArrayList<>();
+      while (iterator.hasNext() && (pageable.isUnpaged() || results.size() < pageable.getPageSize())) {
+         results.add(copyOf(iterator.next()));
+      }
+      return results;
+   }
+
+   @Override
+   public Stream<GenericResource> streamByServiceId(String serviceId, String afterId, int size) {
+      return getPage(serviceId, afterId).values().stream().limit(size).map(InMemoryGenericResourceStore::copyOf);
+   }
+
+   @Override
+   public String getContinuationToken(String serviceId, String afterId, int size) {
+      Iterator<String> ids = getPage(serviceId, afterId).keySet().iterator();
+      String last = null;
+      for (int i = 0; i < size && ids.hasNext(); i++) {
+         last = ids.next();
+      }
+      return ids.hasNext() ? last : null;
+   }
+
+   @Override
+   public List<GenericResource> findByServiceIdAndJSONQuery(String serviceId, String jsonQuery) {
+      GenericResourceQuery query = queries.get(jsonQuery, GenericResourceQuery::compile);
+      ServiceResources serviceResources = getServiceResources(serviceId);
+
+      List<GenericResource> results = new ArrayList<>();
+      List<String> candidates = serviceResources.findCandidates(query);
+      if (candidates != null) {
+         Collections.sort(candidates);
+         for (String id : candidates) {
+            GenericResource resource = serviceResources.resources.get(id);
+            if (resource != null && query.matches(resource.getPayload())) {
+               results.add(copyOf(resource));
+            }
+         }
+      } else {
+         for (GenericResource resource : serviceResources.resources.values()) {
+            if (query.matches(resource.getPayload())) {
+               results.add(copyOf(resource));
+            }
+         }
+      }
+      return results;
+   }
+
+   @Override
+   public long countByServiceId(String serviceId) {
+      return getServiceResources(serviceId).resources.size();
+   }
+
+   /** Write pending changes to Mongo in bulk. Failed batches are queued again unless a newer change exists. */
+   protected void flush() {
+      List<GenericResource> batch = new ArrayList<>(batchSize);
+      List<String> batchIds = new ArrayList<>(batchSize);
+      for (String id : pendingWrites.keySet()) {
+         GenericResource resource = pendingWrites.remove(id);
+         if (resource != null) {
+            batchIds.add(id);
+            batch.add(resource);
+            if (batch.size() == batchSize) {
+               writeBatch(batchIds, batch);
+               batchIds = new ArrayList<>(batchSize);
+               batch = new ArrayList<>(batchSize);
+            }
+         }
+      }
+      if (!batch.isEmpty()) {
+         writeBatch(batchIds, batch);
+      }
+   }
+
+   private void writeBatch(List<String> ids, List<GenericResource> batch) {
+      try {
+         BulkOperations operations = template.bulkOps(BulkOperations.BulkMode.UNORDERED, GenericResource.class);
+         for (int i = 0; i < batch.size(); i++) {
+            Query byId = new Query(Criteria.where("_id").is(ids.get(i)));
+            GenericResource resource = batch.get(i);
+            if (resource == DELETED) {
+               operations.remove(byId);
+            } else {
+               operations.upsert(byId, new Update()
+                     .set("serviceId", resource.getServiceId())
+                     .set("payload", resource.getPayload()));
+            }
+         }
+         operations.execute();
+         flushedWrites.increment(batch.size());
+         log.debug("Written {} GenericResource changes behind to Mongo", batch.size());
+      } catch (Exception e) {
+         log.error("GenericResource changes cannot be written to Mongo, they will be retried", e);
+         for (int i = 0; i < batch.size(); i++) {
+            pendingWrites.putIfAbsent(ids.get(i), batch.get(i));
+         }
+      }
+   }
+
+   private ConcurrentNavigableMap<String, GenericResource> getPage(String serviceId, String afterId) {
+      ConcurrentNavigableMap<String, GenericResource> resources = getServiceResources(serviceId).resources;
+      return afterId != null ? resources.tailMap(afterId, false) : resources;
+   }
+
+   private ServiceResources getServiceResources(String serviceId) {
+      ServiceResources serviceResources = services.computeIfAbsent(serviceId, id -> new ServiceResources(indexedFields));
+      if (writeBehind && !serviceResources.loaded) {
+         serviceResources.load(serviceId);
+      }
+      return serviceResources;
+   }
+
+   private static GenericResource copyOf(GenericResource resource) {
+      GenericResource copy = new GenericResource();
+      copy.setId(resource.getId());
+      copy.setServiceId(resource.getServiceId());
+      copy.setPayload(resource.getPayload() != null ? new Document(resource.getPayload()) : null);
+      return copy;
+   }
+
+   /** Get the keys of the scalar values of a resource field into an index. */
+   private static Set<Object> indexKeys(GenericResource resource, String field) {
+      Set<Object> keys = new HashSet<>();
+      for (Object value : GenericResourceQuery.resolveValues(resource.getPayload(), field)) {
+         if (value != null && !(value instanceof Map) && !(value instanceof List)) {
+            keys.add(indexKey(value));
+         }
+      }
+      return keys;
+   }
+
+   /** Index keys of equal values are equal: numbers of different types are normalized. */
+   private static Object indexKey(Object value) {
+      if (value instanceof Number) {
+         return ((Number) value).doubleValue() + 0.0;
+      }
+      return value;
+   }
+
+   /**
+    * The resources of a Service and their secondary indexes. Writes are serialized per Service whereas reads
+    * are lock-free: indexes may temporarily reference more resources than matching ones, never less.
+    */
+   private class ServiceResources {
+      private final ConcurrentNavigableMap<String, GenericResource> resources = new ConcurrentSkipListMap<>();
+      private final Map<String, Map<Object, Set<String>>> indexes = new ConcurrentHashMap<>();
+      private volatile boolean loaded = false;
+
+      private ServiceResources(String[] indexedFields) {
+         for (String field : indexedFields) {
+            if (!field.trim().isEmpty()) {
+               indexes.put(field.trim(), new ConcurrentHashMap<>());
+            }
+         }
+      }
+
+      private synchronized void load(String serviceId) {
+         if (!loaded) {
+            List<GenericResource> stored = genericResourceRepository.findByServiceId(serviceId, Pageable.unpaged());
+            for (GenericResource resource : stored) {
+               // Changes not yet written behind are more recent.
+               if (resources.putIfAbsent(resource.getId(), resource) == null) {
+                  index(resource);
+               }
+            }
+            log.debug("Loaded {} GenericResources of Service {} from Mongo", stored.size(), serviceId);
+            loaded = true;
+         }
+      }
+
+      private synchronized void put(GenericResource resource) {
+         GenericResource previous = resources.put(resource.getId(), resource);
+         // Index new values before removing previous ones so that unchanged values stay indexed.
+         index(resource);
+         if (previous != null) {
+            unindex(previous, resource);
+         }
+      }
+
+      private synchronized boolean remove(String id) {
+         GenericResource previous = resources.remove(id);
+         if (previous != null) {
+            unindex(previous, null);
+            return true;
+         }
+         return false;
+      }
+
+      /** @return The identifiers of resources that may match query, null if no index can be used */
+      private List<String> findCandidates(GenericResourceQuery query) {
+         for (Map.Entry<String, Object> criterion : query.getEqualityCriteria().entrySet()) {
+            Map<Object, Set<String>> index = indexes.get(criterion.getKey());
+            if (index != null) {
+               Set<String> ids = index.get(indexKey(criterion.getValue()));
+               return ids != null ? new ArrayList<>(ids) : new ArrayList<>();
+            }
+         }
+         return null;
+      }
+
+      private void index(GenericResource resource) {
+         for (Map.Entry<String, Map<Object, Set<String>>> index : indexes.entrySet()) {
+            for (Object key : indexKeys(resource, index.getKey())) {
+               index.getValue().computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(resource.getId());
+            }
+         }
+      }
+
+      private void unindex(GenericResource resource, GenericResource replacement) {
+         for (Map.Entry<String, Map<Object, Set<String>>> index : indexes.entrySet()) {
+            Set<Object> keys = indexKeys(resource, index.getKey());
+            if (replacement != null) {
+               keys.removeAll(indexKeys(replacement, index.getKey()));
+            }
+            for (Object key : keys) {
+               index.getValue().computeIfPresent(key, (k, ids) -> {
+                  ids.remove(resource.getId());
+                  return ids.isEmpty() ? null : ids;
+               });
+            }
+         }
+      }
+   }
+}
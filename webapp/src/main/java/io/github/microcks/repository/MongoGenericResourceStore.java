@@ -0,0 +1,234 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.repository;
+
+import io.github.microcks.domain.GenericResource;
+
+import com.mongodb.bulk.BulkWriteError;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.StreamUtils;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The default GenericResourceStore that directly reads and writes resources from/to Mongo. Shapes of JSON queries
+ * are recorded so that GenericResourceIndexManager can index the most used ones. Pages ordered by identifier are
+ * read through an index on {@code (serviceId, _id)} so that their cost does not depend on their position. Batches
+ * of resources are written using a single ordered or unordered bulk write.
+ * @author laurent
+ */
+@Component
+@ConditionalOnProperty(value = "mocks.generic-resource-store.type", havingValue = "mongo", matchIfMissing = true)
+public class MongoGenericResourceStore implements GenericResourceStore {
+
+   /** A simple logger for diagnostic messages. */
+   private static Logger log = LoggerFactory.getLogger(MongoGenericResourceStore.class);
+
+   @Autowired
+   private GenericResourceRepository genericResourceRepository;
+
+   @Autowired
+   private MongoTemplate template;
+
+   @Autowired
+   private GenericResourceIndexManager indexManager;
+
+   @PostConstruct
+   public void initialize() {
+      try {
+         template.indexOps(GenericResource.class).ensureIndex(new Index()
+               .on("serviceId", Sort.Direction.ASC).on("_id", Sort.Direction.ASC).named("serviceId_id"));
+      } catch (Exception e) {
+         log.warn("GenericResource index on serviceId and _id cannot be created", e);
+      }
+   }
+
+   @Override
+   public GenericResource save(GenericResource resource) {
+      return genericResourceRepository.save(resource);
+   }
+
+   @Override
+   public Map<Integer, String> insertAll(List<GenericResource> resources, boolean ordered) {
+      BulkOperations operations = template.bulkOps(getBulkMode(ordered), GenericResource.class);
+      List<Integer> positions = new ArrayList<>(resources.size());
+      for (int i = 0; i < resources.size(); i++) {
+         GenericResource resource = resources.get(i);
+         resource.setId(new ObjectId().toHexString());
+         operations.insert(resource);
+         positions.add(i);
+      }
+      return executeBulk(operations, positions, new TreeMap<>(), ordered);
+   }
+
+   @Override
+   public Map<Integer, String> updateAll(String serviceId, List<GenericResource> resources, boolean ordered) {
+      Set<String> existingIds = findExistingIds(serviceId,
+            resources.stream().map(GenericResource::getId).collect(Collectors.toList()));
+
+      TreeMap<Integer, String> errors = new TreeMap<>();
+      BulkOperations operations = template.bulkOps(getBulkMode(ordered), GenericResource.class);
+      List<Integer> positions = new ArrayList<>(resources.size());
+      for (int i = 0; i < resources.size(); i++) {
+         GenericResource resource = resources.get(i);
+         if (!existingIds.contains(resource.getId())) {
+            errors.put(i, "Resource " + resource.getId() + " not found");
+            if (ordered) {
+               break;
+            }
+         } else {
+            operations.updateOne(new Query(Criteria.where("_id").is(resource.getId()).and("serviceId").is(serviceId)),
+                  new Update().set("payload", resource.getPayload()));
+            positions.add(i);
+         }
+      }
+      return executeBulk(operations, positions, errors, ordered);
+   }
+
+   @Override
+   public Map<Integer, String> deleteAll(String serviceId, List<String> ids, boolean ordered) {
+      Set<String> existingIds = findExistingIds(serviceId, ids);
+
+      TreeMap<Integer, String> errors = new TreeMap<>();
+      BulkOperations operations = template.bulkOps(getBulkMode(ordered), GenericResource.class);
+      List<Integer> positions = new ArrayList<>(ids.size());
+      for (int i = 0; i < ids.size(); i++) {
+         if (!existingIds.contains(ids.get(i))) {
+            errors.put(i, "Resource " + ids.get(i) + " not found");
+            if (ordered) {
+               break;
+            }
+         } else {
+            operations.remove(new Query(Criteria.where("_id").is(ids.get(i)).and("serviceId").is(serviceId)));
+            positions.add(i);
+         }
+      }
+      return executeBulk(operations, positions, errors, ordered);
+   }
+
+   @Override
+   public GenericResource findById(String serviceId, String id) {
+      return genericResourceRepository.findById(id)
+            .filter(resource -> serviceId.equals(resource.getServiceId()))
+            .orElse(null);
+   }
+
+   @Override
+   public void deleteById(String serviceId, String id) {
+      template.remove(new Query(Criteria.where("_id").is(id).and("serviceId").is(serviceId)), GenericResource.class);
+   }
+
+   @Override
+   public List<GenericResource> findByServiceId(String serviceId, Pageable pageable) {
+      return genericResourceRepository.findByServiceId(serviceId, pageable);
+   }
+
+   @Override
+   public Stream<GenericResource> streamByServiceId(String serviceId, String afterId, int size) {
+      Query query = buildPageQuery(serviceId, afterId).limit(size);
+      return StreamUtils.createStreamFromIterator(template.stream(query, GenericResource.class));
+   }
+
+   @Override
+   public String getContinuationToken(String serviceId, String afterId, int size) {
+      // Get identifiers of the last resource of page and the following one using index only.
+      Query query = buildPageQuery(serviceId, afterId).skip(Math.max(0, size - 1)).limit(2);
+      query.fields().include("_id");
+      List<GenericResource> boundary = template.find(query, GenericResource.class);
+      return boundary.size() == 2 ? boundary.get(0).getId() : null;
+   }
+
+   @Override
+   public List<GenericResource> findByServiceIdAndJSONQuery(String serviceId, String jsonQuery) {
+      Document query = Document.parse(jsonQuery);
+      indexManager.recordQuery(serviceId, query);
+      return genericResourceRepository.findByServiceIdAndQuery(serviceId, query);
+   }
+
+   @Override
+   public long countByServiceId(String serviceId) {
+      return genericResourceRepository.countByServiceId(serviceId);
+   }
+
+   private static BulkOperations.BulkMode getBulkMode(boolean ordered) {
+      return ordered ? BulkOperations.BulkMode.ORDERED : BulkOperations.BulkMode.UNORDERED;
+   }
+
+   /** Get the identifiers of resources of a Service that exist among the given ones. */
+   private Set<String> findExistingIds(String serviceId, List<String> ids) {
+      Query query = new Query(Criteria.where("serviceId").is(serviceId).and("_id").in(ids));
+      query.fields().include("_id");
+      return template.find(query, GenericResource.class).stream()
+            .map(GenericResource::getId)
+            .collect(Collectors.toSet());
+   }
+
+   /**
+    * Execute bulk operations, completing errors with the failed ones. Positions hold the batch position of each
+    * operation. When ordered, only the first error is kept as following items have not been processed.
+    */
+   private Map<Integer, String> executeBulk(BulkOperations operations, List<Integer> positions,
+                                            TreeMap<Integer, String> errors, boolean ordered) {
+      if (!positions.isEmpty()) {
+         try {
+            operations.execute();
+         } catch (BulkOperationException boe) {
+            for (BulkWriteError error : boe.getErrors()) {
+               errors.put(positions.get(error.getIndex()), error.getMessage());
+            }
+         }
+      }
+      if (ordered && errors.size() > 1) {
+         Map.Entry<Integer, String> first = errors.firstEntry();
+         errors.clear();
+         errors.put(first.getKey(), first.getValue());
+      }
+      return errors;
+   }
+
+   private Query buildPageQuery(String serviceId, String afterId) {
+      Criteria criteria = Criteria.where("serviceId").is(serviceId);
+      if (afterId != null) {
+         criteria.and("_id").gt(afterId);
+      }
+      return new Query(criteria).with(Sort.by(Sort.Direction.ASC, "_id"));
+   }
+}
@@ -20,6 +20,8 @@ package io.github.microcks.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.microcks.domain.*;
+import io.github.microcks.event.ChangeType;
+import io.github.microcks.event.ServiceChangeEvent;
 import io.github.microcks.repository.RequestRepository;
 import io.github.microcks.repository.ResourceRepository;
 import io.github.microcks.repository.ResponseRepository;
@@ -28,6 +30,7 @@ import io.github.microcks.util.IdBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -54,6 +57,9 @@ public class ImportExportService {
    @Autowired
    private ServiceRepository serviceRepository;
 
+   @Autowired
+   private ApplicationContext applicationContext;
+
    /**
     * Import a repository from JSON definitions.
     * @param json A String encoded into json and representing repository object definitions.
@@ -79,6 +85,11 @@ public class ImportExportService {
          resourceRepository.saveAll(model.getResources());
          responseRepository.saveAll(model.getResponses());
          requestRepository.saveAll(model.getRequests());
+
+         // Publish Service update events so that mock caches are refreshed.
+         for (Service service : model.getServices()) {
+            applicationContext.publishEvent(new ServiceChangeEvent(this, service.getId(), ChangeType.UPDATED));
+         }
          return true;
       }
 
@@ -340,6 +340,9 @@ public class ServiceService {
       serviceRepository.save(service);
       log.info("Having create Service '{}' for generic resource {}", service.getId(), resource);
 
+      // Publish a Service create event before returning.
+      publishServiceChangeEvent(service, ChangeType.CREATED);
+
       return service;
    }
 
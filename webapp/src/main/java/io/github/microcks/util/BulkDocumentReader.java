@@ -0,0 +1,182 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.util;
+
+import org.bson.BsonType;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.json.JsonParseException;
+import org.bson.json.JsonReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A reader of bulk payloads: a JSON array or NDJSON (one JSON value per line). Items are read one by one without
+ * loading the whole payload in memory, using the same extended JSON parsing than {@code Document.parse()}. Items
+ * are expected to be JSON objects or strings; other values are reported as item errors. Syntax errors within an
+ * NDJSON line are also item errors whereas syntax errors within a JSON array are raised as they prevent reading
+ * next items. An NDJSON line holding something else than whitespaces after its value is also raised as a syntax
+ * error: values are not delimited as expected and items would be silently dropped otherwise.
+ * @author laurent
+ */
+public class BulkDocumentReader {
+
+   private static final DocumentCodec DOCUMENT_CODEC = new DocumentCodec();
+
+   private final BufferedReader reader;
+   private JsonReader arrayReader;
+   private boolean started = false;
+   private boolean finished = false;
+   private int index = 0;
+
+   /**
+    * Build a reader on a bulk payload.
+    * @param reader The reader of payload
+    */
+   public BulkDocumentReader(Reader reader) {
+      this.reader = (reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader));
+   }
+
+   /**
+    * Read next item of payload.
+    * @return The next item or null if payload is finished
+    * @throws IOException if payload cannot be read
+    * @throws JsonParseException if a JSON array payload is malformed or an NDJSON line holds more than a value
+    */
+   public Item next() throws IOException {
+      if (!started) {
+         started = true;
+         if (skipWhitespaces() == '[') {
+            arrayReader = new JsonReader(reader);
+            arrayReader.readStartArray();
+         }
+      }
+      if (finished) {
+         return null;
+      }
+
+      if (arrayReader != null) {
+         BsonType type = arrayReader.readBsonType();
+         if (type == BsonType.END_OF_DOCUMENT) {
+            arrayReader.readEndArray();
+            finished = true;
+            return null;
+         }
+         // Only count item once read, a malformed one is then reported with its own index.
+         Item item = readItem(arrayReader, type, index);
+         index++;
+         return item;
+      }
+
+      String line = reader.readLine();
+      while (line != null && line.trim().isEmpty()) {
+         line = reader.readLine();
+      }
+      if (line == null) {
+         finished = true;
+         return null;
+      }
+      JsonReader lineReader = new JsonReader(line);
+      Item item;
+      try {
+         item = readItem(lineReader, lineReader.readBsonType(), index);
+      } catch (JsonParseException jpe) {
+         return new Item(index++, null, jpe.getMessage());
+      }
+      if (!isFullyRead(lineReader)) {
+         throw new JsonParseException("Unexpected content after JSON value of item " + index);
+      }
+      index++;
+      return item;
+   }
+
+   /** @return The index of the next item to read (that is the number of items read so far) */
+   public int getIndex() {
+      return index;
+   }
+
+   private Item readItem(JsonReader jsonReader, BsonType type, int itemIndex) {
+      switch (type) {
+         case DOCUMENT:
+            return new Item(itemIndex, DOCUMENT_CODEC.decode(jsonReader, DecoderContext.builder().build()), null);
+         case STRING:
+            return new Item(itemIndex, jsonReader.readString(), null);
+         default:
+            jsonReader.skipValue();
+            return new Item(itemIndex, null, "Item is neither a JSON object nor a string");
+      }
+   }
+
+   /** Check that only whitespaces remain after the value read by a line reader. */
+   private boolean isFullyRead(JsonReader lineReader) {
+      try {
+         return lineReader.readBsonType() == BsonType.END_OF_DOCUMENT;
+      } catch (JsonParseException jpe) {
+         return false;
+      }
+   }
+
+   /** Skip leading whitespaces and return the first significant character without consuming it (-1 if none). */
+   private int skipWhitespaces() throws IOException {
+      while (true) {
+         reader.mark(1);
+         int c = reader.read();
+         if (c == -1 || !Character.isWhitespace(c)) {
+            reader.reset();
+            return c;
+         }
+      }
+   }
+
+   /** An item of bulk payload: a document, a string or an error. */
+   public static class Item {
+      private final int index;
+      private final Object value;
+      private final String error;
+
+      private Item(int index, Object value, String error) {
+         this.index = index;
+         this.value = value;
+         this.error = error;
+      }
+
+      /** @return The position of item in payload */
+      public int getIndex() {
+         return index;
+      }
+
+      /** @return The item if it's a JSON object, null otherwise */
+      public Document getDocument() {
+         return value instanceof Document ? (Document) value : null;
+      }
+
+      /** @return The item if it's a JSON string, null otherwise */
+      public String getString() {
+         return value instanceof String ? (String) value : null;
+      }
+
+      /** @return The reason why item cannot be read, null if read */
+      public String getError() {
+         return error;
+      }
+   }
+}
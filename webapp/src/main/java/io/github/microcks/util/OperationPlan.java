@@ -0,0 +1,165 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.util;
+
+import io.github.microcks.domain.Operation;
+import io.github.microcks.domain.ParameterConstraint;
+import io.github.microcks.util.dispatcher.CompiledDispatchCases;
+import io.github.microcks.util.dispatcher.FallbackSpecification;
+import io.github.microcks.util.dispatcher.JsonEvaluationSpecification;
+import io.github.microcks.util.dispatcher.JsonMappingException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * An immutable execution plan of an Operation for mock controllers. It holds everything that can be computed
+ * once from the operation definition: the fallback specification, the effective dispatcher and rules, the
+ * parsed Json dispatching specification and its compiled cases, the compiled parameter constraints patterns and the URI pattern.
+ * Parsed specifications are shared between requests and must be considered as read-only.
+ * @author laurent
+ */
+public class OperationPlan {
+
+   /** A simple logger for diagnostic messages. */
+   private static Logger log = LoggerFactory.getLogger(OperationPlan.class);
+
+   private final Operation operation;
+   private final FallbackSpecification fallback;
+   private final String dispatcher;
+   private final String dispatcherRules;
+   private final JsonEvaluationSpecification jsonEvaluationSpecification;
+   private final CompiledDispatchCases compiledDispatchCases;
+   private final List<CompiledConstraint> constraints;
+   private final String uriPattern;
+
+
+   /**
+    * Build the execution plan of an operation.
+    * @param operation The operation to build a plan for
+    */
+   public OperationPlan(Operation operation) {
+      this.operation = operation;
+
+      // We must find dispatcher and its rules. Default to operation ones but
+      // if we have a Fallback this is the one who is holding the first pass rules.
+      FallbackSpecification fallbackSpecification = null;
+      if (DispatchStyles.FALLBACK.equals(operation.getDispatcher())) {
+         try {
+            fallbackSpecification = FallbackSpecification.buildFromJsonString(operation.getDispatcherRules());
+         } catch (JsonMappingException jme) {
+            log.error("Dispatching rules of operation cannot be interpreted as FallbackSpecification", jme);
+         }
+      }
+      this.fallback = fallbackSpecification;
+      this.dispatcher = (fallback != null ? fallback.getDispatcher() : operation.getDispatcher());
+      this.dispatcherRules = (fallback != null ? fallback.getDispatcherRules() : operation.getDispatcherRules());
+
+      JsonEvaluationSpecification specification = null;
+      if (DispatchStyles.JSON_BODY.equals(dispatcher)) {
+         try {
+            specification = JsonEvaluationSpecification.buildFromJsonString(dispatcherRules);
+         } catch (JsonMappingException jme) {
+            log.error("Dispatching rules of operation cannot be interpreted as JsonEvaluationSpecification", jme);
+         }
+      }
+      this.jsonEvaluationSpecification = specification;
+      this.compiledDispatchCases = (specification != null ? new CompiledDispatchCases(specification) : null);
+
+      List<CompiledConstraint> compiledConstraints = new ArrayList<>();
+      if (operation.getParameterConstraints() != null) {
+         for (ParameterConstraint constraint : operation.getParameterConstraints()) {
+            compiledConstraints.add(new CompiledConstraint(constraint));
+         }
+      }
+      this.constraints = Collections.unmodifiableList(compiledConstraints);
+      this.uriPattern = (operation.getName() != null ? OperationRouteTrie.getURIPattern(operation.getName()) : null);
+   }
+
+   public Operation getOperation() {
+      return operation;
+   }
+
+   /** @return The fallback specification of operation or null if none defined */
+   public FallbackSpecification getFallback() {
+      return fallback;
+   }
+
+   /** @return The dispatcher to apply first (the fallback one if defined) */
+   public String getDispatcher() {
+      return dispatcher;
+   }
+
+   /** @return The dispatcher rules to apply first (the fallback ones if defined) */
+   public String getDispatcherRules() {
+      return dispatcherRules;
+   }
+
+   /** @return The parsed dispatching specification if dispatcher is JSON_BODY and rules are valid, null otherwise */
+   public JsonEvaluationSpecification getJsonEvaluationSpecification() {
+      return jsonEvaluationSpecification;
+   }
+
+   /** @return The compiled cases of Json dispatching specification, null if no specification */
+   public CompiledDispatchCases getCompiledDispatchCases() {
+      return compiledDispatchCases;
+   }
+
+   public List<CompiledConstraint> getConstraints() {
+      return constraints;
+   }
+
+   public String getURIPattern() {
+      return uriPattern;
+   }
+
+   /** A parameter constraint companion with its compiled regular expression if any. */
+   public static class CompiledConstraint {
+      private final ParameterConstraint constraint;
+      private final Pattern mustMatchPattern;
+
+      private CompiledConstraint(ParameterConstraint constraint) {
+         this.constraint = constraint;
+         Pattern pattern = null;
+         if (constraint.getMustMatchRegexp() != null) {
+            try {
+               pattern = Pattern.compile(constraint.getMustMatchRegexp());
+            } catch (PatternSyntaxException pse) {
+               log.error("Parameter constraint regexp {} cannot be compiled", constraint.getMustMatchRegexp(), pse);
+            }
+         }
+         this.mustMatchPattern = pattern;
+      }
+
+      public ParameterConstraint getConstraint() {
+         return constraint;
+      }
+
+      /** @return The compiled mustMatchRegexp or null if none or invalid */
+      public Pattern getMustMatchPattern() {
+         return mustMatchPattern;
+      }
+   }
+}
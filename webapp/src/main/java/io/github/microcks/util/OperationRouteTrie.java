@@ -0,0 +1,261 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.util;
+
+import io.github.microcks.domain.Operation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.util.UriUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A segment trie resolving Rest operations of a Service for a given Http verb. It is built once from operations
+ * names (URI patterns using {} or /: for marked variable parts) and resource paths and then allows resolving the
+ * operation matching a resource path and extracting its variable URI parts in a single pass.
+ * <p>
+ * Resolution first looks for exact resource paths (first declared operation wins), then for URI templates
+ * (literal segments being preferred over variable ones) and finally for the loose patterns of the historical
+ * linear scan, in declaration order. Note that this differs from the historical scan where the first declared
+ * loose pattern matching the path won: a URI template matching the path all segments long now takes precedence
+ * over an operation declared before it whose loose pattern also matches (ex: {@code /orders/{id}/items} over
+ * a previously declared {@code /orders/{id}} for {@code /orders/1/items}).
+ * @author laurent
+ */
+public class OperationRouteTrie {
+
+   /** A simple logger for diagnostic messages. */
+   private static Logger log = LoggerFactory.getLogger(OperationRouteTrie.class);
+
+   private final Map<String, Operation> operationsByResourcePath = new HashMap<>();
+   private final Map<Operation, String[]> templatesByOperation = new HashMap<>();
+   private final List<LoosePattern> loosePatterns = new ArrayList<>();
+   private final Node root = new Node();
+
+
+   /**
+    * Build a trie for given operations. Only operations using the specified Http verb are kept.
+    * @param operations The operations of a Service
+    * @param method The Http verb (GET, POST, PUT, etc...) to build a trie for
+    */
+   public OperationRouteTrie(List<Operation> operations, String method) {
+      for (Operation operation : operations) {
+         if (method.equals(operation.getMethod()) && operation.getResourcePaths() != null) {
+            // First pass structure: exact resource path matching, first declared operation wins.
+            for (String resourcePath : operation.getResourcePaths()) {
+               operationsByResourcePath.putIfAbsent(resourcePath, operation);
+            }
+
+            String uriPattern = getURIPattern(operation.getName());
+            String[] template = buildTemplate(uriPattern);
+            if (template != null) {
+               templatesByOperation.put(operation, template);
+               insert(template, operation);
+            }
+            // Keep loose pattern so that historical multi-segments matching still applies.
+            LoosePattern loosePattern = LoosePattern.compile(uriPattern, operation);
+            if (loosePattern != null) {
+               loosePatterns.add(loosePattern);
+            }
+         }
+      }
+   }
+
+   /**
+    * Resolve the operation matching a resource path.
+    * @param resourcePath The resource path of incoming request (still URL encoded)
+    * @return A RouteMatch holding operation and its URI parts or null if no operation matches.
+    */
+   public RouteMatch resolve(String resourcePath) {
+      String[] segments = splitSegments(resourcePath);
+
+      Operation operation = operationsByResourcePath.get(resourcePath);
+      if (operation == null) {
+         operation = lookup(root, segments, 0);
+      }
+      if (operation != null) {
+         return new RouteMatch(operation, extractURIParts(templatesByOperation.get(operation), segments));
+      }
+
+      // Finally, try the loose patterns in declaration order.
+      for (LoosePattern loosePattern : loosePatterns) {
+         if (loosePattern.pattern.matcher(resourcePath).matches()) {
+            return new RouteMatch(loosePattern.operation, null);
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Retrieve URI Pattern from operation name (remove starting verb name).
+    * @param operationName The name of operation
+    * @return The URI pattern part of operation name
+    */
+   public static String getURIPattern(String operationName) {
+      if (operationName.startsWith("GET ") || operationName.startsWith("POST ")
+            || operationName.startsWith("PUT ") || operationName.startsWith("DELETE ")
+            || operationName.startsWith("PATCH ") || operationName.startsWith("OPTIONS ")) {
+         return operationName.substring(operationName.indexOf(' ') + 1);
+      }
+      return operationName;
+   }
+
+   /** Insert an operation template into trie. First inserted operation wins on duplicates. */
+   private void insert(String[] template, Operation operation) {
+      Node current = root;
+      for (String segment : template) {
+         if (isVariable(segment)) {
+            if (current.variableChild == null) {
+               current.variableChild = new Node();
+            }
+            current = current.variableChild;
+         } else {
+            current = current.literalChildren.computeIfAbsent(segment, s -> new Node());
+         }
+      }
+      if (current.operation == null) {
+         current.operation = operation;
+      }
+   }
+
+   /** Walk trie preferring literal segments and backtracking on variable ones if needed. */
+   private Operation lookup(Node node, String[] segments, int index) {
+      if (index == segments.length) {
+         return node.operation;
+      }
+      Node literal = node.literalChildren.get(segments[index]);
+      if (literal != null) {
+         Operation operation = lookup(literal, segments, index + 1);
+         if (operation != null) {
+            return operation;
+         }
+      }
+      if (node.variableChild != null && segments[index].length() > 0) {
+         return lookup(node.variableChild, segments, index + 1);
+      }
+      return null;
+   }
+
+   /** Extract variable parts values from segments using template. Null if template and segments do not fit. */
+   private Map<String, String> extractURIParts(String[] template, String[] segments) {
+      if (template == null || template.length != segments.length) {
+         return null;
+      }
+      Map<String, String> parts = new LinkedHashMap<>();
+      for (int i = 0; i < template.length; i++) {
+         if (isVariable(template[i])) {
+            parts.put(getVariableName(template[i]), UriUtils.decode(segments[i], StandardCharsets.UTF_8));
+         } else if (!template[i].equals(segments[i])) {
+            return null;
+         }
+      }
+      return parts;
+   }
+
+   /** Build a segments template from URI pattern. Null if pattern contains partial variable segments. */
+   private static String[] buildTemplate(String uriPattern) {
+      String[] template = splitSegments(uriPattern);
+      for (String segment : template) {
+         if (!isVariable(segment) && (segment.contains("{") || segment.contains(":"))) {
+            log.debug("URI pattern {} cannot be represented as segments", uriPattern);
+            return null;
+         }
+      }
+      return template;
+   }
+
+   private static String[] splitSegments(String path) {
+      int start = path.startsWith("/") ? 1 : 0;
+      int end = path.endsWith("/") && path.length() > start ? path.length() - 1 : path.length();
+      if (start >= end) {
+         return new String[0];
+      }
+      return path.substring(start, end).split("/", -1);
+   }
+
+   private static boolean isVariable(String segment) {
+      return (segment.length() > 2 && segment.startsWith("{") && segment.endsWith("}") && segment.indexOf('{', 1) == -1)
+            || (segment.length() > 1 && segment.startsWith(":") && segment.indexOf(':', 1) == -1);
+   }
+
+   private static String getVariableName(String segment) {
+      if (segment.startsWith("{")) {
+         return segment.substring(1, segment.length() - 1);
+      }
+      return segment.substring(1);
+   }
+
+   /**
+    * The result of a resolution: the operation and the URI parts if they can be extracted from a
+    * segments template (null otherwise).
+    */
+   public static class RouteMatch {
+      private final Operation operation;
+      private final Map<String, String> uriParts;
+
+      public RouteMatch(Operation operation, Map<String, String> uriParts) {
+         this.operation = operation;
+         this.uriParts = uriParts;
+      }
+
+      public Operation getOperation() {
+         return operation;
+      }
+
+      public Map<String, String> getURIParts() {
+         return uriParts;
+      }
+   }
+
+   private static class Node {
+      private final Map<String, Node> literalChildren = new HashMap<>();
+      private Node variableChild;
+      private Operation operation;
+   }
+
+   private static class LoosePattern {
+      private final Pattern pattern;
+      private final Operation operation;
+
+      private LoosePattern(Pattern pattern, Operation operation) {
+         this.pattern = pattern;
+         this.operation = operation;
+      }
+
+      /** Produce a matching regexp removing {part} and :part from pattern. */
+      private static LoosePattern compile(String uriPattern, Operation operation) {
+         String operationPattern = uriPattern.replaceAll("\\{.+\\}", "(.)+");
+         operationPattern = operationPattern.replaceAll(":.+", "(.)+");
+         try {
+            return new LoosePattern(Pattern.compile(operationPattern), operation);
+         } catch (PatternSyntaxException pse) {
+            log.warn("Operation {} pattern cannot be compiled as a regular expression", operation.getName());
+            return null;
+         }
+      }
+   }
+}
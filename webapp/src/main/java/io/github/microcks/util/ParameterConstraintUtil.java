@@ -37,6 +37,17 @@ public class ParameterConstraintUtil {
     * @return A string representing constraint violation if any. null otherwise.
     */
    public static String validateConstraint(HttpServletRequest request, ParameterConstraint constraint) {
+      return validateConstraint(request, constraint, null);
+   }
+
+   /**
+    * Validate that a parameter constraint it respected or violated. Return a message if violated.
+    * @param request HttpServlet request holding parameters to validate
+    * @param constraint Constraint to apply to one request parameter.
+    * @param mustMatchPattern The compiled mustMatchRegexp of constraint (may be null, regexp is then compiled on the fly)
+    * @return A string representing constraint violation if any. null otherwise.
+    */
+   public static String validateConstraint(HttpServletRequest request, ParameterConstraint constraint, Pattern mustMatchPattern) {
       String value = null;
       if (ParameterLocation.header == constraint.getIn()) {
          value = request.getHeader(constraint.getName());
@@ -46,7 +57,9 @@ public class ParameterConstraintUtil {
 
       if (value != null) {
          if (constraint.getMustMatchRegexp() != null) {
-            if (!Pattern.matches(constraint.getMustMatchRegexp(), value)) {
+            boolean matches = (mustMatchPattern != null ? mustMatchPattern.matcher(value).matches()
+                  : Pattern.matches(constraint.getMustMatchRegexp(), value));
+            if (!matches) {
                return "Parameter " + constraint.getName() +  " should match " + constraint.getMustMatchRegexp();
             }
          }
@@ -0,0 +1,157 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.util;
+
+import io.github.microcks.domain.Header;
+import io.github.microcks.domain.Response;
+import io.github.microcks.util.el.TemplateEngine;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A prepared Http representation of a mock Response: everything that does not depend on incoming request is
+ * computed once (parsed status and content type, static headers and UTF-8 encoded body for non templated content).
+ * Prepared representations are shared between requests and must be considered as read-only; use
+ * {@code copyHeaders()} for getting headers that can be completed.
+ * <p>
+ * Status and content type are only parsed on first access as protocols like SOAP just need the body: a response
+ * with a status or media type that is not valid for Http can still be prepared. Null or empty status and media
+ * type are considered as {@code 200} and no content type.
+ * @author laurent
+ */
+public class PreparedResponse {
+
+   private final String operationId;
+   private final String rawStatus;
+   private final String rawMediaType;
+   private volatile HttpStatus status;
+   private volatile MediaType contentType;
+   private volatile boolean contentTypeParsed = false;
+   private final HttpHeaders headers;
+   private final String location;
+   private final boolean templated;
+   private final byte[] body;
+
+   /**
+    * Prepare the Http representation of a response.
+    * @param response The mock response to prepare
+    */
+   public PreparedResponse(Response response) {
+      this.operationId = response.getOperationId();
+      this.rawStatus = response.getStatus();
+      this.rawMediaType = response.getMediaType();
+
+      // Location header is request dependant, keep it apart.
+      String locationValue = null;
+      this.headers = new HttpHeaders();
+      if (response.getHeaders() != null) {
+         for (Header header : response.getHeaders()) {
+            if ("Location".equals(header.getName())) {
+               locationValue = header.getValues().iterator().next();
+            } else if (!HttpHeaders.TRANSFER_ENCODING.equalsIgnoreCase(header.getName())) {
+               headers.put(header.getName(), new ArrayList<>(header.getValues()));
+            }
+         }
+      }
+      this.location = locationValue;
+
+      String content = response.getContent();
+      this.templated = (content != null && content.contains(TemplateEngine.DEFAULT_EXPRESSION_PREFIX));
+      this.body = (content != null && !templated ? content.getBytes(StandardCharsets.UTF_8) : null);
+   }
+
+   public String getOperationId() {
+      return operationId;
+   }
+
+   /**
+    * @return The parsed Http status of response, 200 if none
+    * @throws IllegalArgumentException if status is not a valid Http status code
+    */
+   public HttpStatus getStatus() {
+      // Parsing is idempotent, concurrent first accesses may just do it twice.
+      if (status == null) {
+         status = (rawStatus != null && !rawStatus.trim().isEmpty() ?
+               HttpStatus.valueOf(Integer.parseInt(rawStatus.trim())) : HttpStatus.OK);
+      }
+      return status;
+   }
+
+   /**
+    * @return The parsed media type of response completed with UTF-8 charset, null if none
+    * @throws org.springframework.util.InvalidMimeTypeException if media type cannot be parsed
+    */
+   public MediaType getContentType() {
+      if (!contentTypeParsed) {
+         contentType = (rawMediaType != null && !rawMediaType.trim().isEmpty() ?
+               MediaType.valueOf(rawMediaType + ";charset=UTF-8") : null);
+         contentTypeParsed = true;
+      }
+      return contentType;
+   }
+
+   /** @return The raw value of Location header if any (it should be made absolute from request) */
+   public String getLocation() {
+      return location;
+   }
+
+   /** @return Whether response content holds expressions to render for each request */
+   public boolean isTemplated() {
+      return templated;
+   }
+
+   /** @return The UTF-8 encoded body if content is static, null if templated or without content */
+   public byte[] getBody() {
+      return body;
+   }
+
+   /** @return The approximate size in bytes of this prepared response */
+   public long getSize() {
+      long size = (body != null ? body.length : 0);
+      for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+         size += 2L * header.getKey().length();
+         for (String value : header.getValue()) {
+            size += 2L * value.length();
+         }
+      }
+      return size;
+   }
+
+   /**
+    * Build a new set of Http headers holding content type and static headers of response (Location excepted).
+    * @return A new HttpHeaders that can be completed with request dependant headers
+    */
+   public HttpHeaders copyHeaders() {
+      HttpHeaders copy = new HttpHeaders();
+      if (getContentType() != null) {
+         copy.setContentType(getContentType());
+      }
+      for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+         copy.put(header.getKey(), new ArrayList<>(header.getValue()));
+      }
+      return copy;
+   }
+}
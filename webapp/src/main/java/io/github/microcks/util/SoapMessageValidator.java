@@ -64,8 +64,23 @@ public class SoapMessageValidator {
     */
    public static List<XmlError> validateSoapMessage(String partName, String partNamespace, String message, String wsdlUrl, boolean validateMessageBody) 
          throws XmlException {
-      //
-      WsdlContext ctx = new WsdlContext(wsdlUrl);
+      return validateSoapMessage(partName, partNamespace, message, new WsdlContext(wsdlUrl), validateMessageBody);
+   }
+
+   /**
+    * Validate a soap message accordingly to an already loaded WSDL context. The validation is
+    * done for a specified message part (maybe be the input, output or fault of an operation).
+    * WsdlContext is only read here so that it can be shared between validations.
+    * @param partName The name of the part to validate ie. name of the input, output or fault part (ex: sayHello)
+    * @param partNamespace The namespace of the part to validate (ex: http://www.mma.fr/test/service)
+    * @param message The full soap message as a string
+    * @param ctx The WSDL context of service and operation (see WsdlContextCache)
+    * @param validateMessageBody Should we validate also the body ? If false, only Soap envelope is validated.
+    * @return The list of validation failures. If empty, message is valid !
+    * @throws org.apache.xmlbeans.XmlException if given message is not a valid Xml document
+    */
+   public static List<XmlError> validateSoapMessage(String partName, String partNamespace, String message, WsdlContext ctx, boolean validateMessageBody)
+         throws XmlException {
       List<XmlError> errors = new ArrayList<XmlError>();
       ctx.getSoapVersion().validateSoapEnvelope(message, errors);
       
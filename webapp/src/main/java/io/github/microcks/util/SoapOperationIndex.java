@@ -0,0 +1,75 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.util;
+
+import io.github.microcks.domain.Operation;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable index of the operations of a SOAP Service, by SOAP action and by input or operation name. When
+ * different operations share the same key, the first one in declaration order wins, as it was the case when
+ * operations list was scanned for each request.
+ * @author laurent
+ */
+public class SoapOperationIndex {
+
+   private final Map<String, Operation> operationsByAction = new HashMap<>();
+   private final Map<String, Operation> operationsByName = new HashMap<>();
+
+   /**
+    * Build an index for operations.
+    * @param operations The operations of a SOAP Service
+    */
+   public SoapOperationIndex(List<Operation> operations) {
+      if (operations != null) {
+         for (Operation operation : operations) {
+            if (operation.getAction() != null) {
+               operationsByAction.putIfAbsent(operation.getAction(), operation);
+            }
+            if (operation.getInputName() != null) {
+               operationsByName.putIfAbsent(operation.getInputName(), operation);
+            }
+            if (operation.getName() != null) {
+               operationsByName.putIfAbsent(operation.getName(), operation);
+            }
+         }
+      }
+   }
+
+   /**
+    * Find operation having a SOAP action.
+    * @param action The SOAP action of incoming request
+    * @return The matching operation or null if none
+    */
+   public Operation findByAction(String action) {
+      return operationsByAction.get(action);
+   }
+
+   /**
+    * Find operation having an input name or a name.
+    * @param name The name of wrapping element of incoming request body
+    * @return The matching operation or null if none
+    */
+   public Operation findByName(String name) {
+      return operationsByName.get(name);
+   }
+}
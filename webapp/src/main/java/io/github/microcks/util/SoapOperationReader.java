@@ -0,0 +1,156 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.StringReader;
+
+/**
+ * Helper for finding the operation wrapping element of a SOAP envelope using a StAX reader. Reading stops as soon
+ * as the first child element of SOAP Body is found so that large payloads are not entirely scanned. Reader is not
+ * namespace aware (prefixes are simply stripped) to stay tolerant with loosely declared envelopes, and DTDs as well
+ * as external entities are not supported.
+ * @author laurent
+ */
+public class SoapOperationReader {
+
+   /** A simple logger for diagnostic messages. */
+   private static Logger log = LoggerFactory.getLogger(SoapOperationReader.class);
+
+   private static final String BODY_ELEMENT = "Body";
+
+   /** Factory is thread-safe once configured, it can be shared. */
+   private static final XMLInputFactory FACTORY = XMLInputFactory.newInstance();
+
+   static {
+      FACTORY.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+      FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+      FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+   }
+
+   private SoapOperationReader() {
+      // Private constructor to hide the implicit public one.
+   }
+
+   /**
+    * Extract operation name from payload. Indeed we extract the wrapping element name inside SOAP body.
+    * @param payload SOAP payload to extract from
+    * @return The wrapping Xml element name (without prefix) within body. Null if not found or payload malformed.
+    */
+   public static String extractOperationName(String payload) {
+      XMLStreamReader reader = null;
+      try {
+         reader = FACTORY.createXMLStreamReader(new StringReader(payload));
+         if (moveToFirstBodyChild(reader)) {
+            return localName(reader.getLocalName());
+         }
+      } catch (XMLStreamException xse) {
+         log.debug("SOAP payload cannot be read for extracting operation name: {}", xse.getMessage());
+      } finally {
+         close(reader);
+      }
+      return null;
+   }
+
+   /**
+    * Check if given SOAP payload has a correct structure for given operation name: operation element must be
+    * the single child element of SOAP body.
+    * @param payload SOAP payload to check structure
+    * @param operationName Name of operation to check structure against
+    * @return True if payload is correct for operation, false otherwise.
+    */
+   public static boolean hasPayloadCorrectStructureForOperation(String payload, String operationName) {
+      XMLStreamReader reader = null;
+      try {
+         reader = FACTORY.createXMLStreamReader(new StringReader(payload));
+         if (moveToFirstBodyChild(reader) && operationName.equals(localName(reader.getLocalName()))) {
+            // Skip operation element content and check nothing but blanks follows until body end.
+            skipElement(reader);
+            while (reader.hasNext()) {
+               int event = reader.next();
+               if (event == XMLStreamConstants.END_ELEMENT) {
+                  return BODY_ELEMENT.equals(localName(reader.getLocalName()));
+               }
+               if (event == XMLStreamConstants.START_ELEMENT
+                     || (event == XMLStreamConstants.CHARACTERS && !reader.isWhiteSpace())) {
+                  return false;
+               }
+            }
+         }
+      } catch (XMLStreamException xse) {
+         log.debug("SOAP payload cannot be read for checking structure: {}", xse.getMessage());
+      } finally {
+         close(reader);
+      }
+      return false;
+   }
+
+   /** Move reader to the first element found into Body element. Return false if none. */
+   private static boolean moveToFirstBodyChild(XMLStreamReader reader) throws XMLStreamException {
+      boolean inBody = false;
+      while (reader.hasNext()) {
+         int event = reader.next();
+         if (event == XMLStreamConstants.START_ELEMENT) {
+            if (inBody) {
+               return true;
+            }
+            inBody = BODY_ELEMENT.equals(localName(reader.getLocalName()));
+         } else if (event == XMLStreamConstants.END_ELEMENT && inBody) {
+            // Empty body.
+            return false;
+         }
+      }
+      return false;
+   }
+
+   /** Skip current element and its children, leaving reader on its end element. */
+   private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+      int depth = 1;
+      while (depth > 0 && reader.hasNext()) {
+         int event = reader.next();
+         if (event == XMLStreamConstants.START_ELEMENT) {
+            depth++;
+         } else if (event == XMLStreamConstants.END_ELEMENT) {
+            depth--;
+         }
+      }
+   }
+
+   /** As reader is not namespace aware, local name may hold a prefix. */
+   private static String localName(String name) {
+      int colon = name.indexOf(':');
+      return colon >= 0 ? name.substring(colon + 1) : name;
+   }
+
+   private static void close(XMLStreamReader reader) {
+      if (reader != null) {
+         try {
+            reader.close();
+         } catch (XMLStreamException xse) {
+            log.debug("Error while closing StAX reader", xse);
+         }
+      }
+   }
+}
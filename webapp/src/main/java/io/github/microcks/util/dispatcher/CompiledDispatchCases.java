@@ -0,0 +1,203 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.util.dispatcher;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * The compiled form of the {@code DispatchCases} of a JsonEvaluationSpecification. Case keys are parsed once
+ * depending on specification operator: range expressions (for {@code range} and {@code size}) are kept into an
+ * interval index sorted by lower bound and regular expressions (for {@code regexp}) are precompiled. Invalid keys
+ * are logged once at compilation time and then ignored. Instances are immutable and can be shared between requests.
+ * <p>
+ * When ranges overlap, the matching one having the greatest lower bound is chosen.
+ * @author laurent
+ */
+public class CompiledDispatchCases {
+
+   /** A simple logger for diagnostic messages. */
+   private static Logger log = LoggerFactory.getLogger(CompiledDispatchCases.class);
+
+   private static final String DEFAULT_CASE = "default";
+
+   private final DispatchCases cases;
+
+   private final double[] mins;
+   private final double[] maxs;
+   private final boolean[] minsIncluded;
+   private final boolean[] maxsIncluded;
+   /** Greatest upper bound of ranges up to each index, for stopping lookups early. */
+   private final double[] maxsUpTo;
+   private final String[] rangeResponses;
+
+   private final List<Pattern> patterns;
+   private final List<String> patternResponses;
+
+   /**
+    * Compile the cases of a specification.
+    * @param specification The evaluation specification holding operator and cases
+    */
+   public CompiledDispatchCases(JsonEvaluationSpecification specification) {
+      this.cases = specification.getCases() != null ? specification.getCases() : new DispatchCases();
+      EvaluationOperator operator = specification.getOperator();
+
+      List<RangeCase> ranges = new ArrayList<>();
+      if (operator == EvaluationOperator.range || operator == EvaluationOperator.size) {
+         for (Map.Entry<String, String> entry : cases.entrySet()) {
+            RangeCase range = parseRange(entry.getKey(), entry.getValue());
+            if (range != null) {
+               ranges.add(range);
+            }
+         }
+         ranges.sort(Comparator.comparingDouble((RangeCase r) -> r.min).thenComparing(r -> !r.minIncluded));
+      }
+      int size = ranges.size();
+      mins = new double[size];
+      maxs = new double[size];
+      minsIncluded = new boolean[size];
+      maxsIncluded = new boolean[size];
+      maxsUpTo = new double[size];
+      rangeResponses = new String[size];
+      for (int i = 0; i < size; i++) {
+         RangeCase range = ranges.get(i);
+         mins[i] = range.min;
+         maxs[i] = range.max;
+         minsIncluded[i] = range.minIncluded;
+         maxsIncluded[i] = range.maxIncluded;
+         maxsUpTo[i] = (i > 0 ? Math.max(maxsUpTo[i - 1], range.max) : range.max);
+         rangeResponses[i] = range.response;
+      }
+
+      patterns = new ArrayList<>();
+      patternResponses = new ArrayList<>();
+      if (operator == EvaluationOperator.regexp) {
+         for (Map.Entry<String, String> entry : cases.entrySet()) {
+            if (!DEFAULT_CASE.equals(entry.getKey())) {
+               try {
+                  patterns.add(Pattern.compile(entry.getKey()));
+                  patternResponses.add(entry.getValue());
+               } catch (PatternSyntaxException pse) {
+                  log.warn("{} case cannot be compiled as a regular expression, ignoring it", entry.getKey());
+               }
+            }
+         }
+      }
+   }
+
+   /** @return The raw dispatch cases */
+   public DispatchCases getCases() {
+      return cases;
+   }
+
+   /** @return The response of default case, null if none */
+   public String getDefault() {
+      return cases.getDefault();
+   }
+
+   /**
+    * Find the response of the range case containing a number.
+    * @param number The number to locate
+    * @return The response of matching range or the default case one
+    */
+   public String findRangeCase(double number) {
+      // Binary search for the last range having its lower bound <= number.
+      int low = 0;
+      int high = mins.length - 1;
+      int candidate = -1;
+      while (low <= high) {
+         int middle = (low + high) >>> 1;
+         if (mins[middle] <= number) {
+            candidate = middle;
+            low = middle + 1;
+         } else {
+            high = middle - 1;
+         }
+      }
+      // Walk back through candidates while one of them may still contain number.
+      for (int i = candidate; i >= 0 && maxsUpTo[i] >= number; i--) {
+         if (contains(i, number)) {
+            return rangeResponses[i];
+         }
+      }
+      return getDefault();
+   }
+
+   /**
+    * Find the response of the first regular expression case fully matching a value.
+    * @param value The value to match
+    * @return The response of matching case or the default case one
+    */
+   public String findRegexpCase(String value) {
+      for (int i = 0; i < patterns.size(); i++) {
+         if (patterns.get(i).matcher(value).matches()) {
+            return patternResponses.get(i);
+         }
+      }
+      return getDefault();
+   }
+
+   private boolean contains(int index, double number) {
+      boolean aboveMin = minsIncluded[index] ? number >= mins[index] : number > mins[index];
+      boolean belowMax = maxsIncluded[index] ? number <= maxs[index] : number < maxs[index];
+      return aboveMin && belowMax;
+   }
+
+   /** Parse a range key like {@code [min;max]}, {@code ]min;max]}, {@code [min;max[} or {@code ]min;max[}. */
+   private static RangeCase parseRange(String key, String response) {
+      boolean hasCorrectStart = key.startsWith("[") || key.startsWith("]");
+      boolean hasCorrectEnd = key.endsWith("[") || key.endsWith("]");
+      int delimiter = key.indexOf(';');
+      if (!hasCorrectStart || !hasCorrectEnd || delimiter < 0 || key.length() < 3) {
+         return null;
+      }
+      try {
+         // Considering min on the left side and max on the right side.
+         double min = Double.parseDouble(key.substring(1, delimiter));
+         double max = Double.parseDouble(key.substring(delimiter + 1, key.length() - 1));
+         return new RangeCase(min, max, key.startsWith("["), key.endsWith("]"), response);
+      } catch (NumberFormatException nfe) {
+         log.warn(key + " expression cannot be parsed as number for min and max range.");
+      }
+      return null;
+   }
+
+   private static class RangeCase {
+      private final double min;
+      private final double max;
+      private final boolean minIncluded;
+      private final boolean maxIncluded;
+      private final String response;
+
+      private RangeCase(double min, double max, boolean minIncluded, boolean maxIncluded, String response) {
+         this.min = min;
+         this.max = max;
+         this.minIncluded = minIncluded;
+         this.maxIncluded = maxIncluded;
+         this.response = response;
+      }
+   }
+}
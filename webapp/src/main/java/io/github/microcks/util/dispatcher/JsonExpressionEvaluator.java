@@ -18,13 +18,18 @@
  */
 package io.github.microcks.util.dispatcher;
 
+import io.github.microcks.util.el.ParsedBody;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.io.StringReader;
-import java.util.regex.Pattern;
 
 /**
  * This utility class evaluates JSON against one or more evaluation specifications.
@@ -46,34 +51,218 @@ public class JsonExpressionEvaluator {
    /** A simple logger for diagnostic messages. */
    private static Logger log = LoggerFactory.getLogger(JsonExpressionEvaluator.class);
 
+   /** Jackson mapper is thread-safe once configured, it can be shared. */
+   private static final ObjectMapper MAPPER = new ObjectMapper();
+
    /**
     * Evaluate a Json payload regarding a specification. Basically, it checks if payload
     * conforms to the given expression and then fond the suitable cases from within specification.
+    * Payload is read as a stream of tokens, stopping as soon as expression target is reached, except
+    * for the {@code size} operator that requires a full tree.
     * @param jsonText The Json payload to evaluate
     * @param specification The evaluation specification (JSONPointer expression + operator + cases)
     * @return The result of evaluation is whether one of the cases, whether
     * @throws JsonMappingException if incoming Json payload is malformed or invalid
     */
    public static String evaluate(String jsonText, JsonEvaluationSpecification specification) throws JsonMappingException {
-      // Parse json text ang get root node.
+      return evaluate(jsonText, specification, new CompiledDispatchCases(specification));
+   }
+
+   /**
+    * Evaluate a Json payload regarding a specification whose cases have already been compiled.
+    * @param jsonText The Json payload to evaluate
+    * @param specification The evaluation specification (JSONPointer expression + operator + cases)
+    * @param compiledCases The compiled cases of specification
+    * @return The result of evaluation is whether one of the cases, whether
+    * @throws JsonMappingException if incoming Json payload is malformed or invalid
+    */
+   public static String evaluate(String jsonText, JsonEvaluationSpecification specification,
+                                 CompiledDispatchCases compiledCases) throws JsonMappingException {
+      if (specification.getOperator() == EvaluationOperator.size) {
+         // Parse json text ang get root node.
+         JsonNode rootNode;
+         try {
+            rootNode = MAPPER.readTree(new StringReader(jsonText));
+         } catch (Exception e) {
+            log.error("Exception while parsing Json text", e);
+            throw new JsonMappingException("Exception while parsing Json payload");
+         }
+         return evaluate(rootNode, specification, compiledCases);
+      }
+
+      String caseKey;
+      try {
+         caseKey = readPointerValue(jsonText, specification.getExp());
+      } catch (Exception e) {
+         log.error("Exception while parsing Json text", e);
+         throw new JsonMappingException("Exception while parsing Json payload");
+      }
+      return evaluateCaseKey(caseKey, specification, compiledCases);
+   }
+
+   /**
+    * Evaluate a lazily parsed Json payload regarding a specification. Parsed tree is reused if payload
+    * has already been parsed by another component, otherwise payload is streamed if operator allows it.
+    * @param parsedBody The lazily parsed Json payload to evaluate
+    * @param specification The evaluation specification (JSONPointer expression + operator + cases)
+    * @return The result of evaluation is whether one of the cases, whether
+    * @throws JsonMappingException if incoming Json payload is malformed or invalid
+    */
+   public static String evaluate(ParsedBody parsedBody, JsonEvaluationSpecification specification) throws JsonMappingException {
+      return evaluate(parsedBody, specification, new CompiledDispatchCases(specification));
+   }
+
+   /**
+    * Evaluate a lazily parsed Json payload regarding a specification whose cases have already been compiled.
+    * @param parsedBody The lazily parsed Json payload to evaluate
+    * @param specification The evaluation specification (JSONPointer expression + operator + cases)
+    * @param compiledCases The compiled cases of specification
+    * @return The result of evaluation is whether one of the cases, whether
+    * @throws JsonMappingException if incoming Json payload is malformed or invalid
+    */
+   public static String evaluate(ParsedBody parsedBody, JsonEvaluationSpecification specification,
+                                 CompiledDispatchCases compiledCases) throws JsonMappingException {
+      if (!parsedBody.isJsonParsed() && specification.getOperator() != EvaluationOperator.size) {
+         return evaluate(parsedBody.getText(), specification, compiledCases);
+      }
       JsonNode rootNode;
       try {
-         ObjectMapper mapper = new ObjectMapper();
-         rootNode = mapper.readTree(new StringReader(jsonText));
+         rootNode = parsedBody.getJsonNode();
       } catch (Exception e) {
          log.error("Exception while parsing Json text", e);
          throw new JsonMappingException("Exception while parsing Json payload");
       }
+      return evaluate(rootNode, specification, compiledCases);
+   }
 
+   /**
+    * Evaluate a Json tree regarding a specification.
+    * @param rootNode The root node of Json payload to evaluate
+    * @param specification The evaluation specification (JSONPointer expression + operator + cases)
+    * @return The result of evaluation is whether one of the cases, whether
+    */
+   public static String evaluate(JsonNode rootNode, JsonEvaluationSpecification specification) {
+      return evaluate(rootNode, specification, new CompiledDispatchCases(specification));
+   }
+
+   /**
+    * Evaluate a Json tree regarding a specification whose cases have already been compiled.
+    * @param rootNode The root node of Json payload to evaluate
+    * @param specification The evaluation specification (JSONPointer expression + operator + cases)
+    * @param compiledCases The compiled cases of specification
+    * @return The result of evaluation is whether one of the cases, whether
+    */
+   public static String evaluate(JsonNode rootNode, JsonEvaluationSpecification specification,
+                                 CompiledDispatchCases compiledCases) {
       // Retrieve evaluated node within JSON tree.
       JsonNode evaluatedNode = rootNode.at(specification.getExp());
-      String caseKey = evaluatedNode.asText();
 
+      if (specification.getOperator() == EvaluationOperator.size) {
+         // Consider size evaluation.
+         if (evaluatedNode.isArray()) {
+            return compiledCases.findRangeCase(evaluatedNode.size());
+         }
+         return compiledCases.getDefault();
+      }
+      return evaluateCaseKey(evaluatedNode.asText(), specification, compiledCases);
+   }
+
+   /**
+    * Read the textual value targeted by a JSON Pointer expression, walking the payload tokens and stopping as soon
+    * as target is reached. Result is the same as {@code JsonNode.at(jsonPointer).asText()}: empty string for missing
+    * or container targets.
+    * @param jsonText The Json payload to read
+    * @param jsonPointer The JSON Pointer expression (ex: {@code /items/0/country})
+    * @return The textual value of target
+    * @throws IOException if payload is malformed before target is reached
+    */
+   public static String readPointerValue(String jsonText, String jsonPointer) throws IOException {
+      JsonPointer pointer = JsonPointer.compile(jsonPointer);
+      try (JsonParser parser = MAPPER.getFactory().createParser(jsonText)) {
+         JsonToken token = parser.nextToken();
+         while (token != null) {
+            if (pointer.matches()) {
+               return getScalarText(parser, token);
+            }
+            if (token == JsonToken.START_OBJECT) {
+               // Look for matching property, skipping other ones.
+               String property = pointer.getMatchingProperty();
+               boolean found = false;
+               while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                  String name = parser.getCurrentName();
+                  token = parser.nextToken();
+                  if (name.equals(property)) {
+                     found = true;
+                     break;
+                  }
+                  parser.skipChildren();
+               }
+               if (!found) {
+                  return "";
+               }
+            } else if (token == JsonToken.START_ARRAY) {
+               // Look for matching index, skipping previous elements.
+               int index = pointer.getMatchingIndex();
+               if (index < 0) {
+                  return "";
+               }
+               int i = 0;
+               token = parser.nextToken();
+               while (token != JsonToken.END_ARRAY && i < index) {
+                  parser.skipChildren();
+                  token = parser.nextToken();
+                  i++;
+               }
+               if (token == JsonToken.END_ARRAY) {
+                  return "";
+               }
+            } else {
+               // Scalar value but pointer still has segments.
+               return "";
+            }
+            pointer = pointer.tail();
+         }
+      }
+      return "";
+   }
+
+   /** Get text of current token the same way a tree node would have been rendered as text. */
+   private static String getScalarText(JsonParser parser, JsonToken token) throws IOException {
+      switch (token) {
+         case VALUE_STRING:
+            return parser.getText();
+         case VALUE_NUMBER_INT:
+            return parser.getNumberValue().toString();
+         case VALUE_NUMBER_FLOAT:
+            return String.valueOf(parser.getDoubleValue());
+         case VALUE_TRUE:
+            return "true";
+         case VALUE_FALSE:
+            return "false";
+         case VALUE_NULL:
+            return "null";
+         default:
+            // Objects and arrays have no textual value.
+            return "";
+      }
+   }
+
+   /**
+    * Find the case matching the textual value of expression target depending on specification operator. This
+    * is the common part of evaluations for all operators but {@code size}.
+    * @param caseKey The textual value of expression target (empty if target is missing)
+    * @param specification The evaluation specification (JSONPointer expression + operator + cases)
+    * @param compiledCases The compiled cases of specification
+    * @return The result of evaluation is whether one of the cases, whether
+    */
+   public static String evaluateCaseKey(String caseKey, JsonEvaluationSpecification specification,
+                                        CompiledDispatchCases compiledCases) {
+      DispatchCases cases = compiledCases.getCases();
       switch (specification.getOperator()) {
          case equals:
             // Consider simple equality.
-            String value = specification.getCases().get(caseKey);
-            return (value != null ? value : specification.getCases().getDefault());
+            String value = cases.get(caseKey);
+            return (value != null ? value : cases.getDefault());
 
          case range:
             // Consider range evaluation.
@@ -82,96 +271,27 @@ public class JsonExpressionEvaluator {
                caseNumber = Double.parseDouble(caseKey);
             } catch (NumberFormatException nfe) {
                log.error(caseKey + " into range expression cannot be parsed as number. Considering default case.");
-               return specification.getCases().getDefault();
+               return cases.getDefault();
             }
-            return foundRangeMatchingCase(caseNumber, specification.getCases());
+            return compiledCases.findRangeCase(caseNumber);
 
          case regexp:
             // Consider regular expression evaluation for each case key.
-            for (String choiceKey : specification.getCases().keySet()) {
-               if (!"default".equals(choiceKey)) {
-                  if (Pattern.matches(choiceKey, caseKey)) {
-                     return specification.getCases().get(choiceKey);
-                  }
-               }
-            }
-            break;
-
-         case size:
-            // Consider size evaluation.
-            if (evaluatedNode.isArray()) {
-               int size = evaluatedNode.size();
-               return foundRangeMatchingCase(size, specification.getCases());
-            }
-            break;
+            return compiledCases.findRegexpCase(caseKey);
 
          case presence:
             // Consider presence evaluation.
             if (caseKey != null && caseKey.length() > 0) {
-               if (specification.getCases().containsKey("found")) {
-                  return specification.getCases().get("found");
+               if (cases.containsKey("found")) {
+                  return cases.get("found");
                }
             } else {
-               if (specification.getCases().containsKey("missing")) {
-                  return specification.getCases().get("missing");
+               if (cases.containsKey("missing")) {
+                  return cases.get("missing");
                }
             }
             break;
       }
-      return specification.getCases().getDefault();
-   }
-
-   /** Evaluate cases from dispatchCases against caseNumber, considering each key as a range expression. */
-   private static String foundRangeMatchingCase(double caseNumber, DispatchCases dispatchCases) {
-      // Evaluating each case key.
-      for (String choiceKey : dispatchCases.keySet()) {
-         boolean match = false;
-         if (isValidRangeKey(choiceKey)) {
-            try {
-               double[] minAndMax = extractMinAndMaxFromRange(choiceKey);
-               // Fastidious part... Apply operators depending of brackets orientations.
-               if (choiceKey.startsWith("[") && choiceKey.endsWith("]")) {
-                  if (caseNumber >= minAndMax[0] && caseNumber <= minAndMax[1]) {
-                     match = true;
-                  }
-               } else if (choiceKey.startsWith("]") && choiceKey.endsWith("]")) {
-                  if (caseNumber > minAndMax[0] && caseNumber <= minAndMax[1]) {
-                     match = true;
-                  }
-               } else if (choiceKey.startsWith("[") && choiceKey.endsWith("[")) {
-                  if (caseNumber >= minAndMax[0] && caseNumber < minAndMax[1]) {
-                     match = true;
-                  }
-               } else if (choiceKey.startsWith("]") && choiceKey.endsWith("[")) {
-                  if (caseNumber > minAndMax[0] && caseNumber < minAndMax[1]) {
-                     match = true;
-                  }
-               }
-            } catch (NumberFormatException nfe) {
-               log.warn(choiceKey + " expression cannot be parsed as number for min and max range.");
-            }
-         }
-         if (match) {
-            return dispatchCases.get(choiceKey);
-         }
-      }
-      return dispatchCases.getDefault();
-   }
-
-   /** Validate key is a correct range expression. */
-   private static boolean isValidRangeKey(String key) {
-      boolean hasCorrectStart = key.startsWith("[") || key.startsWith("]");
-      boolean hasCorrectEnd = key.endsWith("[") || key.endsWith("]");
-      boolean hasDelimiter = key.contains(";");
-      return hasCorrectStart && hasDelimiter && hasCorrectEnd;
-   }
-
-   /** Extract minimum and maximum from range expression. Considering min on the left side and max on the right side. */
-   private static double[] extractMinAndMaxFromRange(String range) throws NumberFormatException {
-      double[] results = new double[2];
-      String[] minAndMax = range.split(";");
-      results[0] = Double.parseDouble(minAndMax[0].substring(1));
-      results[1] = Double.parseDouble(minAndMax[1].substring(0, minAndMax[1].length() - 1));
-      return results;
+      return cases.getDefault();
    }
 }
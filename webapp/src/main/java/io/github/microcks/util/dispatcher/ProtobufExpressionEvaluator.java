@@ -0,0 +1,246 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.util.dispatcher;
+
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageOrBuilder;
+import com.google.protobuf.util.JsonFormat;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * This utility class evaluates protobuf messages against a JsonEvaluationSpecification without building their JSON
+ * representation. JSONPointer expression is resolved against message field descriptors (with repeated fields,
+ * maps and nested messages support) and values are rendered as text the same way they would be once printed with
+ * {@code JsonFormat} and read into a JSON tree: fields are matched by their JSON or proto name, fields having their
+ * default value are missing and 64 bits integers, enums and bytes are rendered as their JSON string. Well-known
+ * types having a special JSON mapping (Timestamp, Struct, wrappers...) are printed as JSON when reached.
+ * @author laurent
+ */
+public class ProtobufExpressionEvaluator {
+
+   /** Jackson mapper is thread-safe once configured, it can be shared. */
+   private static final ObjectMapper MAPPER = new ObjectMapper();
+
+   private static final String WELL_KNOWN_TYPES_PACKAGE = "google.protobuf";
+
+   private ProtobufExpressionEvaluator() {
+      // Private constructor to hide the implicit public one.
+   }
+
+   /**
+    * Evaluate a protobuf message regarding a specification whose cases have already been compiled.
+    * @param message The protobuf message to evaluate
+    * @param specification The evaluation specification (JSONPointer expression + operator + cases)
+    * @param compiledCases The compiled cases of specification
+    * @return The result of evaluation is whether one of the cases, whether
+    * @throws JsonMappingException if a well-known type of message cannot be represented as JSON
+    */
+   public static String evaluate(MessageOrBuilder message, JsonEvaluationSpecification specification,
+                                 CompiledDispatchCases compiledCases) throws JsonMappingException {
+      try {
+         if (specification.getOperator() == EvaluationOperator.size) {
+            int size = readPointerArraySize(message, specification.getExp());
+            return (size >= 0 ? compiledCases.findRangeCase(size) : compiledCases.getDefault());
+         }
+         return JsonExpressionEvaluator.evaluateCaseKey(readPointerValue(message, specification.getExp()),
+               specification, compiledCases);
+      } catch (IOException ioe) {
+         throw new JsonMappingException("Exception while representing protobuf message as Json");
+      }
+   }
+
+   /**
+    * Read the textual value targeted by a JSON Pointer expression into a protobuf message. Result is the same
+    * as {@code JsonNode.at(jsonPointer).asText()} on the JSON representation of message.
+    * @param message The protobuf message to read
+    * @param jsonPointer The JSON Pointer expression (ex: {@code /items/0/country})
+    * @return The textual value of target, empty string for missing or container targets
+    * @throws IOException if a well-known type of message cannot be represented as JSON
+    */
+   public static String readPointerValue(MessageOrBuilder message, String jsonPointer) throws IOException {
+      Target target = resolve(message, JsonPointer.compile(jsonPointer));
+      if (target == null) {
+         return "";
+      }
+      if (target.jsonNode != null) {
+         return target.jsonNode.asText();
+      }
+      if (target.value instanceof List || target.value instanceof MessageOrBuilder) {
+         // Containers have no textual value.
+         return "";
+      }
+      return toText(target.field, target.value);
+   }
+
+   /** Return the size of targeted repeated field or -1 if target is not an array. */
+   private static int readPointerArraySize(MessageOrBuilder message, String jsonPointer) throws IOException {
+      Target target = resolve(message, JsonPointer.compile(jsonPointer));
+      if (target == null) {
+         return -1;
+      }
+      if (target.jsonNode != null) {
+         return target.jsonNode.isArray() ? target.jsonNode.size() : -1;
+      }
+      if (target.value instanceof List && !target.field.isMapField()) {
+         return ((List<?>) target.value).size();
+      }
+      return -1;
+   }
+
+   /** Walk the message following pointer. Return null if pointer target is missing. */
+   private static Target resolve(MessageOrBuilder message, JsonPointer pointer) throws IOException {
+      Object current = message;
+      Descriptors.FieldDescriptor currentField = null;
+
+      while (!pointer.matches()) {
+         String segment = pointer.getMatchingProperty();
+         if (current instanceof MessageOrBuilder) {
+            MessageOrBuilder currentMessage = (MessageOrBuilder) current;
+            if (isWellKnownType(currentMessage)) {
+               return jsonTarget(currentMessage, pointer);
+            }
+            Descriptors.FieldDescriptor field = findField(currentMessage.getDescriptorForType(), segment);
+            if (field == null || !isPresent(currentMessage, field)) {
+               return null;
+            }
+            currentField = field;
+            current = currentMessage.getField(field);
+         } else if (current instanceof List && currentField.isMapField()) {
+            current = findMapValue((List<?>) current, segment);
+            if (current == null) {
+               return null;
+            }
+            currentField = currentField.getMessageType().findFieldByName("value");
+         } else if (current instanceof List) {
+            List<?> elements = (List<?>) current;
+            int index = pointer.getMatchingIndex();
+            if (index < 0 || index >= elements.size()) {
+               return null;
+            }
+            current = elements.get(index);
+         } else {
+            // Scalar value but pointer still has segments.
+            return null;
+         }
+         pointer = pointer.tail();
+      }
+
+      if (current instanceof MessageOrBuilder && isWellKnownType((MessageOrBuilder) current)) {
+         return jsonTarget((MessageOrBuilder) current, pointer);
+      }
+      return new Target(currentField, current, null);
+   }
+
+   /** Find a field by its JSON name or by its proto name. */
+   private static Descriptors.FieldDescriptor findField(Descriptors.Descriptor descriptor, String name) {
+      for (Descriptors.FieldDescriptor field : descriptor.getFields()) {
+         if (field.getJsonName().equals(name)) {
+            return field;
+         }
+      }
+      return descriptor.findFieldByName(name);
+   }
+
+   /** Check if field would be printed as JSON (default values are omitted). */
+   private static boolean isPresent(MessageOrBuilder message, Descriptors.FieldDescriptor field) {
+      if (field.isRepeated()) {
+         return message.getRepeatedFieldCount(field) > 0;
+      }
+      return message.hasField(field);
+   }
+
+   /** Find the value of the map entry whose key is printed as segment. */
+   private static Object findMapValue(List<?> entries, String segment) {
+      for (Object entry : entries) {
+         MessageOrBuilder entryMessage = (MessageOrBuilder) entry;
+         Descriptors.Descriptor entryType = entryMessage.getDescriptorForType();
+         Descriptors.FieldDescriptor keyField = entryType.findFieldByName("key");
+         if (segment.equals(toText(keyField, entryMessage.getField(keyField)))) {
+            return entryMessage.getField(entryType.findFieldByName("value"));
+         }
+      }
+      return null;
+   }
+
+   private static boolean isWellKnownType(MessageOrBuilder message) {
+      return WELL_KNOWN_TYPES_PACKAGE.equals(message.getDescriptorForType().getFile().getPackage());
+   }
+
+   /** Fallback for well-known types: print them and resolve remaining pointer into JSON tree. */
+   private static Target jsonTarget(MessageOrBuilder message, JsonPointer pointer) throws IOException {
+      try {
+         JsonNode node = MAPPER.readTree(JsonFormat.printer().print(message)).at(pointer);
+         return node.isMissingNode() ? null : new Target(null, null, node);
+      } catch (InvalidProtocolBufferException ipbe) {
+         throw new IOException("Well-known type cannot be printed as Json", ipbe);
+      }
+   }
+
+   /** Render a scalar field value as its JSON text. */
+   private static String toText(Descriptors.FieldDescriptor field, Object value) {
+      switch (field.getJavaType()) {
+         case INT:
+            if (field.getType() == Descriptors.FieldDescriptor.Type.UINT32
+                  || field.getType() == Descriptors.FieldDescriptor.Type.FIXED32) {
+               return Integer.toUnsignedString((Integer) value);
+            }
+            return value.toString();
+         case LONG:
+            if (field.getType() == Descriptors.FieldDescriptor.Type.UINT64
+                  || field.getType() == Descriptors.FieldDescriptor.Type.FIXED64) {
+               return Long.toUnsignedString((Long) value);
+            }
+            return value.toString();
+         case FLOAT:
+            // Floats are printed with their own precision and read back as doubles.
+            return String.valueOf(Double.parseDouble(value.toString()));
+         case DOUBLE:
+            return value.toString();
+         case ENUM:
+            Descriptors.EnumValueDescriptor enumValue = (Descriptors.EnumValueDescriptor) value;
+            return (enumValue.getIndex() >= 0 ? enumValue.getName() : String.valueOf(enumValue.getNumber()));
+         case BYTE_STRING:
+            return Base64.getEncoder().encodeToString(((ByteString) value).toByteArray());
+         default:
+            // STRING and BOOLEAN.
+            return value.toString();
+      }
+   }
+
+   /** The target of a pointer: a field value or a JSON node for well-known types. */
+   private static class Target {
+      private final Descriptors.FieldDescriptor field;
+      private final Object value;
+      private final JsonNode jsonNode;
+
+      private Target(Descriptors.FieldDescriptor field, Object value, JsonNode jsonNode) {
+         this.field = field;
+         this.value = value;
+         this.jsonNode = jsonNode;
+      }
+   }
+}
@@ -18,6 +18,8 @@
  */
 package io.github.microcks.util.grpc;
 
+import io.github.microcks.cache.GrpcMethodCache;
+import io.github.microcks.event.ServiceChangeEvent;
 import io.github.microcks.web.GrpcServerCallHandler;
 
 import io.grpc.HandlerRegistry;
@@ -29,16 +31,24 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationListener;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * A GRPC HandlerRegistry that delegates server calls handling to GrpcServerCallHandler.
+ * A GRPC HandlerRegistry that delegates server calls handling to GrpcServerCallHandler. Method definitions are
+ * built once per full method name and reused for next calls until a ServiceChangeEvent is received for their
+ * Service. Methods of unknown Services or Operations get no definition so that server rejects them as unimplemented.
+ * Methods whose Protobuf descriptor cannot be built get a unary definition that is not kept, and a definition built
+ * concurrently to a ServiceChangeEvent is not kept either so that eviction always wins.
+ * Server streaming methods are detected from their Protobuf descriptor and get a streaming definition.
  * @author laurent
  */
 @Component
-public class GrpcMockHandlerRegistry extends HandlerRegistry {
+public class GrpcMockHandlerRegistry extends HandlerRegistry implements ApplicationListener<ServiceChangeEvent> {
 
    /** A simple logger for diagnostic messages. */
    private static Logger log = LoggerFactory.getLogger(GrpcMockHandlerRegistry.class);
@@ -46,13 +56,64 @@ public class GrpcMockHandlerRegistry extends HandlerRegistry {
    @Autowired
    private GrpcServerCallHandler serverCallHandler;
 
+   @Autowired
+   private GrpcMethodCache grpcMethodCache;
+
+   /** Method definitions indexed by full method name. */
+   private final Map<String, MockMethodDefinition> definitions = new ConcurrentHashMap<>();
+
+   /** Incremented on each eviction, for not keeping definitions built from evicted methods. */
+   private long generation = 0;
+
    @Nullable
    @Override
    public ServerMethodDefinition<?, ?> lookupMethod(String fullMethodName, @Nullable String authority) {
+      MockMethodDefinition definition = definitions.get(fullMethodName);
+      if (definition != null) {
+         return definition.definition;
+      }
       log.debug("lookupMethod() with fullMethodName: " + fullMethodName);
-      return ServerMethodDefinition.create(mockMethodDescriptor(fullMethodName), mockServerCallHandler(fullMethodName));
+      long lookupGeneration;
+      synchronized (this) {
+         lookupGeneration = generation;
+      }
+      GrpcMethodCache.GrpcMethod method = grpcMethodCache.getMethod(fullMethodName);
+      if (method.getService() == null || method.getOperation() == null) {
+         log.debug("No GRPC Service or Operation def found for {}", fullMethodName);
+         return null;
+      }
+      if (isServerStreaming(method)) {
+         definition = new MockMethodDefinition(method.getService().getId(), ServerMethodDefinition.create(
+               mockServerStreamingMethodDescriptor(fullMethodName), mockServerStreamingCallHandler(fullMethodName)));
+      } else {
+         definition = new MockMethodDefinition(method.getService().getId(),
+               ServerMethodDefinition.create(mockMethodDescriptor(fullMethodName), mockServerCallHandler(fullMethodName)));
+      }
+      if (method.getMethodDescriptor() != null) {
+         synchronized (this) {
+            if (lookupGeneration == generation) {
+               definitions.put(fullMethodName, definition);
+            }
+         }
+      }
+      return definition.definition;
    }
 
+   @Override
+   public void onApplicationEvent(ServiceChangeEvent event) {
+      log.debug("Received a ServiceChangeEvent on {}, evicting gRPC method definitions", event.getServiceId());
+      synchronized (this) {
+         generation++;
+         definitions.values().removeIf(definition -> definition.serviceId.equals(event.getServiceId()));
+      }
+   }
+
+
+   /** Method type is detected from Protobuf descriptor, client streaming methods being still handled as unary ones. */
+   private static boolean isServerStreaming(GrpcMethodCache.GrpcMethod method) {
+      return method.getMethodDescriptor() != null && method.getMethodDescriptor().isServerStreaming()
+            && !method.getMethodDescriptor().isClientStreaming();
+   }
 
    protected MethodDescriptor<byte[], byte[]> mockMethodDescriptor(String fullMethodName) {
       return GrpcUtil.buildGenericUnaryMethodDescriptor(fullMethodName);
@@ -61,4 +122,22 @@ public class GrpcMockHandlerRegistry extends HandlerRegistry {
    protected ServerCallHandler<byte[], byte[]> mockServerCallHandler(String fullMethodName) {
       return serverCallHandler.getUnaryServerCallHandler(fullMethodName);
    }
+
+   protected MethodDescriptor<byte[], byte[]> mockServerStreamingMethodDescriptor(String fullMethodName) {
+      return GrpcUtil.buildGenericServerStreamingMethodDescriptor(fullMethodName);
+   }
+
+   protected ServerCallHandler<byte[], byte[]> mockServerStreamingCallHandler(String fullMethodName) {
+      return serverCallHandler.getServerStreamingCallHandler(fullMethodName);
+   }
+
+   private static class MockMethodDefinition {
+      private final String serviceId;
+      private final ServerMethodDefinition<byte[], byte[]> definition;
+
+      private MockMethodDefinition(String serviceId, ServerMethodDefinition<byte[], byte[]> definition) {
+         this.serviceId = serviceId;
+         this.definition = definition;
+      }
+   }
 }
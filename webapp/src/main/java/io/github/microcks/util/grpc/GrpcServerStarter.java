@@ -18,10 +18,16 @@
  */
 package io.github.microcks.util.grpc;
 
-import io.grpc.Grpc;
 import io.grpc.Server;
-import io.grpc.ServerBuilder;
 import io.grpc.TlsServerCredentials;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.grpc.netty.shaded.io.netty.util.concurrent.DefaultThreadFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
 import org.bouncycastle.asn1.pkcs.PrivateKeyInfo;
 import org.bouncycastle.openssl.PEMKeyPair;
 import org.bouncycastle.openssl.PEMParser;
@@ -47,12 +53,27 @@ import java.security.PrivateKey;
 import java.security.spec.InvalidKeySpecException;
 import java.util.Base64;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  *
  * This is starter component for building, starting and managing shutdown of a GRPC server handling mock calls.
+ * Calls executor, Netty event loops, flow limits and keepalive can be tuned using {@code grpc.server.*} properties;
+ * unset properties keep the gRPC defaults. Executor may be one of:
+ * <ul>
+ *    <li>{@code cached}: an unbounded cached thread pool, like the gRPC default one,</li>
+ *    <li>{@code fixed}: a pool of {@code grpc.server.executor.threads} threads with an unbounded queue,</li>
+ *    <li>{@code virtual}: a virtual thread per call when running on a JVM supporting them (fixed pool otherwise),</li>
+ *    <li>{@code direct}: calls are run by Netty event loop threads, that must then never be blocked.</li>
+ * </ul>
+ * Except for {@code direct}, executor is monitored as {@code grpc-server} executor metrics.
  * @author laurent
  */
 @Component
@@ -65,6 +86,11 @@ public class GrpcServerStarter {
 
    private static final String END_RSA_PRIVATE_KEY = "-----END RSA PRIVATE KEY-----";
 
+   static final String EXECUTOR_CACHED = "cached";
+   static final String EXECUTOR_FIXED = "fixed";
+   static final String EXECUTOR_VIRTUAL = "virtual";
+   static final String EXECUTOR_DIRECT = "direct";
+
    @Value("${grpc.server.port:9090}")
    private final Integer serverPort = 9090;
 
@@ -74,9 +100,45 @@ public class GrpcServerStarter {
    @Value("${grpc.server.privateKeyFilePath:}")
    private final String privateKeyFilePath = null;
 
+   @Value("${grpc.server.executor.type:cached}")
+   private final String executorType = null;
+
+   @Value("${grpc.server.executor.threads:0}")
+   private final Integer executorThreads = 0;
+
+   @Value("${grpc.server.boss-event-loop-threads:0}")
+   private final Integer bossEventLoopThreads = 0;
+
+   @Value("${grpc.server.worker-event-loop-threads:0}")
+   private final Integer workerEventLoopThreads = 0;
+
+   @Value("${grpc.server.max-concurrent-calls-per-connection:0}")
+   private final Integer maxConcurrentCallsPerConnection = 0;
+
+   @Value("${grpc.server.max-inbound-message-size:0}")
+   private final Integer maxInboundMessageSize = 0;
+
+   @Value("${grpc.server.keepalive-time-seconds:0}")
+   private final Long keepAliveTime = 0L;
+
+   @Value("${grpc.server.keepalive-timeout-seconds:0}")
+   private final Long keepAliveTimeout = 0L;
+
+   @Value("${grpc.server.permit-keepalive-time-seconds:0}")
+   private final Long permitKeepAliveTime = 0L;
+
    @Autowired
    private GrpcMockHandlerRegistry mockHandlerRegistry;
 
+   @Autowired
+   private MeterRegistry meterRegistry;
+
+   private ExecutorService executor;
+
+   private EventLoopGroup bossEventLoopGroup;
+
+   private EventLoopGroup workerEventLoopGroup;
+
    private AtomicBoolean isRunning = new AtomicBoolean(false);
 
    private CountDownLatch latch;
@@ -94,8 +156,7 @@ public class GrpcServerStarter {
                   .keyManager(new File(certChainFilePath), new File(privateKeyFilePath));
 
             try {
-               grpcServer = Grpc.newServerBuilderForPort(serverPort, tlsBuilder.build())
-                     .fallbackHandlerRegistry(mockHandlerRegistry)
+               grpcServer = configureServerBuilder(NettyServerBuilder.forPort(serverPort, tlsBuilder.build()))
                      .build();
             } catch (IllegalArgumentException iae) {
                if (iae.getCause() instanceof NoSuchAlgorithmException
@@ -111,16 +172,14 @@ public class GrpcServerStarter {
                      tlsBuilder = TlsServerCredentials.newBuilder()
                            .keyManager(new FileInputStream(certChainFilePath),
                                  new ByteArrayInputStream(privateKeyBytes));
-                     grpcServer = Grpc.newServerBuilderForPort(serverPort, tlsBuilder.build())
-                           .fallbackHandlerRegistry(mockHandlerRegistry)
+                     grpcServer = configureServerBuilder(NettyServerBuilder.forPort(serverPort, tlsBuilder.build()))
                            .build();
                   }
                }
             }
          } else {
             // Else build a "plain text" server.
-            grpcServer = ServerBuilder.forPort(serverPort)
-                  .fallbackHandlerRegistry(mockHandlerRegistry)
+            grpcServer = configureServerBuilder(NettyServerBuilder.forPort(serverPort))
                   .build();
          }
          grpcServer.start();
@@ -135,6 +194,7 @@ public class GrpcServerStarter {
                      log.info("Shutting down gRPC server since JVM is shutting down");
                      finalGrpcServer.shutdown().awaitTermination(2, TimeUnit.SECONDS);
                   }
+                  releaseResources();
                } catch (InterruptedException e) {
                   e.printStackTrace();
                }
@@ -146,6 +206,103 @@ public class GrpcServerStarter {
       }
    }
 
+   /** Apply mock handlers and tuning properties to server builder. */
+   private NettyServerBuilder configureServerBuilder(NettyServerBuilder builder) {
+      builder.fallbackHandlerRegistry(mockHandlerRegistry);
+
+      // Calls executor. Cached one is created explicitly (instead of gRPC default one) so that it is monitored.
+      String type = (executorType != null ? executorType.trim().toLowerCase() : EXECUTOR_CACHED);
+      if (EXECUTOR_DIRECT.equals(type)) {
+         log.info("GRPC Server calls will be run directly on event loop threads");
+         builder.directExecutor();
+      } else {
+         if (executor == null) {
+            executor = ExecutorServiceMetrics.monitor(meterRegistry, createExecutor(type, executorThreads),
+                  "grpc-server", Tags.empty());
+         }
+         builder.executor(executor);
+      }
+
+      // Boss and worker event loops must be provided together with channel type.
+      if (bossEventLoopThreads > 0 || workerEventLoopThreads > 0) {
+         if (bossEventLoopGroup == null) {
+            log.info("Using {} boss and {} worker event loop threads for GRPC Server",
+                  Math.max(1, bossEventLoopThreads), workerEventLoopThreads > 0 ? workerEventLoopThreads : "default");
+            bossEventLoopGroup = new NioEventLoopGroup(Math.max(1, bossEventLoopThreads),
+                  new DefaultThreadFactory("grpc-boss-elg", true));
+            workerEventLoopGroup = new NioEventLoopGroup(workerEventLoopThreads,
+                  new DefaultThreadFactory("grpc-worker-elg", true));
+         }
+         builder.bossEventLoopGroup(bossEventLoopGroup)
+               .workerEventLoopGroup(workerEventLoopGroup)
+               .channelType(NioServerSocketChannel.class);
+      }
+
+      if (maxConcurrentCallsPerConnection > 0) {
+         builder.maxConcurrentCallsPerConnection(maxConcurrentCallsPerConnection);
+      }
+      if (maxInboundMessageSize > 0) {
+         builder.maxInboundMessageSize(maxInboundMessageSize);
+      }
+      if (keepAliveTime > 0) {
+         builder.keepAliveTime(keepAliveTime, TimeUnit.SECONDS);
+      }
+      if (keepAliveTimeout > 0) {
+         builder.keepAliveTimeout(keepAliveTimeout, TimeUnit.SECONDS);
+      }
+      if (permitKeepAliveTime > 0) {
+         builder.permitKeepAliveTime(permitKeepAliveTime, TimeUnit.SECONDS);
+      }
+      return builder;
+   }
+
+   /**
+    * Create the executor of GRPC server calls.
+    * @param type The type of executor ({@code cached}, {@code fixed} or {@code virtual})
+    * @param threads The number of threads of fixed pool (0 for twice the number of processors)
+    * @return A new executor
+    */
+   static ExecutorService createExecutor(String type, int threads) {
+      AtomicInteger threadCount = new AtomicInteger();
+      ThreadFactory threadFactory = runnable -> {
+         Thread thread = new Thread(runnable, "grpc-mock-executor-" + threadCount.incrementAndGet());
+         thread.setDaemon(true);
+         return thread;
+      };
+      if (EXECUTOR_CACHED.equals(type)) {
+         log.info("GRPC Server calls will be run on a cached thread pool");
+         return Executors.newCachedThreadPool(threadFactory);
+      }
+      if (EXECUTOR_VIRTUAL.equals(type)) {
+         // Virtual threads are only available starting with Java 21, look them up reflectively.
+         try {
+            ExecutorService virtualExecutor = (ExecutorService) Executors.class
+                  .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            log.info("GRPC Server calls will be run on virtual threads");
+            return virtualExecutor;
+         } catch (ReflectiveOperationException roe) {
+            log.warn("Virtual threads are not supported by this JVM, using a fixed thread pool for GRPC Server");
+         }
+      } else if (!EXECUTOR_FIXED.equals(type)) {
+         log.warn("Unknown GRPC Server executor type '{}', using a fixed thread pool", type);
+      }
+      int poolSize = (threads > 0 ? threads : 2 * Runtime.getRuntime().availableProcessors());
+      log.info("GRPC Server calls will be run on a pool of {} threads", poolSize);
+      return new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(), threadFactory);
+   }
+
+   /** Release executor and event loops created for GRPC server, once server is terminated. */
+   private void releaseResources() {
+      if (executor != null) {
+         executor.shutdown();
+      }
+      if (bossEventLoopGroup != null) {
+         bossEventLoopGroup.shutdownGracefully(0, 2, TimeUnit.SECONDS);
+         workerEventLoopGroup.shutdownGracefully(0, 2, TimeUnit.SECONDS);
+      }
+   }
+
    private void startDaemonAwaitThread() {
       Thread awaitThread = new Thread(() -> {
          try {
@@ -88,4 +88,16 @@ public class GrpcUtil {
             .setFullMethodName(fullMethodName)
             .build();
    }
+
+   /**
+    * Build a generic GRPC Server streaming Method descriptor (using byte[] as input and byte[] as output.
+    * @param fullMethodName The GRPC method full name (service fqdn / method)
+    * @return A new MethodDescriptor using a byte array marshaller.
+    */
+   public static MethodDescriptor<byte[], byte[]> buildGenericServerStreamingMethodDescriptor(String fullMethodName) {
+      return MethodDescriptor.newBuilder(BinaryLogProvider.BYTEARRAY_MARSHALLER, BinaryLogProvider.BYTEARRAY_MARSHALLER)
+            .setType(MethodDescriptor.MethodType.SERVER_STREAMING)
+            .setFullMethodName(fullMethodName)
+            .build();
+   }
 }
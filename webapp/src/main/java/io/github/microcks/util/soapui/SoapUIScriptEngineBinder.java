@@ -46,6 +46,19 @@ public class SoapUIScriptEngineBinder{
     * @param request The wrapped incoming servlet request.
     */
    public static void bindSoapUIEnvironment(ScriptEngine engine, String requestContent, HttpServletRequest request){
+      Bindings bindings = engine.createBindings();
+      fillSoapUIEnvironment(bindings, requestContent, request);
+      engine.setBindings(bindings, ScriptContext.ENGINE_SCOPE);
+   }
+
+   /**
+    * Fill bindings with a SoapUI environment. To be used for evaluating CompiledScript with
+    * per-request bindings, not altering the engine shared state.
+    * @param bindings The bindings to fill with environment.
+    * @param requestContent The content of request to use as data
+    * @param request The wrapped incoming servlet request.
+    */
+   public static void fillSoapUIEnvironment(Bindings bindings, String requestContent, HttpServletRequest request){
       // Build a map of header values.
       StringToStringsMap headers = new StringToStringsMap();
       for (String headerName : Collections.list(request.getHeaderNames())) {
@@ -56,10 +69,8 @@ public class SoapUIScriptEngineBinder{
       FakeSoapUIMockRequest mockRequest = new FakeSoapUIMockRequest(requestContent, headers);
       mockRequest.setRequest(request);
 
-      // Create bindings and put content according to SoapUI binding environment.
-      Bindings bindings = engine.createBindings();
+      // Put content according to SoapUI binding environment.
       bindings.put("mockRequest", mockRequest);
       bindings.put("log", log);
-      engine.setBindings(bindings, ScriptContext.ENGINE_SCOPE);
    }
 }
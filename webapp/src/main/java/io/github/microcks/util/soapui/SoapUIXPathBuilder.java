@@ -19,6 +19,7 @@
 package io.github.microcks.util.soapui;
 
 import io.github.microcks.util.WritableNamespaceContext;
+import io.github.microcks.util.el.XPathExpressionCache;
 
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathExpression;
@@ -31,6 +32,21 @@ import javax.xml.xpath.XPathFactory;
  */
 public class SoapUIXPathBuilder {
 
+   /** Compiled matchers indexed by rules, confined to evaluating threads. */
+   private static final XPathExpressionCache MATCHERS_CACHE =
+         new XPathExpressionCache(XPathExpressionCache.DEFAULT_MAX_ENTRIES_PER_THREAD);
+
+   /**
+    * Get a XPath expressions matcher from SoapUI Rules, reusing the one already built by current thread if any.
+    * Returned matcher must not be shared with other threads.
+    * @param rules The string representing the rules.
+    * @return An XPathExpression following the given rules
+    * @throws XPathExpressionException if something wrong occurs.
+    */
+   public static XPathExpression getXPathMatcherFromRules(String rules) throws XPathExpressionException {
+      return MATCHERS_CACHE.get(rules, SoapUIXPathBuilder::buildXPathMatcherFromRules);
+   }
+
    /**
     * Build a XPath expressions matcher from SoapUI Rules.
     * @param rules The string representing the rules.
@@ -18,28 +18,47 @@
  */
 package io.github.microcks.web;
 
+import io.github.microcks.cache.ServiceCache;
 import io.github.microcks.domain.GenericResource;
 import io.github.microcks.domain.Operation;
 import io.github.microcks.domain.Service;
 import io.github.microcks.domain.ServiceType;
 import io.github.microcks.event.MockInvocationEvent;
-import io.github.microcks.repository.GenericResourceRepository;
-import io.github.microcks.repository.ServiceRepository;
+import io.github.microcks.repository.GenericResourceStore;
+import io.github.microcks.util.BulkDocumentReader;
+import io.github.microcks.web.dto.BulkReportDTO;
 import org.bson.Document;
 import org.bson.json.JsonParseException;
+import org.bson.types.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * @author laurent
@@ -54,16 +73,22 @@ public class DynamicMockRestController {
    public static final String ID_FIELD = "id";
 
    @Autowired
-   ServiceRepository serviceRepository;
+   ServiceCache serviceCache;
 
    @Autowired
-   GenericResourceRepository genericResourceRepository;
+   GenericResourceStore genericResourceStore;
 
    @Autowired
    private ApplicationContext applicationContext;
 
+   @Autowired
+   private MockDelayScheduler mockDelayScheduler;
+
+   @Value("${mocks.generic-resource-store.bulk.batch-size:1000}")
+   private final Integer bulkBatchSize = 1000;
+
    @RequestMapping(value = "/{service}/{version}/{resource}", method = RequestMethod.POST)
-   public ResponseEntity<String> createResource(
+   public Object createResource(
          @PathVariable("service") String serviceName,
          @PathVariable("version") String version,
          @PathVariable("resource") String resource,
@@ -89,7 +114,7 @@ public class DynamicMockRestController {
             genericResource.setServiceId(mockContext.service.getId());
             genericResource.setPayload(document);
 
-            genericResource = genericResourceRepository.save(genericResource);
+            genericResource = genericResourceStore.save(genericResource);
          } catch (JsonParseException jpe) {
             // Return a 422 code : unprocessable entity.
             return new ResponseEntity<>(HttpStatus.UNPROCESSABLE_ENTITY);
@@ -97,22 +122,23 @@ public class DynamicMockRestController {
 
          // Append id and wait if specified before returning.
          document.append(ID_FIELD, genericResource.getId());
-         waitForDelay(startTime, delay, mockContext);
-         return new ResponseEntity<>(document.toJson(), HttpStatus.CREATED);
+         return respondAfterDelay(startTime, delay, mockContext, new ResponseEntity<>(document.toJson(), HttpStatus.CREATED));
       }
       // Return a 400 code : bad request.
       return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
    }
 
    @RequestMapping(value = "/{service}/{version}/{resource}", method = RequestMethod.GET)
-   public ResponseEntity<String> findResources(
+   public Object findResources(
          @PathVariable("service") String serviceName,
          @PathVariable("version") String version,
          @PathVariable("resource") String resource,
          @RequestParam(value = "page", required = false, defaultValue = "0") int page,
          @RequestParam(value = "size", required = false, defaultValue = "20") int size,
+         @RequestParam(value = "after", required = false) String after,
          @RequestParam(value="delay", required=false) Long delay,
-         @RequestBody(required=false) String body
+         @RequestBody(required=false) String body,
+         HttpServletResponse response
    ) {
       log.debug("Find resources '{}' for service '{}-{}'", resource, serviceName, version);
       long startTime = System.currentTimeMillis();
@@ -121,12 +147,37 @@ public class DynamicMockRestController {
 
       MockContext mockContext = getMockContext(serviceName, version, "GET /" + resource);
       if (mockContext != null) {
+         if (size < 1 || (after != null && !ObjectId.isValid(after))) {
+            // Return a 400 code : bad request.
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+         }
+
+         if (body == null && (after != null || page == 0)) {
+            // Use keyset pagination on identifiers and stream resources from cursor to response. As this method
+            // returns Object, Spring only recognizes a StreamingResponseBody that is not wrapped into a
+            // ResponseEntity: headers are thus set on response directly.
+            String serviceId = mockContext.service.getId();
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            String continuationToken = genericResourceStore.getContinuationToken(serviceId, after, size);
+            if (continuationToken != null) {
+               response.setHeader(MockHeaders.CONTINUATION_TOKEN_HEADER, continuationToken);
+            }
+            StreamingResponseBody responseBody = outputStream -> {
+               try (Stream<GenericResource> genericResources = genericResourceStore.streamByServiceId(serviceId, after, size)) {
+                  writeJSONArray(genericResources.iterator(), outputStream);
+               }
+            };
+            // Wait if specified before returning.
+            return respondAfterDelay(startTime, delay, mockContext, responseBody);
+         }
 
          List<GenericResource> genericResources = null;
          if (body == null) {
-            genericResources = genericResourceRepository.findByServiceId(mockContext.service.getId(), PageRequest.of(page, size));
+            // Sort by identifier so that pages are stable and consistent with the keyset ones.
+            genericResources = genericResourceStore.findByServiceId(mockContext.service.getId(),
+                  PageRequest.of(page, size, Sort.by(Sort.Direction.ASC, "_id")));
          } else {
-            genericResources = genericResourceRepository.findByServiceIdAndJSONQuery(mockContext.service.getId(), body);
+            genericResources = genericResourceStore.findByServiceIdAndJSONQuery(mockContext.service.getId(), body);
          }
 
          // Transform and collect resources.
@@ -135,15 +186,14 @@ public class DynamicMockRestController {
                .collect(Collectors.toList());
 
          // Wait if specified before returning.
-         waitForDelay(startTime, delay, mockContext);
-         return new ResponseEntity<>(formatToJSONArray(resources), HttpStatus.OK);
+         return respondAfterDelay(startTime, delay, mockContext, new ResponseEntity<>(formatToJSONArray(resources), HttpStatus.OK));
       }
       // Return a 400 code : bad request.
       return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
    }
 
    @RequestMapping(value = "/{service}/{version}/{resource}/{resourceId}", method = RequestMethod.GET)
-   public ResponseEntity<String> getResource(
+   public Object getResource(
          @PathVariable("service") String serviceName,
          @PathVariable("version") String version,
          @PathVariable("resource") String resource,
@@ -158,17 +208,15 @@ public class DynamicMockRestController {
       MockContext mockContext = getMockContext(serviceName, version, "GET /" + resource + "/:id");
       if (mockContext != null) {
          // Get the requested generic resource.
-         GenericResource genericResource = genericResourceRepository.findById(resourceId).orElse(null);
+         GenericResource genericResource = genericResourceStore.findById(mockContext.service.getId(), resourceId);
 
          // Wait if specified before returning.
-         waitForDelay(startTime, delay, mockContext);
-
          if (genericResource != null) {
             // Return the resource as well as a 200 code.
-            return new ResponseEntity<>(transformToResourceJSON(genericResource), HttpStatus.OK);
+            return respondAfterDelay(startTime, delay, mockContext, new ResponseEntity<>(transformToResourceJSON(genericResource), HttpStatus.OK));
          } else {
             // Return a 404 code : not found.
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            return respondAfterDelay(startTime, delay, mockContext, new ResponseEntity<>(HttpStatus.NOT_FOUND));
          }
       }
 
@@ -177,7 +225,7 @@ public class DynamicMockRestController {
    }
 
    @RequestMapping(value = "/{service}/{version}/{resource}/{resourceId}", method = RequestMethod.PUT)
-   public ResponseEntity<String> updateResource(
+   public Object updateResource(
          @PathVariable("service") String serviceName,
          @PathVariable("version") String version,
          @PathVariable("resource") String resource,
@@ -194,7 +242,7 @@ public class DynamicMockRestController {
       MockContext mockContext = getMockContext(serviceName, version, "PUT /" + resource + "/:id");
       if (mockContext != null) {
          // Get the requested generic resource.
-         GenericResource genericResource = genericResourceRepository.findById(resourceId).orElse(null);
+         GenericResource genericResource = genericResourceStore.findById(mockContext.service.getId(), resourceId);
          if (genericResource != null) {
             Document document = null;
 
@@ -206,23 +254,17 @@ public class DynamicMockRestController {
                // Now update the generic resource payload.
                genericResource.setPayload(document);
 
-               genericResourceRepository.save(genericResource);
+               genericResourceStore.save(genericResource);
             } catch (JsonParseException jpe) {
                // Return a 422 code : unprocessable entity.
                return new ResponseEntity<>(HttpStatus.UNPROCESSABLE_ENTITY);
             }
-            // Wait if specified before returning.
-            waitForDelay(startTime, delay, mockContext);
-
-            // Return the updated resource as well as a 200 code.
-            return new ResponseEntity<>(transformToResourceJSON(genericResource), HttpStatus.OK);
+            // Wait if specified before returning the updated resource as well as a 200 code.
+            return respondAfterDelay(startTime, delay, mockContext, new ResponseEntity<>(transformToResourceJSON(genericResource), HttpStatus.OK));
 
          } else {
-            // Wait if specified before returning.
-            waitForDelay(startTime, delay, mockContext);
-
-            // Return a 404 code : not found.
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            // Wait if specified before returning a 404 code : not found.
+            return respondAfterDelay(startTime, delay, mockContext, new ResponseEntity<>(HttpStatus.NOT_FOUND));
          }
       }
 
@@ -231,7 +273,7 @@ public class DynamicMockRestController {
    }
 
    @RequestMapping(value = "/{service}/{version}/{resource}/{resourceId}", method = RequestMethod.DELETE)
-   public ResponseEntity<String> deleteResource(
+   public Object deleteResource(
          @PathVariable("service") String serviceName,
          @PathVariable("version") String version,
          @PathVariable("resource") String resource,
@@ -245,19 +287,58 @@ public class DynamicMockRestController {
 
       MockContext mockContext = getMockContext(serviceName, version, "DELETE /" + resource + "/:id");
       if (mockContext != null) {
-         genericResourceRepository.deleteById(resourceId);
+         genericResourceStore.deleteById(mockContext.service.getId(), resourceId);
 
-         // Wait if specified before returning.
-         waitForDelay(startTime, delay, mockContext);
-
-         // Return a 204 code : done and no content returned.
-         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+         // Wait if specified before returning a 204 code : done and no content returned.
+         return respondAfterDelay(startTime, delay, mockContext, new ResponseEntity<>(HttpStatus.NO_CONTENT));
       }
 
       // Return a 400 code : bad request.
       return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
    }
 
+   @RequestMapping(value = "/{service}/{version}/{resource}/_bulk", method = RequestMethod.POST)
+   public Object createResources(
+         @PathVariable("service") String serviceName,
+         @PathVariable("version") String version,
+         @PathVariable("resource") String resource,
+         @RequestParam(value = "ordered", required = false, defaultValue = "true") boolean ordered,
+         @RequestParam(value="delay", required=false) Long delay,
+         HttpServletRequest request
+   ) {
+      log.debug("Creating resources '{}' in bulk for service '{}-{}'", resource, serviceName, version);
+      return processBulk(sanitizeServiceName(serviceName), version, "POST /" + resource, RequestMethod.POST,
+            ordered, delay, request);
+   }
+
+   @RequestMapping(value = "/{service}/{version}/{resource}/_bulk", method = RequestMethod.PUT)
+   public Object updateResources(
+         @PathVariable("service") String serviceName,
+         @PathVariable("version") String version,
+         @PathVariable("resource") String resource,
+         @RequestParam(value = "ordered", required = false, defaultValue = "true") boolean ordered,
+         @RequestParam(value="delay", required=false) Long delay,
+         HttpServletRequest request
+   ) {
+      log.debug("Updating resources '{}' in bulk for service '{}-{}'", resource, serviceName, version);
+      return processBulk(sanitizeServiceName(serviceName), version, "PUT /" + resource + "/:id", RequestMethod.PUT,
+            ordered, delay, request);
+   }
+
+   @RequestMapping(value = "/{service}/{version}/{resource}/_bulk", method = RequestMethod.DELETE)
+   public Object deleteResources(
+         @PathVariable("service") String serviceName,
+         @PathVariable("version") String version,
+         @PathVariable("resource") String resource,
+         @RequestParam(value = "ordered", required = false, defaultValue = "true") boolean ordered,
+         @RequestParam(value="delay", required=false) Long delay,
+         HttpServletRequest request
+   ) {
+      log.debug("Deleting resources '{}' in bulk for service '{}-{}'", resource, serviceName, version);
+      return processBulk(sanitizeServiceName(serviceName), version, "DELETE /" + resource + "/:id", RequestMethod.DELETE,
+            ordered, delay, request);
+   }
+
    /** Sanitize the service name (check encoding and so on...) */
    private String sanitizeServiceName(String serviceName) {
       // If serviceName was encoded with '+' instead of '%20', replace them.
@@ -269,7 +350,7 @@ public class DynamicMockRestController {
 
    /** Retrieve a MockContext corresponding to operation on service. Null if not found or not valid. */
    private MockContext getMockContext(String serviceName, String version, String operationName) {
-      Service service = serviceRepository.findByNameAndVersion(serviceName, version);
+      Service service = serviceCache.getService(serviceName, version);
       if (service != null && ServiceType.GENERIC_REST.equals(service.getType())) {
          for (Operation operation : service.getOperations()) {
             if (operationName.equals(operation.getName())) {
@@ -297,35 +378,158 @@ public class DynamicMockRestController {
       return builder.append("]").toString();
    }
 
-   private void waitForDelay(Long since, Long delay, MockContext mockContext) {
-      // Setting delay to default one if not set.
-      if (delay == null && mockContext.operation.getDefaultDelay() != null) {
-         delay = mockContext.operation.getDefaultDelay();
+   /** Write resources as a JSON array formatted the same way as formatToJSONArray(), one by one. */
+   private void writeJSONArray(Iterator<GenericResource> genericResources, OutputStream outputStream) throws IOException {
+      Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+      writer.write('[');
+      while (genericResources.hasNext()) {
+         writer.write(transformToResourceJSON(genericResources.next()));
+         if (genericResources.hasNext()) {
+            writer.write(", ");
+         }
+      }
+      writer.write(']');
+      writer.flush();
+   }
+
+   /**
+    * Process a bulk payload (JSON array or NDJSON) read from request, writing items to store in batches. When
+    * ordered, processing stops at first failed item; otherwise failed items are reported and skipped. A payload
+    * that cannot be read any further is answered with a 400 code, report telling which items have been processed.
+    */
+   private Object processBulk(String serviceName, String version, String operationName, RequestMethod method,
+                              boolean ordered, Long delay, HttpServletRequest request) {
+      long startTime = System.currentTimeMillis();
+
+      MockContext mockContext = getMockContext(serviceName, version, operationName);
+      if (mockContext == null) {
+         // Return a 400 code : bad request.
+         return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
       }
 
-      if (delay != null && delay > -1) {
-         log.debug("Mock delay is turned on, waiting if necessary...");
-         long duration = System.currentTimeMillis() - since;
-         if (duration < delay) {
-            Object semaphore = new Object();
-            synchronized (semaphore) {
-               try {
-                  semaphore.wait(delay - duration);
-               } catch (Exception e) {
-                  log.debug("Delay semaphore was interrupted");
+      String serviceId = mockContext.service.getId();
+      BulkReportDTO report = new BulkReportDTO();
+      List<GenericResource> batch = new ArrayList<>(bulkBatchSize);
+      List<Integer> positions = new ArrayList<>(bulkBatchSize);
+      BulkDocumentReader reader = null;
+      HttpStatus status = HttpStatus.OK;
+      try {
+         reader = new BulkDocumentReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8));
+         BulkDocumentReader.Item item = reader.next();
+         while (item != null) {
+            GenericResource genericResource = new GenericResource();
+            genericResource.setServiceId(serviceId);
+            String error = item.getError() != null ? item.getError() : prepareBulkResource(method, item, genericResource);
+
+            if (error != null) {
+               // Items preceding the failed one have to be written before stopping.
+               if (ordered && !(writeBulkBatch(method, serviceId, batch, positions, true, report))) {
+                  break;
+               }
+               report.addError(item.getIndex(), error);
+               if (ordered) {
+                  break;
+               }
+            } else {
+               batch.add(genericResource);
+               positions.add(item.getIndex());
+               if (batch.size() >= bulkBatchSize
+                     && !writeBulkBatch(method, serviceId, batch, positions, ordered, report) && ordered) {
+                  break;
                }
             }
+            item = reader.next();
+         }
+      } catch (IOException | JsonParseException e) {
+         // Payload cannot be read any further.
+         log.debug("Bulk payload cannot be read", e);
+         status = HttpStatus.BAD_REQUEST;
+         report.setPayloadError(reader != null ? reader.getIndex() : 0, "Payload cannot be read: " + e.getMessage());
+      }
+      writeBulkBatch(method, serviceId, batch, positions, ordered, report);
+
+      // Wait if specified before returning.
+      return respondAfterDelay(startTime, delay, mockContext, new ResponseEntity<>(report, status));
+   }
+
+   /** Complete resource with bulk item depending on method. Return an error message if item is not valid. */
+   private String prepareBulkResource(RequestMethod method, BulkDocumentReader.Item item, GenericResource genericResource) {
+      Document document = item.getDocument();
+      if (method == RequestMethod.POST) {
+         if (document == null) {
+            return "Item is not a JSON object";
+         }
+         document.remove(ID_FIELD);
+         genericResource.setPayload(document);
+         return null;
+      }
+      // Update and delete need an identifier, delete accepts it alone.
+      Object id = (document != null ? document.remove(ID_FIELD) : item.getString());
+      if (method == RequestMethod.PUT && document == null) {
+         return "Item is not a JSON object";
+      }
+      if (!(id instanceof String) || !ObjectId.isValid((String) id)) {
+         return "Item has no valid " + ID_FIELD;
+      }
+      genericResource.setId((String) id);
+      genericResource.setPayload(document);
+      return null;
+   }
+
+   /**
+    * Write a batch of resources to store and record outcome into report. Batch is cleared afterwards.
+    * @return Whether all items of batch have succeeded
+    */
+   private boolean writeBulkBatch(RequestMethod method, String serviceId, List<GenericResource> batch,
+                                  List<Integer> positions, boolean ordered, BulkReportDTO report) {
+      if (batch.isEmpty()) {
+         return true;
+      }
+      Map<Integer, String> errors;
+      switch (method) {
+         case POST:
+            errors = genericResourceStore.insertAll(batch, ordered);
+            break;
+         case PUT:
+            errors = genericResourceStore.updateAll(serviceId, batch, ordered);
+            break;
+         default:
+            errors = genericResourceStore.deleteAll(serviceId,
+                  batch.stream().map(GenericResource::getId).collect(Collectors.toList()), ordered);
+      }
+
+      if (ordered && !errors.isEmpty()) {
+         // Items following the first error have not been processed.
+         Map.Entry<Integer, String> first = errors.entrySet().iterator().next();
+         report.addSucceeded(first.getKey());
+         report.addError(positions.get(first.getKey()), first.getValue());
+      } else {
+         report.addSucceeded(batch.size() - errors.size());
+         for (Map.Entry<Integer, String> error : errors.entrySet()) {
+            report.addError(positions.get(error.getKey()), error.getValue());
          }
-         log.debug("Delay now expired, releasing response !");
+      }
+      batch.clear();
+      positions.clear();
+      return errors.isEmpty();
+   }
+
+   private Object respondAfterDelay(long since, Long delay, MockContext mockContext, Object response) {
+      // Setting delay to default one if not set.
+      if (delay == null && mockContext.operation.getDefaultDelay() != null) {
+         delay = mockContext.operation.getDefaultDelay();
       }
 
-      // Publish an invocation event before returning.
-      MockInvocationEvent event = new MockInvocationEvent(this, mockContext.service.getName(),
-            mockContext.service.getVersion(),
-            "DynamicMockRestController",
-            new Date(since), since - System.currentTimeMillis());
-      applicationContext.publishEvent(event);
-      log.debug("Mock invocation event has been published");
+      return mockDelayScheduler.respondAfterDelay(since, delay, () -> {
+         // Publish an invocation event before returning.
+         MockInvocationEvent event = new MockInvocationEvent(this, mockContext.service.getName(),
+               mockContext.service.getVersion(),
+               "DynamicMockRestController",
+               new Date(since), since - System.currentTimeMillis());
+         applicationContext.publishEvent(event);
+         log.debug("Mock invocation event has been published");
+         return response;
+      });
    }
 
    private class MockContext {
@@ -19,17 +19,23 @@
 package io.github.microcks.web;
 
 import io.github.microcks.domain.GenericResource;
-import io.github.microcks.repository.GenericResourceRepository;
+import io.github.microcks.repository.GenericResourceIndexManager;
+import io.github.microcks.repository.GenericResourceStore;
+import io.github.microcks.security.AuthorizationChecker;
+import io.github.microcks.security.UserInfo;
 import org.bson.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -48,7 +54,14 @@ public class GenericResourceController {
    public static final String ID_FIELD = "id";
 
    @Autowired
-   GenericResourceRepository genericResourceRepository;
+   GenericResourceStore genericResourceStore;
+
+   /** Only available with Mongo store. */
+   @Autowired(required = false)
+   GenericResourceIndexManager indexManager;
+
+   @Autowired
+   private AuthorizationChecker authorizationChecker;
 
    @RequestMapping(value = "/genericresources/service/{serviceId}", method = RequestMethod.GET)
    public List<GenericResource> listResources(
@@ -58,7 +71,7 @@ public class GenericResourceController {
    ) {
       log.debug("List resources for service '{}'", serviceId);
 
-      List<GenericResource> genericResources = genericResourceRepository.findByServiceId(serviceId, PageRequest.of(page, size));
+      List<GenericResource> genericResources = genericResourceStore.findByServiceId(serviceId, PageRequest.of(page, size));
       // Transform and collect resources.
       List<GenericResource> resources = genericResources.stream()
             .map(genericResource -> addIdToPayload(genericResource))
@@ -74,10 +87,21 @@ public class GenericResourceController {
       log.debug("Counting resources for service '{}'", serviceId);
 
       Map<String, Long> counter = new HashMap<>();
-      counter.put("counter", genericResourceRepository.countByServiceId(serviceId));
+      counter.put("counter", genericResourceStore.countByServiceId(serviceId));
       return counter;
    }
 
+   @RequestMapping(value = "/genericresources/queryshapes", method = RequestMethod.GET)
+   public ResponseEntity<List<GenericResourceIndexManager.QueryShape>> listQueryShapes(UserInfo userInfo) {
+      log.debug("Listing query shapes of resources");
+      if (authorizationChecker.hasRole(userInfo, AuthorizationChecker.ROLE_ADMIN)) {
+         List<GenericResourceIndexManager.QueryShape> shapes = (indexManager != null ?
+               indexManager.getQueryShapes() : Collections.emptyList());
+         return new ResponseEntity<>(shapes, HttpStatus.OK);
+      }
+      return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+   }
+
    private GenericResource addIdToPayload(GenericResource genericResource) {
       Document document = genericResource.getPayload();
       document.append(ID_FIELD, genericResource.getId());
@@ -18,37 +18,37 @@
  */
 package io.github.microcks.web;
 
+import io.github.microcks.cache.GrpcMethodCache;
+import io.github.microcks.cache.OperationPlanCache;
+import io.github.microcks.cache.ResponseCache;
 import io.github.microcks.domain.Operation;
-import io.github.microcks.domain.Resource;
-import io.github.microcks.domain.ResourceType;
 import io.github.microcks.domain.Response;
 import io.github.microcks.domain.Service;
-import io.github.microcks.repository.ResourceRepository;
-import io.github.microcks.repository.ResponseRepository;
-import io.github.microcks.repository.ServiceRepository;
 import io.github.microcks.util.DispatchStyles;
 import io.github.microcks.util.IdBuilder;
+import io.github.microcks.util.OperationPlan;
 import io.github.microcks.util.dispatcher.FallbackSpecification;
 import io.github.microcks.util.dispatcher.JsonEvaluationSpecification;
-import io.github.microcks.util.dispatcher.JsonExpressionEvaluator;
 import io.github.microcks.util.dispatcher.JsonMappingException;
+import io.github.microcks.util.dispatcher.ProtobufExpressionEvaluator;
+import io.github.microcks.util.el.ParsedBody;
 
-import com.google.protobuf.DescriptorProtos;
 import com.google.protobuf.Descriptors;
 import com.google.protobuf.DynamicMessage;
 import com.google.protobuf.util.JsonFormat;
-import io.github.microcks.util.grpc.GrpcUtil;
 import io.grpc.ServerCallHandler;
 import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.ServerCalls;
 import io.grpc.stub.StreamObserver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Component;
 
-import java.util.Base64;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -62,17 +62,23 @@ public class GrpcServerCallHandler {
    private static Logger log = LoggerFactory.getLogger(GrpcServerCallHandler.class);
 
    @Autowired
-   private ServiceRepository serviceRepository;
+   private GrpcMethodCache grpcMethodCache;
 
    @Autowired
-   private ResourceRepository resourceRepository;
+   private ResponseCache responseCache;
 
    @Autowired
-   private ResponseRepository responseRepository;
+   private OperationPlanCache operationPlanCache;
+
+   @Autowired
+   private MockDelayScheduler mockDelayScheduler;
 
    @Autowired
    private ApplicationContext applicationContext;
 
+   @Value("${grpc.server.streaming.message-interval-ms:0}")
+   private final Long streamingMessageInterval = 0L;
+
    /**
     * Create an ServerCallHandler that uses Microcks mocks for unary calls.
     * @param fullMethodName The GRPC method full name.
@@ -82,6 +88,16 @@ public class GrpcServerCallHandler {
       return ServerCalls.asyncUnaryCall(new MockedUnaryMethod(fullMethodName));
    }
 
+   /**
+    * Create an ServerCallHandler that uses Microcks mocks for server streaming calls. Response content is
+    * expected to be a JSON array of messages that are sent one by one.
+    * @param fullMethodName The GRPC method full name.
+    * @return A ServerCallHandler
+    */
+   public ServerCallHandler<byte[], byte[]> getServerStreamingCallHandler(String fullMethodName) {
+      return ServerCalls.asyncServerStreamingCall(new MockedServerStreamingMethod(fullMethodName));
+   }
+
    /**
     * This internal class is handling UnaryMethod calls.
     * It takes care of building a JSON representation from input, apply a dispatcher to
@@ -90,9 +106,6 @@ public class GrpcServerCallHandler {
    protected class MockedUnaryMethod implements ServerCalls.UnaryMethod<byte[], byte[]> {
 
       private String fullMethodName;
-      private String serviceName;
-      private String serviceVersion;
-      private String operationName;
 
       /**
        * Build a UnaryMethod for handling GRPC call.
@@ -100,132 +113,300 @@ public class GrpcServerCallHandler {
        */
       public MockedUnaryMethod(String fullMethodName) {
          this.fullMethodName = fullMethodName;
-         // Retrieve operation name, service name and version from fullMethodName.
-         operationName = fullMethodName.substring(fullMethodName.indexOf("/") + 1);
-         serviceName = fullMethodName.substring(fullMethodName.lastIndexOf(".") + 1, fullMethodName.indexOf("/"));
-         String packageName = fullMethodName.substring(0, fullMethodName.lastIndexOf("."));
-         String[] parts = packageName.split("\\.");
-         serviceVersion = (parts.length > 2 ? parts[parts.length - 1] : packageName);
       }
 
       @Override
       public void invoke(byte[] bytes, StreamObserver<byte[]> streamObserver) {
-         log.info("Servicing mock response for service [{}, {}] and method {}",
-               serviceName, serviceVersion, operationName);
-
-         DynamicMessage outMsg = null;
          long startTime = System.currentTimeMillis();
-
          try {
-            // Get service and spotted operation.
-            Service service = serviceRepository.findByNameAndVersion(serviceName, serviceVersion);
-            if (service == null) {
-               // No service found.
-               log.debug("No GRPC Service def found for [{}, {}]", serviceName, serviceVersion);
-               streamObserver.onError(Status.UNIMPLEMENTED.withDescription("No GRPC Service def found for " + fullMethodName).asException());
-               return;
+            MockedInvocation invocation = findMockedInvocation(fullMethodName, bytes, false, streamObserver);
+            if (invocation != null) {
+               // Send the output message and complete the stream once default delay is expired, publishing
+               // an invocation event before. This does not block the gRPC executor while waiting.
+               mockDelayScheduler.schedule(startTime, invocation.delay, () -> {
+                  try {
+                     MockControllerCommons.publishMockInvocation(applicationContext, this, invocation.service,
+                           invocation.response, startTime);
+                     streamObserver.onNext(invocation.messages.get(0));
+                     streamObserver.onCompleted();
+                  } catch (Throwable t) {
+                     // May run on scheduler thread: close call so that client does not wait for its deadline.
+                     closeOnError(streamObserver, t);
+                  }
+               });
             }
-            Operation grpcOperation = null;
-            for (Operation operation : service.getOperations()) {
-               if (operation.getName().equals(operationName)) {
-                  grpcOperation = operation;
-                  break;
-               }
+         } catch (Throwable t) {
+            closeOnError(streamObserver, t);
+         }
+      }
+   }
+
+   /**
+    * This internal class is handling ServerStreamingMethod calls.
+    * Response is found the same way as for unary calls, then its messages are sent only when call is
+    * ready to accept them (so that a slow client does not make them pile up into server buffers) and
+    * spaced by the configured message interval.
+    */
+   protected class MockedServerStreamingMethod implements ServerCalls.ServerStreamingMethod<byte[], byte[]> {
+
+      private String fullMethodName;
+
+      /**
+       * Build a ServerStreamingMethod for handling GRPC call.
+       * @param fullMethodName The GRPC method full identifier.
+       */
+      public MockedServerStreamingMethod(String fullMethodName) {
+         this.fullMethodName = fullMethodName;
+      }
+
+      @Override
+      public void invoke(byte[] bytes, StreamObserver<byte[]> streamObserver) {
+         long startTime = System.currentTimeMillis();
+         try {
+            MockedInvocation invocation = findMockedInvocation(fullMethodName, bytes, true, streamObserver);
+            if (invocation != null) {
+               // Handlers can only be set while invoking, emission starts once default delay is expired.
+               ServerCallStreamObserver<byte[]> callObserver = (ServerCallStreamObserver<byte[]>) streamObserver;
+               MessagesEmitter emitter = new MessagesEmitter(callObserver, invocation.messages);
+               callObserver.setOnCancelHandler(emitter::cancel);
+               callObserver.setOnReadyHandler(emitter::drain);
+
+               mockDelayScheduler.schedule(startTime, invocation.delay, () -> {
+                  try {
+                     MockControllerCommons.publishMockInvocation(applicationContext, this, invocation.service,
+                           invocation.response, startTime);
+                  } catch (Throwable t) {
+                     emitter.fail(t);
+                     return;
+                  }
+                  emitter.start();
+               });
             }
+         } catch (Throwable t) {
+            closeOnError(streamObserver, t);
+         }
+      }
+   }
 
-            if (grpcOperation != null) {
-               log.debug("Found a valid operation {} with rules: {}", grpcOperation.getName(), grpcOperation.getDispatcherRules());
-
-               // We must find dispatcher and its rules. Default to operation ones but
-               // if we have a Fallback this is the one who is holding the first pass rules.
-               String dispatcher = grpcOperation.getDispatcher();
-               String dispatcherRules = grpcOperation.getDispatcherRules();
-               FallbackSpecification fallback = MockControllerCommons.getFallbackIfAny(grpcOperation);
-               if (fallback != null) {
-                  dispatcher = fallback.getDispatcher();
-                  dispatcherRules = fallback.getDispatcherRules();
-               }
+   /**
+    * Log an unexpected throwable and close call with an UNKNOWN status.
+    * @param streamObserver The call observer
+    * @param t The unexpected throwable
+    */
+   private void closeOnError(StreamObserver<byte[]> streamObserver, Throwable t) {
+      log.error("Unexpected throwable during GRPC input request processing", t);
+      streamObserver.onError(Status.UNKNOWN.withDescription("Unexpected throwable during GRPC input request processing").withCause(t).asException());
+   }
 
-               // In order to inspect incoming byte array, we need the Protobuf binary descriptor that should
-               // have been processed while importing the .proto schema for the service.
-               List<Resource> resources = resourceRepository.findByServiceIdAndType(service.getId(), ResourceType.PROTOBUF_DESCRIPTOR);
-               if (resources == null || resources.size() != 1) {
-                  log.error("Did not found any pre-processed Protobuf binary descriptor...");
-               }
-               Resource pbResource = resources.get(0);
+   /**
+    * Find the mock response of a call and encode its messages. Errors are reported to observer.
+    * @param fullMethodName The GRPC method full identifier.
+    * @param bytes The input message bytes
+    * @param streaming Whether response content is a stream of messages
+    * @param streamObserver The call observer for reporting errors
+    * @return The mocked invocation or null if an error has been reported
+    * @throws Exception if input message cannot be parsed or response cannot be encoded
+    */
+   private MockedInvocation findMockedInvocation(String fullMethodName, byte[] bytes, boolean streaming,
+                                                 StreamObserver<byte[]> streamObserver) throws Exception {
+      // Retrieve service, operation and descriptor resolved on first call of this method.
+      GrpcMethodCache.GrpcMethod method = grpcMethodCache.getMethod(fullMethodName);
+      log.info("Servicing mock response for service [{}, {}] and method {}",
+            method.getServiceName(), method.getServiceVersion(), method.getOperationName());
 
-               Descriptors.MethodDescriptor md = GrpcUtil.findMethodDescriptor(pbResource.getContent(), serviceName, operationName);
+      // Get service and spotted operation.
+      Service service = method.getService();
+      if (service == null) {
+         // No service found.
+         log.debug("No GRPC Service def found for [{}, {}]", method.getServiceName(), method.getServiceVersion());
+         streamObserver.onError(Status.UNIMPLEMENTED.withDescription("No GRPC Service def found for " + fullMethodName).asException());
+         return null;
+      }
+      Operation grpcOperation = method.getOperation();
+      if (grpcOperation == null) {
+         // No operation found.
+         log.debug("No valid operation found for [{}, {}] and {}", method.getServiceName(),
+               method.getServiceVersion(), method.getOperationName());
+         streamObserver.onError(Status.UNIMPLEMENTED.withDescription("No valid operation found for " + fullMethodName).asException());
+         return null;
+      }
+      log.debug("Found a valid operation {} with rules: {}", grpcOperation.getName(), grpcOperation.getDispatcherRules());
 
-               // Now parse the incoming message.
-               DynamicMessage inMsg = DynamicMessage.parseFrom(md.getInputType(), bytes);
-               String jsonBody = JsonFormat.printer().print(inMsg);
-               log.debug("Request body: {}", jsonBody);
+      // Dispatcher and its rules come from plan: operation ones or Fallback first pass ones.
+      OperationPlan plan = operationPlanCache.getPlan(service, grpcOperation);
+      FallbackSpecification fallback = plan.getFallback();
 
-               //
-               String dispatchCriteria = computeDispatchCriteria(dispatcher, dispatcherRules, jsonBody);
-               log.debug("Dispatch criteria for finding response is {}", dispatchCriteria);
+      // Protobuf descriptor has been built from the one processed while importing the .proto schema.
+      Descriptors.MethodDescriptor md = method.getMethodDescriptor();
+      if (md == null) {
+         streamObserver.onError(Status.INTERNAL.withDescription("No Protobuf descriptor found for " + fullMethodName).asException());
+         return null;
+      }
 
-               // For now - regarding the available dispatchers - we only dealing with response names.
-               List<Response> responses = responseRepository.findByOperationIdAndName(IdBuilder.buildOperationId(service, grpcOperation), dispatchCriteria);
-               if (responses.isEmpty() && fallback != null) {
-                  // If we've found nothing and got a fallback, that's the moment!
-                  responses = responseRepository.findByOperationIdAndName(IdBuilder.buildOperationId(service, grpcOperation), fallback.getFallback());
-               }
+      // Now parse the incoming message. Its JSON representation is only built when response
+      // template or debug log do need it, dispatcher evaluating the message itself.
+      DynamicMessage inMsg = DynamicMessage.parseFrom(md.getInputType(), bytes);
+      ParsedBody parsedBody = null;
+      if (log.isDebugEnabled()) {
+         parsedBody = new ParsedBody(JsonFormat.printer().print(inMsg));
+         log.debug("Request body: {}", parsedBody.getText());
+      }
 
-               // No filter to apply, just check that we have a response.
-               if (responses.size() > 0) {
-                  Response response = responses.get(0);
-                  // Use a builder for out type with a Json parser to merge content and build outMsg.
-                  DynamicMessage.Builder outBuilder = DynamicMessage.newBuilder(md.getOutputType());
+      String dispatchCriteria = computeDispatchCriteria(plan, inMsg);
+      log.debug("Dispatch criteria for finding response is {}", dispatchCriteria);
 
-                  // Render response content before.
-                  String responseContent = MockControllerCommons.renderResponseContent(jsonBody, response);
+      // For now - regarding the available dispatchers - we only dealing with response names.
+      List<Response> responses = responseCache.findByOperationIdAndName(IdBuilder.buildOperationId(service, grpcOperation), dispatchCriteria);
+      if (responses.isEmpty() && fallback != null) {
+         // If we've found nothing and got a fallback, that's the moment!
+         responses = responseCache.findByOperationIdAndName(IdBuilder.buildOperationId(service, grpcOperation), fallback.getFallback());
+      }
 
-                  JsonFormat.parser().merge(responseContent, outBuilder);
-                  outMsg = outBuilder.build();
+      // No filter to apply, just check that we have a response.
+      if (responses.isEmpty()) {
+         // No response found.
+         log.info("No appropriate response found for this input {}, returning an error",
+               parsedBody != null ? parsedBody.getText() : JsonFormat.printer().print(inMsg));
+         streamObserver.onError(Status.NOT_FOUND.withDescription("No response found for the GRPC input request").asException());
+         return null;
+      }
+      Response response = responses.get(0);
 
-                  // Setting delay to default one if not set.
-                  if (grpcOperation.getDefaultDelay() != null) {
-                     MockControllerCommons.waitForDelay(startTime, grpcOperation.getDefaultDelay());
-                  }
+      List<byte[]> messages;
+      // Only check for templates: Http specific representation of response is not relevant here.
+      if (MockControllerCommons.isTemplated(response)) {
+         // Render response content before and use a Json parser to merge content into out type.
+         if (parsedBody == null) {
+            parsedBody = new ParsedBody(JsonFormat.printer().print(inMsg));
+         }
+         String responseContent = MockControllerCommons.renderResponseContent(parsedBody, response);
+         messages = streaming ? ResponseCache.encodeProtobufStream(responseContent, md.getOutputType())
+               : Collections.singletonList(ResponseCache.encodeProtobuf(responseContent, md.getOutputType()));
+      } else {
+         // Static response content has been encoded once.
+         messages = streaming ? responseCache.getProtobufStreamResponse(response, md.getOutputType())
+               : Collections.singletonList(responseCache.getProtobufResponse(response, md.getOutputType()));
+      }
+      return new MockedInvocation(service, response, grpcOperation.getDefaultDelay(), messages);
+   }
 
-                  // Publish an invocation event before returning.
-                  MockControllerCommons.publishMockInvocation(applicationContext, this, service, response, startTime);
+   /** The response found for a call with its encoded messages. */
+   private static class MockedInvocation {
+      private final Service service;
+      private final Response response;
+      private final Long delay;
+      private final List<byte[]> messages;
 
-                  // Send the output message and complete the stream.
-                  streamObserver.onNext(outMsg.toByteArray());
-                  streamObserver.onCompleted();
-               } else {
-                  // No response found.
-                  log.info("No appropriate response found for this input {}, returning an error", jsonBody);
-                  streamObserver.onError(Status.NOT_FOUND.withDescription("No response found for the GRPC input request").asException());
-               }
-            } else {
-               // No operation found.
-               log.debug("No valid operation found for [{}, {}] and {}", serviceName, serviceVersion, operationName);
-               streamObserver.onError(Status.UNIMPLEMENTED.withDescription("No valid operation found for " + fullMethodName).asException());
-            }
+      private MockedInvocation(Service service, Response response, Long delay, List<byte[]> messages) {
+         this.service = service;
+         this.response = response;
+         this.delay = delay;
+         this.messages = messages;
+      }
+   }
+
+   /**
+    * Emits the messages of a server streaming call, sending them only while call is ready and at most one every
+    * message interval. It is resumed either by the call onReady handler or by the delay scheduler, emission being
+    * synchronized as call observer is not thread-safe. As emission mostly runs on scheduler thread, failures
+    * close the call instead of being propagated.
+    */
+   private class MessagesEmitter {
+      private final ServerCallStreamObserver<byte[]> observer;
+      private final List<byte[]> messages;
+      private int index = 0;
+      private long nextEmissionTime = 0;
+      private boolean started = false;
+      private boolean waiting = false;
+      private boolean done = false;
+
+      private MessagesEmitter(ServerCallStreamObserver<byte[]> observer, List<byte[]> messages) {
+         this.observer = observer;
+         this.messages = messages;
+      }
+
+      /** Start emission once response delay is expired. */
+      private synchronized void start() {
+         started = true;
+         emit();
+      }
+
+      /** Resume emission when call becomes ready again. */
+      private synchronized void drain() {
+         if (started) {
+            emit();
+         }
+      }
+
+      /** Resume emission when message interval is expired. */
+      private synchronized void resume() {
+         waiting = false;
+         emit();
+      }
+
+      /** Stop emission and close call on unexpected failure. */
+      private synchronized void fail(Throwable t) {
+         if (!done) {
+            done = true;
+            closeOnError(observer, t);
+         }
+      }
+
+      /** Stop emission when call is cancelled by client. */
+      private synchronized void cancel() {
+         log.debug("Server streaming call has been cancelled after {} messages", index);
+         done = true;
+      }
+
+      private void emit() {
+         try {
+            emitAvailable();
          } catch (Throwable t) {
-            log.error("Unexpected throwable during GRPC input request processing", t);
-            streamObserver.onError(Status.UNKNOWN.withDescription("Unexpected throwable during GRPC input request processing").withCause(t).asException());
-            t.printStackTrace();
+            fail(t);
+         }
+      }
+
+      private void emitAvailable() {
+         while (!done && !waiting) {
+            if (index == messages.size()) {
+               done = true;
+               observer.onCompleted();
+               return;
+            }
+            if (!observer.isReady()) {
+               // Transport buffers are full, onReady handler will resume.
+               return;
+            }
+            long now = System.currentTimeMillis();
+            if (now < nextEmissionTime) {
+               waiting = true;
+               mockDelayScheduler.schedule(now, nextEmissionTime - now, this::resume);
+               return;
+            }
+            observer.onNext(messages.get(index++));
+            nextEmissionTime = now + streamingMessageInterval;
          }
       }
    }
 
-   /** Create a dispatchCriteria string from type, rules and request elements. */
-   private String computeDispatchCriteria(String dispatcher, String dispatcherRules, String jsonBody) {
+   /** Create a dispatchCriteria string from operation plan and request elements. */
+   private String computeDispatchCriteria(OperationPlan plan, DynamicMessage message) {
       String dispatchCriteria = null;
+      String dispatcher = plan.getDispatcher();
 
       // Depending on dispatcher, evaluate request with rules.
       if (dispatcher != null) {
          switch (dispatcher) {
             case DispatchStyles.JSON_BODY:
-               try {
-                  JsonEvaluationSpecification specification = JsonEvaluationSpecification.buildFromJsonString(dispatcherRules);
-                  dispatchCriteria = JsonExpressionEvaluator.evaluate(jsonBody, specification);
-               } catch (JsonMappingException jme) {
-                  log.error("Dispatching rules of operation cannot be interpreted as JsonEvaluationSpecification", jme);
+               JsonEvaluationSpecification specification = plan.getJsonEvaluationSpecification();
+               if (specification != null) {
+                  try {
+                     // Evaluate protobuf message directly, with no Json round-trip.
+                     dispatchCriteria = ProtobufExpressionEvaluator.evaluate(message, specification,
+                           plan.getCompiledDispatchCases());
+                  } catch (JsonMappingException jme) {
+                     log.error("Request message cannot be evaluated against JsonEvaluationSpecification", jme);
+                  }
                }
                break;
          }
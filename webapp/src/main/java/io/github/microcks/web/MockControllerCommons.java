@@ -27,6 +27,7 @@ import io.github.microcks.util.DispatchStyles;
 import io.github.microcks.util.dispatcher.FallbackSpecification;
 import io.github.microcks.util.dispatcher.JsonMappingException;
 import io.github.microcks.util.el.EvaluableRequest;
+import io.github.microcks.util.el.ParsedBody;
 import io.github.microcks.util.el.TemplateEngine;
 import io.github.microcks.util.el.TemplateEngineFactory;
 import org.slf4j.Logger;
@@ -64,6 +65,15 @@ public class MockControllerCommons {
       return fallback;
    }
 
+   /**
+    * Tell if response content holds expressions that must be rendered for each request.
+    * @param response The response that was found by dispatcher
+    * @return Whether response content is templated
+    */
+   public static boolean isTemplated(Response response) {
+      return response.getContent() != null && response.getContent().contains(TemplateEngine.DEFAULT_EXPRESSION_PREFIX);
+   }
+
    /**
     * Render the response content using the Expression Language compatible {@code TemplateEngine} if required.
     * If rendering template fails, we just produce a log error message and stick to templatized response.
@@ -72,12 +82,24 @@ public class MockControllerCommons {
     * @return The rendered response body payload.
     */
    public static String renderResponseContent(String requestBody, Response response) {
+      return renderResponseContent(new ParsedBody(requestBody), response);
+   }
+
+   /**
+    * Render the response content using the Expression Language compatible {@code TemplateEngine} if required.
+    * If rendering template fails, we just produce a log error message and stick to templatized response.
+    * @param requestBody The lazily parsed body payload of incoming request, shared with dispatcher.
+    * @param response The response that was found by dispatcher
+    * @return The rendered response body payload.
+    */
+   public static String renderResponseContent(ParsedBody requestBody, Response response) {
       if (response.getContent().contains(TemplateEngine.DEFAULT_EXPRESSION_PREFIX)) {
          log.debug("Response contains dynamic EL expression, rendering it...");
          TemplateEngine engine = TemplateEngineFactory.getTemplateEngine();
 
          // Create and fill an evaluable request object.
-         EvaluableRequest evaluableRequest = new EvaluableRequest(requestBody, null);
+         EvaluableRequest evaluableRequest = new EvaluableRequest(null, null);
+         evaluableRequest.setParsedBody(requestBody);
 
          // Register the request variable and evaluate the response.
          engine.getContext().setVariable("request", evaluableRequest);
@@ -101,13 +123,27 @@ public class MockControllerCommons {
     * @return The rendered response body payload.
     */
    public static String renderResponseContent(String requestBody, String requestResourcePath, HttpServletRequest request, Response response) {
+      return renderResponseContent(new ParsedBody(requestBody), requestResourcePath, request, response);
+   }
+
+   /**
+    * Render the response content using the Expression Language compatible {@code TemplateEngine} if required.
+    * If rendering template fails, we just produce a log error message and stick to templatized response.
+    * @param requestBody The lazily parsed body payload of incoming request, shared with dispatcher.
+    * @param requestResourcePath The resource path of mock request (if any, may be null)
+    * @param request The incoming servlet request
+    * @param response The response that was found by dispatcher
+    * @return The rendered response body payload.
+    */
+   public static String renderResponseContent(ParsedBody requestBody, String requestResourcePath, HttpServletRequest request, Response response) {
       if (response.getContent().contains(TemplateEngine.DEFAULT_EXPRESSION_PREFIX)) {
          log.debug("Response contains dynamic EL expression, rendering it...");
          TemplateEngine engine = TemplateEngineFactory.getTemplateEngine();
 
          // Create and fill an evaluable request object.
-         EvaluableRequest evaluableRequest = new EvaluableRequest(requestBody,
+         EvaluableRequest evaluableRequest = new EvaluableRequest(null,
                requestResourcePath != null ? requestResourcePath.split("/") : null);
+         evaluableRequest.setParsedBody(requestBody);
          // Adding query parameters...
          Map<String, String> evaluableParams = new HashMap<>();
          List<String> parameterNames = Collections.list(request.getParameterNames());
@@ -135,29 +171,6 @@ public class MockControllerCommons {
       return response.getContent();
    }
 
-   /**
-    * Block current thread for specified delay (if not null) from @{code startTime}.
-    * @param startTime The starting time of mock request invocation
-    * @param delay The delay to wait for
-    */
-   public static void waitForDelay(Long startTime, Long delay) {
-      if (delay != null && delay > -1) {
-         log.debug("Mock delay is turned on, waiting if necessary...");
-         long duration = System.currentTimeMillis() - startTime;
-         if (duration < delay) {
-            Object semaphore = new Object();
-            synchronized (semaphore) {
-               try {
-                  semaphore.wait(delay - duration);
-               } catch (Exception e) {
-                  log.debug("Delay semaphore was interrupted");
-               }
-            }
-         }
-         log.debug("Delay now expired, releasing response !");
-      }
-   }
-
    /**
     * Publish a mock invocation event on Spring ApplicationContext internal bus.
     * @param applicationContext The context to use for publication
@@ -0,0 +1,121 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.web;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * A shared timer for releasing delayed mock responses without blocking request processing threads. Delayed
+ * Http responses are returned as DeferredResult completed by the timer; other protocols can simply schedule
+ * their completion. Scheduled tasks are run on the single timer thread and thus must stay short.
+ * @author laurent
+ */
+@Component
+public class MockDelayScheduler {
+
+   /** A simple logger for diagnostic messages. */
+   private static Logger log = LoggerFactory.getLogger(MockDelayScheduler.class);
+
+   /** Margin added to delay for async request timeout: response should have been released far before. */
+   private static final long ASYNC_TIMEOUT_MARGIN = 30000L;
+
+   private ScheduledThreadPoolExecutor timer;
+
+
+   @PostConstruct
+   public void initialize() {
+      timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+         Thread thread = new Thread(runnable, "mock-delay-timer");
+         thread.setDaemon(true);
+         return thread;
+      });
+      timer.setRemoveOnCancelPolicy(true);
+   }
+
+   @PreDestroy
+   public void shutdown() {
+      timer.shutdownNow();
+   }
+
+   /**
+    * Compute the remaining time to wait before releasing a response.
+    * @param startTime The time request processing has started
+    * @param delay The delay to apply to response (may be null)
+    * @return The remaining time in milliseconds, 0 if no need to wait.
+    */
+   public static long getRemainingDelay(long startTime, Long delay) {
+      if (delay != null && delay > -1) {
+         return Math.max(0, delay - (System.currentTimeMillis() - startTime));
+      }
+      return 0;
+   }
+
+   /**
+    * Run a task once delay is expired. Task is run immediately by calling thread if delay is already expired.
+    * @param startTime The time request processing has started
+    * @param delay The delay to apply (may be null)
+    * @param task The task to run
+    */
+   public void schedule(long startTime, Long delay, Runnable task) {
+      long remaining = getRemainingDelay(startTime, delay);
+      if (remaining > 0) {
+         log.debug("Mock delay is turned on, scheduling response in {} ms", remaining);
+         timer.schedule(task, remaining, TimeUnit.MILLISECONDS);
+      } else {
+         task.run();
+      }
+   }
+
+   /**
+    * Build the response of an Http mock request once delay is expired. If delay is already expired, the
+    * response is returned directly; otherwise a DeferredResult is returned and completed by the timer.
+    * @param startTime The time request processing has started
+    * @param delay The delay to apply (may be null)
+    * @param response The supplier of response (called once delay is expired)
+    * @param <T> The type of response
+    * @return The response or a DeferredResult of response
+    */
+   public <T> Object respondAfterDelay(long startTime, Long delay, Supplier<T> response) {
+      long remaining = getRemainingDelay(startTime, delay);
+      if (remaining == 0) {
+         return response.get();
+      }
+      log.debug("Mock delay is turned on, releasing response in {} ms", remaining);
+      DeferredResult<T> result = new DeferredResult<>(remaining + ASYNC_TIMEOUT_MARGIN);
+      timer.schedule(() -> {
+         try {
+            result.setResult(response.get());
+            log.debug("Delay now expired, response released !");
+         } catch (Throwable t) {
+            log.error("Unexpected throwable while releasing delayed response", t);
+            result.setErrorResult(t);
+         }
+      }, remaining, TimeUnit.MILLISECONDS);
+      return result;
+   }
+}
@@ -0,0 +1,32 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.web;
+
+/**
+ * Definition of the custom Http headers exchanged with mock clients.
+ * @author laurent
+ */
+public class MockHeaders {
+
+   private MockHeaders() {}
+
+   /** Header holding the value of the {@code after} parameter for getting next page of dynamic resources. */
+   public static final String CONTINUATION_TOKEN_HEADER = "X-Continuation-Token";
+
+}
@@ -18,22 +18,28 @@
  */
 package io.github.microcks.web;
 
-import io.github.microcks.domain.Header;
+import io.github.microcks.cache.OperationPlanCache;
+import io.github.microcks.cache.OperationRouteCache;
+import io.github.microcks.cache.ResponseCache;
+import io.github.microcks.cache.ScriptCache;
+import io.github.microcks.cache.ServiceCache;
 import io.github.microcks.domain.Operation;
 import io.github.microcks.domain.ParameterConstraint;
 import io.github.microcks.domain.ParameterLocation;
 import io.github.microcks.domain.Response;
 import io.github.microcks.domain.Service;
-import io.github.microcks.repository.ResponseRepository;
-import io.github.microcks.repository.ServiceRepository;
 import io.github.microcks.util.DispatchCriteriaHelper;
 import io.github.microcks.util.DispatchStyles;
 import io.github.microcks.util.IdBuilder;
+import io.github.microcks.util.OperationPlan;
+import io.github.microcks.util.OperationRouteTrie;
 import io.github.microcks.util.ParameterConstraintUtil;
+import io.github.microcks.util.PreparedResponse;
 import io.github.microcks.util.dispatcher.FallbackSpecification;
 import io.github.microcks.util.dispatcher.JsonEvaluationSpecification;
 import io.github.microcks.util.dispatcher.JsonExpressionEvaluator;
 import io.github.microcks.util.dispatcher.JsonMappingException;
+import io.github.microcks.util.el.ParsedBody;
 import io.github.microcks.util.soapui.SoapUIScriptEngineBinder;
 
 import org.apache.commons.lang.StringUtils;
@@ -44,7 +50,6 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -53,8 +58,7 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.util.UriUtils;
 
-import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
+import javax.script.Bindings;
 import javax.servlet.http.HttpServletRequest;
 import java.util.*;
 
@@ -70,10 +74,22 @@ public class RestController {
    private static Logger log = LoggerFactory.getLogger(RestController.class);
 
    @Autowired
-   private ServiceRepository serviceRepository;
+   private ServiceCache serviceCache;
 
    @Autowired
-   private ResponseRepository responseRepository;
+   private ResponseCache responseCache;
+
+   @Autowired
+   private OperationRouteCache operationRouteCache;
+
+   @Autowired
+   private OperationPlanCache operationPlanCache;
+
+   @Autowired
+   private ScriptCache scriptCache;
+
+   @Autowired
+   private MockDelayScheduler mockDelayScheduler;
 
    @Autowired
    private ApplicationContext applicationContext;
@@ -84,7 +100,7 @@ public class RestController {
 
    @RequestMapping(value = "/{service}/{version}/**", method = { RequestMethod.HEAD, RequestMethod.OPTIONS,
          RequestMethod.GET, RequestMethod.POST, RequestMethod.PUT, RequestMethod.PATCH, RequestMethod.DELETE })
-   public ResponseEntity<?> execute(
+   public Object execute(
          @PathVariable("service") String serviceName,
          @PathVariable("version") String version,
          @RequestParam(value="delay", required=false) Long delay,
@@ -117,77 +133,45 @@ public class RestController {
       if (resourcePath.contains("+")) {
          resourcePath = resourcePath.replace("+", "%20");
       }
-      Service service = serviceRepository.findByNameAndVersion(serviceName, version);
-      Operation rOperation = null;
-      for (Operation operation : service.getOperations()) {
-         // Select operation based onto Http verb (GET, POST, PUT, etc ...)
-         if (operation.getMethod().equals(request.getMethod().toUpperCase())) {
-            // ... then check is we have a matching resource path.
-            if (operation.getResourcePaths() != null && operation.getResourcePaths().contains(resourcePath)) {
-               rOperation = operation;
-               break;
-            }
-         }
-      }
+      Service service = serviceCache.getService(serviceName, version);
 
-      // We may not have found an Operation because of not exact resource path matching with an operation
-      // using a Fallback dispatcher. Try again, just considering the verb and path pattern of operation.
-      if (rOperation == null) {
-         for (Operation operation : service.getOperations()) {
-            // Select operation based onto Http verb (GET, POST, PUT, etc ...)
-            if (operation.getMethod().equals(request.getMethod().toUpperCase())) {
-               // ... then check is current resource path matches operation path pattern.
-               if (operation.getResourcePaths() != null) {
-                  // Produce a matching regexp removing {part} and :part from pattern.
-                  String operationPattern = getURIPattern(operation.getName());
-                  operationPattern = operationPattern.replaceAll("\\{.+\\}", "(.)+");
-                  operationPattern = operationPattern.replaceAll(":.+", "(.)+");
-                  if (resourcePath.matches(operationPattern)) {
-                     rOperation = operation;
-                     break;
-                  }
-               }
-            }
-         }
-      }
+      // Select operation based onto Http verb (GET, POST, PUT, etc ...) and resource path.
+      OperationRouteTrie.RouteMatch routeMatch = (service != null ? operationRouteCache.resolve(service,
+            request.getMethod().toUpperCase(), resourcePath) : null);
+      Operation rOperation = (routeMatch != null ? routeMatch.getOperation() : null);
 
       if (rOperation != null) {
          log.debug("Found a valid operation {} with rules: {}", rOperation.getName(), rOperation.getDispatcherRules());
-         String violationMsg = validateParameterConstraintsIfAny(rOperation, request);
+         OperationPlan plan = operationPlanCache.getPlan(service, rOperation);
+         String violationMsg = validateParameterConstraintsIfAny(plan, request);
          if (violationMsg != null) {
             return new ResponseEntity<Object>(violationMsg + ". Check parameter constraints.", HttpStatus.BAD_REQUEST);
          }
 
-         // We must find dispatcher and its rules. Default to operation ones but
-         // if we have a Fallback this is the one who is holding the first pass rules.
-         String dispatcher = rOperation.getDispatcher();
-         String dispatcherRules = rOperation.getDispatcherRules();
-         FallbackSpecification fallback = MockControllerCommons.getFallbackIfAny(rOperation);
-         if (fallback != null) {
-            dispatcher = fallback.getDispatcher();
-            dispatcherRules = fallback.getDispatcherRules();
-         }
+         // Dispatcher and its rules come from plan: operation ones or Fallback first pass ones.
+         FallbackSpecification fallback = plan.getFallback();
 
-         //
-         String dispatchCriteria = computeDispatchCriteria(dispatcher, dispatcherRules,
-               getURIPattern(rOperation.getName()), UriUtils.decode(resourcePath, "UTF-8"), request, body);
+         // Body is parsed lazily and at most once for dispatching and rendering.
+         ParsedBody parsedBody = new ParsedBody(body);
+         String dispatchCriteria = computeDispatchCriteria(plan, UriUtils.decode(resourcePath, "UTF-8"),
+               routeMatch.getURIParts(), request, parsedBody);
          log.debug("Dispatch criteria for finding response is {}", dispatchCriteria);
 
          Response response = null;
 
          // Filter depending on requested media type.
-         List<Response> responses = responseRepository.findByOperationIdAndDispatchCriteria(IdBuilder.buildOperationId(service, rOperation), dispatchCriteria);
+         List<Response> responses = responseCache.findByOperationIdAndDispatchCriteria(IdBuilder.buildOperationId(service, rOperation), dispatchCriteria);
          response = getResponseByMediaType(responses, request);
 
          if (response == null) {
             // When using the SCRIPT or JSON_BODY dispatchers, return of evaluation may be the name of response.
-            responses = responseRepository.findByOperationIdAndName(IdBuilder.buildOperationId(service, rOperation), dispatchCriteria);
+            responses = responseCache.findByOperationIdAndName(IdBuilder.buildOperationId(service, rOperation), dispatchCriteria);
             response = getResponseByMediaType(responses, request);
          }
 
          if (response == null && fallback != null) {
             // If we've found nothing and got a fallback, that's the moment!
-            responses = responseRepository.findByOperationIdAndName(IdBuilder.buildOperationId(service, rOperation), fallback.getFallback());
+            responses = responseCache.findByOperationIdAndName(IdBuilder.buildOperationId(service, rOperation), fallback.getFallback());
             response = getResponseByMediaType(responses, request);
          }
 
@@ -195,55 +179,49 @@ public class RestController {
             // In case no response found (because dispatcher is null for example), just get one for the operation.
             // This will allow also OPTIONS operations (like pre-flight requests) with no dispatch criteria to work.
             log.debug("No responses found so far, tempting with just bare operationId...");
-            responses = responseRepository.findByOperationId(IdBuilder.buildOperationId(service, rOperation));
+            responses = responseCache.findByOperationId(IdBuilder.buildOperationId(service, rOperation));
             if (!responses.isEmpty()) {
                response = getResponseByMediaType(responses, request);
             }
          }
 
          if (response != null) {
-            HttpStatus status = (response.getStatus() != null ?
-                HttpStatus.valueOf(Integer.parseInt(response.getStatus())) : HttpStatus.OK);
-
-            // Deal with specific headers (content-type and redirect directive).
-            HttpHeaders responseHeaders = new HttpHeaders();
-            if (response.getMediaType() != null) {
-               responseHeaders.setContentType(MediaType.valueOf(response.getMediaType() + ";charset=UTF-8"));
-            }
+            // Status, content-type and static headers are prepared once per response.
+            PreparedResponse prepared = responseCache.getPreparedResponse(response);
+            HttpStatus status = prepared.getStatus();
+            HttpHeaders responseHeaders = prepared.copyHeaders();
 
             // Deal with headers from parameter constraints if any?
             recopyHeadersFromParameterConstraints(rOperation, request, responseHeaders);
 
-            // Adding other generic headers (caching directives and so on...)
-            if (response.getHeaders() != null) {
-               for (Header header : response.getHeaders()) {
-                  if ("Location".equals(header.getName())) {
-                     // We should process location in order to make relative URI specified an absolute one from
-                     // the client perspective.
-                     String location = request.getScheme() + "://" + request.getServerName() + ":" + request.getServerPort()
-                        + request.getContextPath() + "/rest" + serviceAndVersion + header.getValues().iterator().next();
-                     responseHeaders.add(header.getName(), location);
-                  } else {
-                     if (!HttpHeaders.TRANSFER_ENCODING.equalsIgnoreCase(header.getName())) {
-                        responseHeaders.put(header.getName(), new ArrayList<>(header.getValues()));
-                     }
-                  }
-               }
+            if (prepared.getLocation() != null) {
+               // We should process location in order to make relative URI specified an absolute one from
+               // the client perspective.
+               String location = request.getScheme() + "://" + request.getServerName() + ":" + request.getServerPort()
+                     + request.getContextPath() + "/rest" + serviceAndVersion + prepared.getLocation();
+               responseHeaders.add("Location", location);
             }
 
-            // Render response content before waiting and returning.
-            String responseContent = MockControllerCommons.renderResponseContent(body, resourcePath, request, response);
+            // Render response content before waiting and returning. Static content with a known media type
+            // is written as pre-encoded bytes.
+            Object responseContent = null;
+            if (prepared.getBody() != null && prepared.getContentType() != null) {
+               responseContent = prepared.getBody();
+            } else {
+               responseContent = MockControllerCommons.renderResponseContent(parsedBody, resourcePath, request, response);
+            }
 
             // Setting delay to default one if not set.
             if (delay == null && rOperation.getDefaultDelay() != null) {
                delay = rOperation.getDefaultDelay();
             }
-            MockControllerCommons.waitForDelay(startTime, delay);
 
-            // Publish an invocation event before returning.
-            MockControllerCommons.publishMockInvocation(applicationContext, this, service, response, startTime);
-
-            return new ResponseEntity<Object>(responseContent, responseHeaders, status);
+            // Release response once delay is expired, publishing an invocation event before.
+            final Response invokedResponse = response;
+            return mockDelayScheduler.respondAfterDelay(startTime, delay, () -> {
+               MockControllerCommons.publishMockInvocation(applicationContext, this, service, invokedResponse, startTime);
+               return new ResponseEntity<Object>(responseContent, responseHeaders, status);
+            });
          }
          return new ResponseEntity<Object>(HttpStatus.BAD_REQUEST);
       }
@@ -260,36 +238,37 @@ public class RestController {
 
 
    /** Validate the parameter constraints and return a single string with violation message if any. */
-   private String validateParameterConstraintsIfAny(Operation rOperation, HttpServletRequest request) {
-      if (rOperation.getParameterConstraints() != null) {
-         for (ParameterConstraint constraint : rOperation.getParameterConstraints()) {
-            String violationMsg = ParameterConstraintUtil.validateConstraint(request, constraint);
-            if (violationMsg != null) {
-               return violationMsg;
-            }
+   private String validateParameterConstraintsIfAny(OperationPlan plan, HttpServletRequest request) {
+      for (OperationPlan.CompiledConstraint constraint : plan.getConstraints()) {
+         String violationMsg = ParameterConstraintUtil.validateConstraint(request, constraint.getConstraint(),
+               constraint.getMustMatchPattern());
+         if (violationMsg != null) {
+            return violationMsg;
          }
       }
       return null;
    }
 
-   /** Create a dispatchCriteria string from type, rules and request elements. */
-   private String computeDispatchCriteria(String dispatcher, String dispatcherRules, String uriPattern,
-                                          String resourcePath, HttpServletRequest request, String body) {
+   /** Create a dispatchCriteria string from operation plan and request elements. */
+   private String computeDispatchCriteria(OperationPlan plan, String resourcePath, Map<String, String> uriParts,
+                                          HttpServletRequest request, ParsedBody body) {
       String dispatchCriteria = null;
+      String dispatcher = plan.getDispatcher();
+      String dispatcherRules = plan.getDispatcherRules();
+      String uriPattern = plan.getURIPattern();
 
       // Depending on dispatcher, evaluate request with rules.
       if (dispatcher != null) {
          switch (dispatcher) {
             case DispatchStyles.SEQUENCE:
-               dispatchCriteria = DispatchCriteriaHelper.extractFromURIPattern(uriPattern, resourcePath);
+               dispatchCriteria = extractFromURIParts(uriPattern, resourcePath, uriParts);
                break;
             case DispatchStyles.SCRIPT:
-               ScriptEngineManager sem = new ScriptEngineManager();
                try {
-                  // Evaluating request with script coming from operation dispatcher rules.
-                  ScriptEngine se = sem.getEngineByExtension("groovy");
-                  SoapUIScriptEngineBinder.bindSoapUIEnvironment(se, body, request);
-                  dispatchCriteria = (String) se.eval(dispatcherRules);
+                  // Evaluating request with compiled script coming from operation dispatcher rules.
+                  Bindings bindings = scriptCache.createBindings();
+                  SoapUIScriptEngineBinder.fillSoapUIEnvironment(bindings, body.getText(), request);
+                  dispatchCriteria = (String) scriptCache.eval(dispatcherRules, bindings);
                } catch (Exception e) {
                   log.error("Error during Script evaluation", e);
                }
@@ -299,19 +278,22 @@ public class RestController {
                dispatchCriteria = DispatchCriteriaHelper.extractFromURIParams(dispatcherRules, fullURI);
                break;
             case DispatchStyles.URI_PARTS:
-               dispatchCriteria = DispatchCriteriaHelper.extractFromURIPattern(uriPattern, resourcePath);
+               dispatchCriteria = extractFromURIParts(uriPattern, resourcePath, uriParts);
                break;
             case DispatchStyles.URI_ELEMENTS:
-               dispatchCriteria = DispatchCriteriaHelper.extractFromURIPattern(uriPattern, resourcePath);
+               dispatchCriteria = extractFromURIParts(uriPattern, resourcePath, uriParts);
                fullURI = request.getRequestURL() + "?" + request.getQueryString();
                dispatchCriteria += DispatchCriteriaHelper.extractFromURIParams(dispatcherRules, fullURI);
                break;
             case DispatchStyles.JSON_BODY:
-               try {
-                  JsonEvaluationSpecification specification = JsonEvaluationSpecification.buildFromJsonString(dispatcherRules);
-                  dispatchCriteria = JsonExpressionEvaluator.evaluate(body, specification);
-               } catch (JsonMappingException jme) {
-                  log.error("Dispatching rules of operation cannot be interpreted as JsonEvaluationSpecification", jme);
+               JsonEvaluationSpecification specification = plan.getJsonEvaluationSpecification();
+               if (specification != null) {
+                  try {
+                     dispatchCriteria = JsonExpressionEvaluator.evaluate(body, specification,
+                           plan.getCompiledDispatchCases());
+                  } catch (JsonMappingException jme) {
+                     log.error("Request body cannot be evaluated against JsonEvaluationSpecification", jme);
+                  }
                }
                break;
          }
@@ -320,13 +302,22 @@ public class RestController {
       return dispatchCriteria;
    }
 
+   /** Build dispatch criteria from URI parts resolved by route trie, falling back to pattern extraction. */
+   private String extractFromURIParts(String uriPattern, String resourcePath, Map<String, String> uriParts) {
+      if (uriParts != null) {
+         return DispatchCriteriaHelper.buildFromPartsMap(uriParts);
+      }
+      return DispatchCriteriaHelper.extractFromURIPattern(uriPattern, resourcePath);
+   }
+
    /** Recopy headers defined with parameter constraints. */
    private void recopyHeadersFromParameterConstraints(Operation rOperation, HttpServletRequest request, HttpHeaders responseHeaders) {
       if (rOperation.getParameterConstraints() != null) {
          for (ParameterConstraint constraint : rOperation.getParameterConstraints()) {
             if (ParameterLocation.header == constraint.getIn() && constraint.isRecopy()) {
                String value = request.getHeader(constraint.getName());
-               if (value != null) {
+               // Headers defined on response take precedence.
+               if (value != null && !responseHeaders.containsKey(constraint.getName())) {
                   responseHeaders.set(constraint.getName(), value);
                }
             }
@@ -344,16 +335,6 @@ public class RestController {
       return null;
    }
 
-   /** Retrieve URI Pattern from operation name (remove starting verb name). */
-   private String getURIPattern(String operationName) {
-      if (operationName.startsWith("GET ") || operationName.startsWith("POST ")
-            || operationName.startsWith("PUT ") || operationName.startsWith("DELETE ")
-            || operationName.startsWith("PATCH ") || operationName.startsWith("OPTIONS ")) {
-         return operationName.substring(operationName.indexOf(' ') + 1);
-      }
-      return operationName;
-   }
-
    /** Handle a CORS request putting the correct headers in response entity. */
    private ResponseEntity<Object> handleCorsRequest(HttpServletRequest request) {
       // Retrieve and set access control headers from those coming in request.
@@ -18,17 +18,27 @@
  */
 package io.github.microcks.web;
 
+import io.github.microcks.cache.OperationPlanCache;
+import io.github.microcks.cache.OperationRouteCache;
+import io.github.microcks.cache.ResponseCache;
+import io.github.microcks.cache.ScriptCache;
+import io.github.microcks.cache.ServiceCache;
+import io.github.microcks.cache.WsdlContextCache;
 import io.github.microcks.domain.Operation;
 import io.github.microcks.domain.Response;
 import io.github.microcks.domain.Service;
-import io.github.microcks.repository.ResponseRepository;
-import io.github.microcks.repository.ServiceRepository;
 import io.github.microcks.util.DispatchStyles;
 import io.github.microcks.util.IdBuilder;
+import io.github.microcks.util.OperationPlan;
+import io.github.microcks.util.PreparedResponse;
 import io.github.microcks.util.SoapMessageValidator;
+import io.github.microcks.util.SoapOperationIndex;
+import io.github.microcks.util.SoapOperationReader;
 import io.github.microcks.util.dispatcher.FallbackSpecification;
+import io.github.microcks.util.el.ParsedBody;
 import io.github.microcks.util.soapui.SoapUIScriptEngineBinder;
 import io.github.microcks.util.soapui.SoapUIXPathBuilder;
+import com.eviware.soapui.impl.wsdl.support.wsdl.WsdlContext;
 import org.apache.xmlbeans.XmlError;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,16 +55,11 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.util.UriUtils;
-import org.xml.sax.InputSource;
 
-import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
+import javax.script.Bindings;
 import javax.servlet.http.HttpServletRequest;
 import javax.xml.xpath.XPathExpression;
-import java.io.StringReader;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * A controller for mocking Soap responses.
@@ -67,13 +72,29 @@ public class SoapController {
    /** A simple logger for diagnostic messages. */
    private static Logger log = LoggerFactory.getLogger(SoapController.class);
 
-   private static Pattern operationCapturePattern = Pattern.compile("(.*):Body>(\\s*)<((\\w+):|)(?<operation>\\w+)(.*)(/)?>(.*)", Pattern.DOTALL);
+   private static final MediaType SOAP_11_CONTENT_TYPE = MediaType.valueOf("text/xml;charset=UTF-8");
+   private static final MediaType SOAP_12_CONTENT_TYPE = MediaType.valueOf("application/soap+xml;charset=UTF-8");
 
    @Autowired
-   private ServiceRepository serviceRepository;
+   private ServiceCache serviceCache;
 
    @Autowired
-   private ResponseRepository responseRepository;
+   private ResponseCache responseCache;
+
+   @Autowired
+   private OperationPlanCache operationPlanCache;
+
+   @Autowired
+   private OperationRouteCache operationRouteCache;
+
+   @Autowired
+   private ScriptCache scriptCache;
+
+   @Autowired
+   private WsdlContextCache wsdlContextCache;
+
+   @Autowired
+   private MockDelayScheduler mockDelayScheduler;
 
    @Autowired
    private ApplicationContext applicationContext;
@@ -83,7 +104,7 @@ public class SoapController {
 
 
    @RequestMapping(value = "/{service}/{version}/**", method = RequestMethod.POST)
-   public ResponseEntity<?> execute(
+   public Object execute(
          @PathVariable("service") String serviceName,
          @PathVariable("version") String version,
          @RequestParam(value="validate", required=false) Boolean validate,
@@ -102,7 +123,12 @@ public class SoapController {
       }
       log.info("Service name: " + serviceName);
       // Retrieve service and correct operation.
-      Service service = serviceRepository.findByNameAndVersion(serviceName, version);
+      Service service = serviceCache.getService(serviceName, version);
+      if (service == null) {
+         log.debug("No SOAP Service found for [{}, {}]", serviceName, version);
+         return new ResponseEntity<Object>(HttpStatus.NOT_FOUND);
+      }
+      SoapOperationIndex operationIndex = operationRouteCache.getSoapOperationIndex(service);
       Operation rOperation = null;
 
       // Enhancement : retrieve SOAPAction from request headers
@@ -110,13 +136,7 @@ public class SoapController {
       log.debug("Extracted SOAP action from headers: {}", action);
 
       if (action != null && action.length() > 0) {
-         for (Operation operation : service.getOperations()) {
-            if (action.equals(operation.getAction())) {
-               rOperation = operation;
-               log.info("Found valid operation {}", rOperation.getName());
-               break;
-            }
-         }
+         rOperation = operationIndex.findByAction(action);
       }
 
       // Enhancement : if not found, try getting operation from soap:body directly!
@@ -125,15 +145,12 @@ public class SoapController {
          log.debug("Extracted operation name from payload: {}", operationName);
 
          if (operationName != null) {
-            for (Operation operation : service.getOperations()) {
-               if (operationName.equals(operation.getInputName()) || operationName.equals(operation.getName())) {
-                  rOperation = operation;
-                  log.info("Found valid operation {}", rOperation.getName());
-                  break;
-               }
-            }
+            rOperation = operationIndex.findByName(operationName);
          }
       }
+      if (rOperation != null) {
+         log.info("Found valid operation {}", rOperation.getName());
+      }
 
       // Now processing the request and send a response.
       if (rOperation != null) {
@@ -142,9 +159,10 @@ public class SoapController {
          if (validate != null && validate) {
             log.debug("Soap message validation is turned on, validating...");
             try {
+               WsdlContext wsdlContext = wsdlContextCache.getWsdlContext(service,
+                     resourceUrl + UriUtils.encodePath(service.getName() + "-" + version, "UTF-8") + ".wsdl");
                List<XmlError> errors = SoapMessageValidator.validateSoapMessage(
-                     rOperation.getInputName(), service.getXmlNS(), body,
-                     resourceUrl + UriUtils.encodePath(service.getName() + "-" + version, "UTF-8") + ".wsdl", true);
+                     rOperation.getInputName(), service.getXmlNS(), body, wsdlContext, true);
                log.debug("SoapBody validation errors: " + errors.size());
 
                // Return a 400 http code with errors.
@@ -156,34 +174,33 @@ public class SoapController {
             }
          }
 
-         // We must find dispatcher and its rules. Default to operation ones but
-         // if we have a Fallback this is the one who is holding the first pass rules.
-         String dispatcher = rOperation.getDispatcher();
-         String dispatcherRules = rOperation.getDispatcherRules();
-         FallbackSpecification fallback = MockControllerCommons.getFallbackIfAny(rOperation);
-         if (fallback != null) {
-            dispatcher = fallback.getDispatcher();
-            dispatcherRules = fallback.getDispatcherRules();
-         }
+         // Dispatcher and its rules come from plan: operation ones or Fallback first pass ones.
+         OperationPlan plan = operationPlanCache.getPlan(service, rOperation);
+         String dispatcher = plan.getDispatcher();
+         String dispatcherRules = plan.getDispatcherRules();
+         FallbackSpecification fallback = plan.getFallback();
 
          Response response = null;
          String dispatchCriteria = null;
 
+         // Body is parsed lazily and at most once for dispatching and rendering.
+         ParsedBody parsedBody = new ParsedBody(body);
+
          // Depending on dispatcher, evaluate request with rules.
          if (DispatchStyles.QUERY_MATCH.equals(dispatcher)) {
-            dispatchCriteria = getDispatchCriteriaFromXPathEval(dispatcherRules, body);
+            dispatchCriteria = getDispatchCriteriaFromXPathEval(dispatcherRules, parsedBody);
 
          } else if (DispatchStyles.SCRIPT.equals(dispatcher)) {
             dispatchCriteria = getDispatchCriteriaFromScriptEval(dispatcherRules, body, request);
          }
 
          log.debug("Dispatch criteria for finding response is {}", dispatchCriteria);
-         List<Response> responses = responseRepository.findByOperationIdAndDispatchCriteria(
+         List<Response> responses = responseCache.findByOperationIdAndDispatchCriteria(
                IdBuilder.buildOperationId(service, rOperation), dispatchCriteria);
 
          if (responses.isEmpty() && fallback != null) {
             // If we've found nothing and got a fallback, that's the moment!
-            responses = responseRepository.findByOperationIdAndName(IdBuilder.buildOperationId(service, rOperation), fallback.getFallback());
+            responses = responseCache.findByOperationIdAndName(IdBuilder.buildOperationId(service, rOperation), fallback.getFallback());
          }
 
          if (!responses.isEmpty()) {
@@ -196,28 +213,35 @@ public class SoapController {
          // Check to see if we are processing a SOAP 1.2 request
          if (request.getContentType().startsWith("application/soap+xml")) {
            // we are; set Content-Type to "application/soap+xml"
-           responseHeaders.setContentType(MediaType.valueOf("application/soap+xml;charset=UTF-8"));
+           responseHeaders.setContentType(SOAP_12_CONTENT_TYPE);
          } else {
            // Set Content-Type to "text/xml".
-           responseHeaders.setContentType(MediaType.valueOf("text/xml;charset=UTF-8"));
+           responseHeaders.setContentType(SOAP_11_CONTENT_TYPE);
          }
 
-         // Render response content before waiting and returning.
-         String responseContent = MockControllerCommons.renderResponseContent(body, null, request, response);
+         // Render response content before waiting and returning. Static content is written as pre-encoded bytes.
+         Object responseContent = null;
+         PreparedResponse prepared = responseCache.getPreparedResponse(response);
+         if (prepared.getBody() != null) {
+            responseContent = prepared.getBody();
+         } else {
+            responseContent = MockControllerCommons.renderResponseContent(parsedBody, null, request, response);
+         }
 
          // Setting delay to default one if not set.
          if (delay == null && rOperation.getDefaultDelay() != null) {
             delay = rOperation.getDefaultDelay();
          }
-         MockControllerCommons.waitForDelay(startTime, delay);
-
-         // Publish an invocation event before returning.
-         MockControllerCommons.publishMockInvocation(applicationContext, this, service, response, startTime);
 
-         if (response.isFault()) {
-            return new ResponseEntity<Object>(responseContent, responseHeaders, HttpStatus.INTERNAL_SERVER_ERROR);
-         }
-         return new ResponseEntity<Object>(responseContent, responseHeaders, HttpStatus.OK);
+         // Release response once delay is expired, publishing an invocation event before.
+         final Response invokedResponse = response;
+         return mockDelayScheduler.respondAfterDelay(startTime, delay, () -> {
+            MockControllerCommons.publishMockInvocation(applicationContext, this, service, invokedResponse, startTime);
+            if (invokedResponse.isFault()) {
+               return new ResponseEntity<Object>(responseContent, responseHeaders, HttpStatus.INTERNAL_SERVER_ERROR);
+            }
+            return new ResponseEntity<Object>(responseContent, responseHeaders, HttpStatus.OK);
+         });
       }
 
       log.debug("No valid operation found by Microcks...");
@@ -231,14 +255,7 @@ public class SoapController {
     * @return True if payload is correct for operation, false otherwise.
     */
    protected boolean hasPayloadCorrectStructureForOperation(String payload, String operationName) {
-      String openingPattern = "(.*):Body>(\\s*)<((\\w+):|)" + operationName + "(.*)>(.*)";
-      String closingPattern = "(.*)</((\\w+):|)" + operationName + ">(\\s*)</(.*):Body>(.*)";
-      String shortPattern = "(.*):Body>(\\s*)<((\\w+):|)" + operationName + "(.*)/>(\\s*)</(.*):Body>(.*)";
-
-      Pattern op = Pattern.compile(openingPattern, Pattern.DOTALL);
-      Pattern cp = Pattern.compile(closingPattern, Pattern.DOTALL);
-      Pattern sp = Pattern.compile(shortPattern, Pattern.DOTALL);
-      return (op.matcher(payload).matches() && cp.matcher(payload).matches()) || sp.matcher(payload).matches();
+      return SoapOperationReader.hasPayloadCorrectStructureForOperation(payload, operationName);
    }
 
    /**
@@ -247,11 +264,7 @@ public class SoapController {
     * @return The wrapping Xml element name with body if matches SOAP. Null otherwise.
     */
    protected String extractOperationName(String payload) {
-      Matcher matcher = operationCapturePattern.matcher(payload);
-      if (matcher.find()) {
-         return matcher.group("operation");
-      }
-      return null;
+      return SoapOperationReader.extractOperationName(payload);
    }
 
    /**
@@ -288,11 +301,11 @@ public class SoapController {
    }
 
    /** Build a dispatch criteria after a XPath evaluation coming from rules. */
-   private String getDispatchCriteriaFromXPathEval(String dispatcherRules, String body) {
+   private String getDispatchCriteriaFromXPathEval(String dispatcherRules, ParsedBody body) {
       try {
-         // Evaluating request regarding XPath build with operation dispatcher rules.
-         XPathExpression xpath = SoapUIXPathBuilder.buildXPathMatcherFromRules(dispatcherRules);
-         return xpath.evaluate(new InputSource(new StringReader(body)));
+         // Evaluating request regarding XPath built once per thread from operation dispatcher rules.
+         XPathExpression xpath = SoapUIXPathBuilder.getXPathMatcherFromRules(dispatcherRules);
+         return xpath.evaluate(body.getDocument());
       } catch (Exception e) {
          log.error("Error during Xpath evaluation", e);
       }
@@ -301,12 +314,11 @@ public class SoapController {
 
    /** Build a dipatch criteria after a Groovy script evaluation coming from rules. */
    private String getDispatchCriteriaFromScriptEval(String dispatcherRules, String body, HttpServletRequest request) {
-      ScriptEngineManager sem = new ScriptEngineManager();
       try {
-         // Evaluating request with script coming from operation dispatcher rules.
-         ScriptEngine se = sem.getEngineByExtension("groovy");
-         SoapUIScriptEngineBinder.bindSoapUIEnvironment(se, body, request);
-         return (String) se.eval(dispatcherRules);
+         // Evaluating request with compiled script coming from operation dispatcher rules.
+         Bindings bindings = scriptCache.createBindings();
+         SoapUIScriptEngineBinder.fillSoapUIEnvironment(bindings, body, request);
+         return (String) scriptCache.eval(dispatcherRules, bindings);
       } catch (Exception e) {
          log.error("Error during Script evaluation", e);
       }
@@ -0,0 +1,111 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.web.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Data Transfer object reporting the processing of a bulk request on dynamic resources: counters of processed,
+ * succeeded and failed items as well as the errors of failed items (only the first ones are kept). An error on the
+ * payload itself (when it cannot be read any further) is reported apart as it does not relate to an item.
+ * @author laurent
+ */
+public class BulkReportDTO {
+
+   /** The maximum number of item errors kept into report. */
+   public static final int MAX_REPORTED_ERRORS = 1000;
+
+   private int processed;
+   private int succeeded;
+   private int failed;
+   private List<ItemError> errors = new ArrayList<>();
+   private ItemError payloadError;
+
+   public int getProcessed() {
+      return processed;
+   }
+
+   public int getSucceeded() {
+      return succeeded;
+   }
+
+   public int getFailed() {
+      return failed;
+   }
+
+   public List<ItemError> getErrors() {
+      return errors;
+   }
+
+   /** @return The error having stopped payload reading or null if payload has been read entirely */
+   public ItemError getPayloadError() {
+      return payloadError;
+   }
+
+   /**
+    * Record successfully processed items.
+    * @param count The number of succeeded items
+    */
+   public void addSucceeded(int count) {
+      processed += count;
+      succeeded += count;
+   }
+
+   /**
+    * Record a failed item.
+    * @param index The position of item into bulk payload
+    * @param message The reason of failure
+    */
+   public void addError(int index, String message) {
+      processed++;
+      failed++;
+      if (errors.size() < MAX_REPORTED_ERRORS) {
+         errors.add(new ItemError(index, message));
+      }
+   }
+
+   /**
+    * Record the error having stopped payload reading. Items counters are not changed.
+    * @param index The position into bulk payload where reading has stopped
+    * @param message The reason of failure
+    */
+   public void setPayloadError(int index, String message) {
+      payloadError = new ItemError(index, message);
+   }
+
+   /** The error of a failed item. */
+   public static class ItemError {
+      private final int index;
+      private final String message;
+
+      public ItemError(int index, String message) {
+         this.index = index;
+         this.message = message;
+      }
+
+      public int getIndex() {
+         return index;
+      }
+
+      public String getMessage() {
+         return message;
+      }
+   }
+}
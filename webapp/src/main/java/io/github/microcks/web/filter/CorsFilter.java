@@ -18,6 +18,8 @@
  */
 package io.github.microcks.web.filter;
 
+import io.github.microcks.web.MockHeaders;
+
 import javax.servlet.*;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
@@ -44,6 +46,7 @@ public class CorsFilter implements Filter {
       response.setHeader("Access-Control-Allow-Methods", "POST, PUT, GET, OPTIONS, DELETE");
       response.setHeader("Access-Control-Max-Age", "3600");
       response.setHeader("Access-Control-Allow-Headers", "*");
+      response.setHeader("Access-Control-Expose-Headers", MockHeaders.CONTINUATION_TOKEN_HEADER);
       chain.doFilter(servletRequest, servletResponse);
    }
 }
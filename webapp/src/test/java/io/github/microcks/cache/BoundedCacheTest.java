@@ -0,0 +1,85 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.cache;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * This is a test case for BoundedCache class.
+ * @author laurent
+ */
+public class BoundedCacheTest {
+
+   @Test
+   public void testHitsMissesAndEvictions() {
+      BoundedCache<String, String> cache = new BoundedCache<>(10, String::length);
+      AtomicInteger loads = new AtomicInteger();
+
+      assertEquals("aaaa", cache.get("a", key -> { loads.incrementAndGet(); return "aaaa"; }));
+      assertEquals("aaaa", cache.get("a", key -> { loads.incrementAndGet(); return "other"; }));
+      assertEquals(1, loads.get());
+      assertEquals(1, cache.hitCount());
+      assertEquals(1, cache.missCount());
+
+      cache.get("b", key -> "bbbb");
+      // Touch a so that b becomes the least recently used.
+      cache.get("a", key -> "aaaa");
+      cache.get("c", key -> "cccc");
+      assertEquals(2, cache.size());
+      assertEquals(8, cache.weight());
+      assertEquals(1, cache.evictionCount());
+
+      assertEquals("bbbb-reloaded", cache.get("b", key -> "bbbb-reloaded"));
+      // Value is too heavy to be kept.
+      assertEquals(2, cache.size());
+   }
+
+   @Test
+   public void testInvalidation() {
+      BoundedCache<String, String> cache = new BoundedCache<>(100, String::length);
+      cache.get("s1-op1", key -> "r1");
+      cache.get("s1-op2", key -> "r2");
+      cache.get("s2-op1", key -> "r3");
+
+      cache.invalidateIf(key -> key.startsWith("s1-"));
+      assertEquals(1, cache.size());
+      assertEquals(2, cache.weight());
+
+      // A value loaded concurrently to an invalidation is not kept.
+      cache.get("s2-op2", key -> {
+         cache.invalidateAll();
+         return "r4";
+      });
+      assertEquals(0, cache.size());
+   }
+
+   @Test
+   public void testDisabledCache() {
+      BoundedCache<String, String> cache = new BoundedCache<>(0, String::length);
+      AtomicInteger loads = new AtomicInteger();
+      cache.get("a", key -> { loads.incrementAndGet(); return "a"; });
+      cache.get("a", key -> { loads.incrementAndGet(); return "a"; });
+      assertEquals(2, loads.get());
+      assertEquals(0, cache.size());
+   }
+}
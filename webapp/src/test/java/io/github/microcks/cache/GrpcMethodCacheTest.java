@@ -0,0 +1,146 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.cache;
+
+import io.github.microcks.domain.Operation;
+import io.github.microcks.domain.Service;
+import io.github.microcks.event.ChangeType;
+import io.github.microcks.event.ServiceChangeEvent;
+import io.github.microcks.repository.ResourceRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * This is a test case for GrpcMethodCache class.
+ * @author laurent
+ */
+public class GrpcMethodCacheTest {
+
+   @Test
+   public void testMethodResolution() {
+      Service service = new Service();
+      service.setId("hello-v1");
+      service.setName("HelloService");
+      service.setVersion("v1");
+      Operation operation = new Operation();
+      operation.setName("greeting");
+      service.addOperation(operation);
+
+      AtomicInteger resourceLookups = new AtomicInteger();
+      ServiceCache serviceCache = new ServiceCache() {
+         @Override
+         public Service getService(String name, String version) {
+            return "HelloService".equals(name) && "v1".equals(version) ? service : null;
+         }
+      };
+      ResourceRepository resourceRepository = (ResourceRepository) Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class[] { ResourceRepository.class }, (proxy, m, args) -> {
+               resourceLookups.incrementAndGet();
+               return Collections.emptyList();
+            });
+
+      GrpcMethodCache cache = new GrpcMethodCache();
+      ReflectionTestUtils.setField(cache, "serviceCache", serviceCache);
+      ReflectionTestUtils.setField(cache, "resourceRepository", resourceRepository);
+      ReflectionTestUtils.setField(cache, "meterRegistry", new SimpleMeterRegistry());
+      cache.initialize();
+
+      // Unknown service is remembered until a service change.
+      GrpcMethodCache.GrpcMethod method = cache.getMethod("io.github.microcks.grpc.goodbye.v1.GoodbyeService/bye");
+      assertEquals("GoodbyeService", method.getServiceName());
+      assertEquals("v1", method.getServiceVersion());
+      assertEquals("bye", method.getOperationName());
+      assertNull(method.getService());
+      assertSame(method, cache.getMethod("io.github.microcks.grpc.goodbye.v1.GoodbyeService/bye"));
+
+      cache.onApplicationEvent(new ServiceChangeEvent(this, "goodbye-v1", ChangeType.CREATED));
+      assertNotSame(method, cache.getMethod("io.github.microcks.grpc.goodbye.v1.GoodbyeService/bye"));
+
+      // Missing descriptor is not kept.
+      method = cache.getMethod("io.github.microcks.grpc.hello.v1.HelloService/greeting");
+      assertSame(service, method.getService());
+      assertSame(operation, method.getOperation());
+      assertNull(method.getMethodDescriptor());
+      cache.getMethod("io.github.microcks.grpc.hello.v1.HelloService/greeting");
+      assertEquals(2, resourceLookups.get());
+   }
+
+   @Test
+   public void testServiceChangeInterleavedWithResolution() {
+      Service service = new Service();
+      service.setId("hello-v1");
+      service.setName("HelloService");
+      service.setVersion("v1");
+      Operation operation = new Operation();
+      operation.setName("greeting");
+      service.addOperation(operation);
+
+      AtomicReference<Service> currentService = new AtomicReference<>(service);
+      ServiceCache serviceCache = new ServiceCache() {
+         @Override
+         public Service getService(String name, String version) {
+            return currentService.get();
+         }
+      };
+      ResourceRepository resourceRepository = (ResourceRepository) Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class[] { ResourceRepository.class },
+            (proxy, m, args) -> Collections.emptyList());
+
+      GrpcMethodCache cache = new GrpcMethodCache();
+      ReflectionTestUtils.setField(cache, "serviceCache", serviceCache);
+      ReflectionTestUtils.setField(cache, "resourceRepository", resourceRepository);
+      ReflectionTestUtils.setField(cache, "meterRegistry", new SimpleMeterRegistry());
+      cache.initialize();
+
+      String fullMethodName = "io.github.microcks.grpc.hello.v1.HelloService/greeting";
+      assertSame(service, cache.getMethod(fullMethodName).getService());
+
+      // Service is updated, this cache receives the event before ServiceCache that still holds the previous
+      // Service when method is resolved again.
+      Service updatedService = new Service();
+      updatedService.setId("hello-v1");
+      updatedService.setName("HelloService");
+      updatedService.setVersion("v1");
+      Operation updatedOperation = new Operation();
+      updatedOperation.setName("greeting");
+      updatedService.addOperation(updatedOperation);
+
+      cache.onApplicationEvent(new ServiceChangeEvent(this, "hello-v1", ChangeType.UPDATED));
+      assertSame(service, cache.getMethod(fullMethodName).getService());
+
+      // ServiceCache now receives the event: stale method should not be returned anymore.
+      currentService.set(updatedService);
+      GrpcMethodCache.GrpcMethod method = cache.getMethod(fullMethodName);
+      assertSame(updatedService, method.getService());
+      assertSame(updatedOperation, method.getOperation());
+
+      // Service is then deleted.
+      currentService.set(null);
+      assertNull(cache.getMethod(fullMethodName).getService());
+   }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.cache;
+
+import io.github.microcks.domain.Response;
+import io.github.microcks.event.ChangeType;
+import io.github.microcks.event.ServiceChangeEvent;
+
+import com.google.protobuf.DescriptorProtos;
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * This is a test case for ResponseCache class.
+ * @author laurent
+ */
+public class ResponseCacheTest {
+
+   @Test
+   public void testProtobufResponse() throws Exception {
+      ResponseCache responseCache = new ResponseCache();
+      ReflectionTestUtils.setField(responseCache, "meterRegistry", new SimpleMeterRegistry());
+      responseCache.initialize();
+
+      Response response = new Response();
+      response.setId("response-1");
+      response.setOperationId("hello-v1-greeting");
+      response.setContent("{\"name\": \"hello.proto\", \"package\": \"io.github.microcks.grpc.hello.v1\"}");
+
+      byte[] bytes = responseCache.getProtobufResponse(response, DescriptorProtos.FileDescriptorProto.getDescriptor());
+      DescriptorProtos.FileDescriptorProto message = DescriptorProtos.FileDescriptorProto.parseFrom(bytes);
+      assertEquals("hello.proto", message.getName());
+      assertEquals("io.github.microcks.grpc.hello.v1", message.getPackage());
+
+      // Encoded once until service change.
+      assertSame(bytes, responseCache.getProtobufResponse(response, DescriptorProtos.FileDescriptorProto.getDescriptor()));
+      responseCache.onApplicationEvent(new ServiceChangeEvent(this, "hello-v1", ChangeType.UPDATED));
+      assertNotSame(bytes, responseCache.getProtobufResponse(response, DescriptorProtos.FileDescriptorProto.getDescriptor()));
+
+      response.setId("response-2");
+      response.setContent("{\"unknown\": true}");
+      try {
+         responseCache.getProtobufResponse(response, DescriptorProtos.FileDescriptorProto.getDescriptor());
+         fail("InvalidProtocolBufferException should have been raised");
+      } catch (InvalidProtocolBufferException ipbe) {
+         // Expected.
+      }
+   }
+
+   @Test
+   public void testProtobufStreamResponse() throws Exception {
+      ResponseCache responseCache = new ResponseCache();
+      ReflectionTestUtils.setField(responseCache, "meterRegistry", new SimpleMeterRegistry());
+      responseCache.initialize();
+
+      Response response = new Response();
+      response.setId("response-1");
+      response.setOperationId("hello-v1-greetings");
+      response.setContent("[{\"name\": \"hello.proto\"}, {\"name\": \"goodbye.proto\"}]");
+
+      List<byte[]> messages = responseCache.getProtobufStreamResponse(response, DescriptorProtos.FileDescriptorProto.getDescriptor());
+      assertEquals(2, messages.size());
+      assertEquals("hello.proto", DescriptorProtos.FileDescriptorProto.parseFrom(messages.get(0)).getName());
+      assertEquals("goodbye.proto", DescriptorProtos.FileDescriptorProto.parseFrom(messages.get(1)).getName());
+      assertSame(messages, responseCache.getProtobufStreamResponse(response, DescriptorProtos.FileDescriptorProto.getDescriptor()));
+
+      // Unary and streaming encodings of a response are distinct.
+      response.setContent("{\"name\": \"hello.proto\"}");
+      response.setId("response-2");
+      assertEquals(1, responseCache.getProtobufStreamResponse(response, DescriptorProtos.FileDescriptorProto.getDescriptor()).size());
+      assertArrayEquals(responseCache.getProtobufResponse(response, DescriptorProtos.FileDescriptorProto.getDescriptor()),
+            responseCache.getProtobufStreamResponse(response, DescriptorProtos.FileDescriptorProto.getDescriptor()).get(0));
+   }
+}
@@ -0,0 +1,62 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.script.Bindings;
+import javax.script.ScriptException;
+
+import static org.junit.Assert.*;
+
+/**
+ * This is a test case for ScriptCache class.
+ * @author laurent
+ */
+public class ScriptCacheTest {
+
+   @Test
+   public void testCompileOnceEvaluateMany() throws Exception {
+      SimpleMeterRegistry registry = new SimpleMeterRegistry();
+      ScriptCache scriptCache = new ScriptCache();
+      ReflectionTestUtils.setField(scriptCache, "meterRegistry", registry);
+      scriptCache.initialize();
+
+      String script = "return name == 'laurent' ? 'Hello' : 'Bye'";
+      Bindings bindings = scriptCache.createBindings();
+      bindings.put("name", "laurent");
+      assertEquals("Hello", scriptCache.eval(script, bindings));
+
+      bindings = scriptCache.createBindings();
+      bindings.put("name", "yacine");
+      assertEquals("Bye", scriptCache.eval(script, bindings));
+
+      assertEquals(1.0, registry.get("mocks.script.compilations").counter().count(), 0.0);
+
+      try {
+         scriptCache.eval("return {", scriptCache.createBindings());
+         fail("A ScriptException should have been raised");
+      } catch (ScriptException se) {
+         // Expected.
+      }
+      assertEquals(2.0, registry.get("mocks.script.compilations").counter().count(), 0.0);
+   }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.cache;
+
+import io.github.microcks.domain.Service;
+import io.github.microcks.event.ChangeType;
+import io.github.microcks.event.ServiceChangeEvent;
+
+import com.eviware.soapui.impl.wsdl.support.wsdl.WsdlContext;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.Assert.*;
+
+/**
+ * This is a test case for WsdlContextCache class.
+ * @author laurent
+ */
+public class WsdlContextCacheTest {
+
+   private SimpleMeterRegistry registry;
+
+   private WsdlContextCache wsdlContextCache;
+
+   private Service service;
+
+   @Before
+   public void setUp() {
+      registry = new SimpleMeterRegistry();
+      wsdlContextCache = new WsdlContextCache();
+      ReflectionTestUtils.setField(wsdlContextCache, "meterRegistry", registry);
+      wsdlContextCache.initialize();
+
+      service = new Service();
+      service.setId("hello-v1");
+      service.setName("HelloService");
+      service.setVersion("1.0");
+   }
+
+   @Test
+   public void testContextIsReused() throws Exception {
+      String wsdlUrl = getClass().getResource("HelloService.wsdl").toString();
+
+      WsdlContext context = wsdlContextCache.getWsdlContext(service, wsdlUrl);
+      assertNotNull(context);
+      assertNotNull(context.getSchemaTypeLoader());
+      assertEquals(1.0, loads(), 0.0);
+
+      assertSame(context, wsdlContextCache.getWsdlContext(service, wsdlUrl));
+      assertEquals(1.0, loads(), 0.0);
+   }
+
+   @Test
+   public void testFailureIsNotCached() throws Exception {
+      String wsdlUrl = getClass().getResource("HelloService.wsdl").toString().replace("HelloService.wsdl", "Unknown.wsdl");
+
+      try {
+         wsdlContextCache.getWsdlContext(service, wsdlUrl);
+         fail("An Exception should have been raised");
+      } catch (Exception e) {
+         // Expected.
+      }
+      assertEquals(1.0, loads(), 0.0);
+
+      try {
+         wsdlContextCache.getWsdlContext(service, wsdlUrl);
+         fail("An Exception should have been raised");
+      } catch (Exception e) {
+         // Expected.
+      }
+      assertEquals(2.0, loads(), 0.0);
+
+      // Once WSDL is available, context should be loaded and cached.
+      wsdlUrl = getClass().getResource("HelloService.wsdl").toString();
+      WsdlContext context = wsdlContextCache.getWsdlContext(service, wsdlUrl);
+      assertNotNull(context);
+      assertEquals(3.0, loads(), 0.0);
+      assertSame(context, wsdlContextCache.getWsdlContext(service, wsdlUrl));
+      assertEquals(3.0, loads(), 0.0);
+   }
+
+   @Test
+   public void testServiceChangeEvictsContext() throws Exception {
+      String wsdlUrl = getClass().getResource("HelloService.wsdl").toString();
+
+      WsdlContext context = wsdlContextCache.getWsdlContext(service, wsdlUrl);
+      assertEquals(1.0, loads(), 0.0);
+
+      // Changes on another Service should not evict context.
+      wsdlContextCache.onApplicationEvent(new ServiceChangeEvent(this, "goodbye-v1", ChangeType.UPDATED));
+      assertSame(context, wsdlContextCache.getWsdlContext(service, wsdlUrl));
+      assertEquals(1.0, loads(), 0.0);
+
+      wsdlContextCache.onApplicationEvent(new ServiceChangeEvent(this, "hello-v1", ChangeType.UPDATED));
+      WsdlContext reloaded = wsdlContextCache.getWsdlContext(service, wsdlUrl);
+      assertNotSame(context, reloaded);
+      assertEquals(2.0, loads(), 0.0);
+   }
+
+   private double loads() {
+      return registry.get("mocks.wsdl.loads").counter().count();
+   }
+}
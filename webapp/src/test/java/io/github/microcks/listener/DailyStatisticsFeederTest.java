@@ -11,6 +11,7 @@ import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.text.SimpleDateFormat;
 /*
@@ -32,6 +33,7 @@ import java.text.SimpleDateFormat;
  * under the License.
  */
 import java.util.Calendar;
+import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -59,6 +61,7 @@ public class DailyStatisticsFeederTest {
 
       // Fire event a first time.
       feeder.onApplicationEvent(event);
+      feeder.flush();
 
       SimpleDateFormat formater = new SimpleDateFormat("yyyyMMdd");
       String day = formater.format(today.getTime());
@@ -73,6 +76,7 @@ public class DailyStatisticsFeederTest {
 
       // Fire event a second time.
       feeder.onApplicationEvent(event);
+      feeder.flush();
 
       stat = statisticsRepository.findByDayAndServiceNameAndServiceVersion(day, "TestService1", "1.0");
       assertNotNull(stat);
@@ -83,4 +87,34 @@ public class DailyStatisticsFeederTest {
       assertEquals(2, stat.getDailyCount());
       assertEquals(new Integer(2), stat.getHourlyCount().get( String.valueOf(today.get(Calendar.HOUR_OF_DAY)) ));
    }
+
+   @Test
+   public void testCountersPruning() {
+      Calendar today = Calendar.getInstance();
+      Calendar yesterday = Calendar.getInstance();
+      yesterday.add(Calendar.DAY_OF_MONTH, -1);
+      feeder.onApplicationEvent(new MockInvocationEvent(this, "TestService1", "1.0", "123456789", today.getTime(), 100));
+      feeder.onApplicationEvent(new MockInvocationEvent(this, "TestService1", "1.0", "123456789", yesterday.getTime(), 100));
+      feeder.flush();
+
+      // Idle counters of past days are pruned whereas the ones of current day are kept.
+      Map<?, ?> counters = (Map<?, ?>) ReflectionTestUtils.getField(feeder, "counters");
+      assertEquals(2, counters.size());
+      feeder.flush();
+      assertEquals(1, counters.size());
+
+      // Late invocation of a past day is still counted.
+      feeder.onApplicationEvent(new MockInvocationEvent(this, "TestService1", "1.0", "123456789", yesterday.getTime(), 100));
+      feeder.flush();
+
+      SimpleDateFormat formater = new SimpleDateFormat("yyyyMMdd");
+      DailyStatistic stat = statisticsRepository.findByDayAndServiceNameAndServiceVersion(
+            formater.format(yesterday.getTime()), "TestService1", "1.0");
+      assertNotNull(stat);
+      assertEquals(2, stat.getDailyCount());
+      stat = statisticsRepository.findByDayAndServiceNameAndServiceVersion(
+            formater.format(today.getTime()), "TestService1", "1.0");
+      assertNotNull(stat);
+      assertEquals(1, stat.getDailyCount());
+   }
 }
@@ -0,0 +1,117 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.repository;
+
+import com.mongodb.client.MongoClients;
+import org.bson.Document;
+import org.junit.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * This is a test case for GenericResourceIndexManager class.
+ * @author laurent
+ */
+public class GenericResourceIndexManagerTest {
+
+   @Test
+   public void testQueryFields() {
+      // Fields within logical operators cannot be served by payload indexes.
+      assertEquals(Collections.singletonList("foo"), GenericResourceIndexManager.getQueryFields(
+            Document.parse("{\"foo\": {$gt: 1}, $or: [{\"bar\": 1}, {\"foo\": 2}]}")));
+      assertEquals(Arrays.asList("bar", "foo"), GenericResourceIndexManager.getQueryFields(
+            Document.parse("{\"foo\": 1, \"bar\": 2}")));
+   }
+
+   @Test
+   public void testIndexNames() {
+      String name = GenericResourceIndexManager.buildIndexName(Arrays.asList("a", "b"));
+      assertTrue(name.startsWith("auto_a_b_"));
+      assertEquals(name, GenericResourceIndexManager.buildIndexName(Arrays.asList("a", "b")));
+      assertNotEquals(name, GenericResourceIndexManager.buildIndexName(Collections.singletonList("a_b")));
+   }
+
+   @Test
+   public void testAutomaticIndexes() {
+      List<String> created = new ArrayList<>();
+      List<String> dropped = new ArrayList<>();
+      IndexOperations indexOperations = (IndexOperations) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class[] { IndexOperations.class }, (proxy, method, args) -> {
+               switch (method.getName()) {
+                  case "ensureIndex":
+                     Document keys = ((IndexDefinition) args[0]).getIndexKeys();
+                     created.add(((IndexDefinition) args[0]).getIndexOptions().getString("name") + keys.keySet());
+                     return null;
+                  case "dropIndex":
+                     dropped.add((String) args[0]);
+                     return null;
+                  default:
+                     return Collections.emptyList();
+               }
+            });
+      MongoTemplate template = new MongoTemplate(MongoClients.create("mongodb://localhost:1"), "test") {
+         @Override
+         public IndexOperations indexOps(Class<?> entityClass) {
+            return indexOperations;
+         }
+      };
+
+      GenericResourceIndexManager manager = new GenericResourceIndexManager();
+      ReflectionTestUtils.setField(manager, "template", template);
+      ReflectionTestUtils.setField(manager, "threshold", 3L);
+
+      manager.recordQuery("dynamic-1", Document.parse("{\"foo\": 1234}"));
+      manager.recordQuery("dynamic-2", Document.parse("{\"foo\": 1235}"));
+      manager.recordQuery("dynamic-1", Document.parse("{\"foo\": 1234, \"bar\": 1}"));
+      manager.reviewIndexes();
+      assertTrue(created.isEmpty());
+
+      // Hits of different services are summed up for a same set of fields.
+      manager.recordQuery("dynamic-2", Document.parse("{\"foo\": 1236}"));
+      manager.reviewIndexes();
+      String indexName = GenericResourceIndexManager.buildIndexName(Collections.singletonList("foo"));
+      assertEquals(Collections.singletonList(indexName + "[serviceId, payload.foo]"), created);
+
+      List<GenericResourceIndexManager.QueryShape> shapes = manager.getQueryShapes();
+      assertEquals(3, shapes.size());
+      assertEquals("dynamic-2", shapes.get(0).getServiceId());
+      assertEquals(2, shapes.get(0).getHits());
+      assertEquals(GenericResourceIndexManager.IndexState.CREATED, shapes.get(0).getIndexState());
+      assertEquals(indexName, shapes.get(0).getIndexName());
+      assertEquals(GenericResourceIndexManager.IndexState.NONE, shapes.stream()
+            .filter(shape -> shape.getFields().size() == 2).findFirst().get().getIndexState());
+
+      // Unused indexes are dropped.
+      ReflectionTestUtils.setField(manager, "idleDropDelay", -1L);
+      manager.reviewIndexes();
+      assertEquals(Collections.singletonList(indexName), dropped);
+      assertEquals(GenericResourceIndexManager.IndexState.NONE, shapes.get(0).getIndexState());
+      assertEquals(1, created.size());
+   }
+}
@@ -0,0 +1,72 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.repository;
+
+import org.bson.Document;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * This is a test case for GenericResourceQuery class.
+ * @author laurent
+ */
+public class GenericResourceQueryTest {
+
+   @Test
+   public void testMatches() {
+      Document payload = Document.parse("{\"foo\": 1234, \"bar\": \"other value\", \"tags\": [\"a\", \"b\"],"
+            + " \"address\": {\"city\": \"Lyon\"}, \"items\": [{\"qty\": 2}, {\"qty\": 5}]}");
+
+      assertTrue(GenericResourceQuery.compile("{\"foo\": 1234}").matches(payload));
+      assertTrue(GenericResourceQuery.compile("{\"foo\": 1234.0}").matches(payload));
+      assertFalse(GenericResourceQuery.compile("{\"foo\": 1235}").matches(payload));
+      assertTrue(GenericResourceQuery.compile("{\"foo\": 1234, \"bar\": \"other value\"}").matches(payload));
+      assertTrue(GenericResourceQuery.compile("{\"foo\": {$gt: 1233, $lt: 1236}}").matches(payload));
+      assertFalse(GenericResourceQuery.compile("{\"foo\": {$gt: \"1233\"}}").matches(payload));
+      assertTrue(GenericResourceQuery.compile("{\"tags\": \"b\"}").matches(payload));
+      assertTrue(GenericResourceQuery.compile("{\"tags\": [\"a\", \"b\"]}").matches(payload));
+      assertTrue(GenericResourceQuery.compile("{\"tags\": {$all: [\"b\", \"a\"], $size: 2}}").matches(payload));
+      assertTrue(GenericResourceQuery.compile("{\"address.city\": {$in: [\"Lyon\", \"Paris\"]}}").matches(payload));
+      assertTrue(GenericResourceQuery.compile("{\"items.qty\": 5}").matches(payload));
+      assertTrue(GenericResourceQuery.compile("{\"items.1.qty\": 5}").matches(payload));
+      assertTrue(GenericResourceQuery.compile("{\"items\": {$elemMatch: {\"qty\": {$gte: 5}}}}").matches(payload));
+      assertTrue(GenericResourceQuery.compile("{\"bar\": {$regex: \"^OTHER\", $options: \"i\"}}").matches(payload));
+      assertTrue(GenericResourceQuery.compile("{\"missing\": null, \"foo\": {$exists: true}}").matches(payload));
+      assertTrue(GenericResourceQuery.compile("{\"foo\": {$ne: 1}, \"bar\": {$nin: [\"value\"]}}").matches(payload));
+      assertTrue(GenericResourceQuery.compile("{$or: [{\"foo\": 1}, {\"bar\": {$not: {$regex: \"^x\"}}}]}").matches(payload));
+      assertFalse(GenericResourceQuery.compile("{$nor: [{\"foo\": 1234}]}").matches(payload));
+
+      try {
+         GenericResourceQuery.compile("{\"foo\": {$where: \"true\"}}");
+         fail("IllegalArgumentException should have been raised");
+      } catch (IllegalArgumentException iae) {
+         // Expected.
+      }
+   }
+
+   @Test
+   public void testEqualityCriteria() {
+      GenericResourceQuery query = GenericResourceQuery.compile("{\"foo\": 1234, \"bar\": {$eq: \"value\"}, "
+            + "\"baz\": {$gt: 1}, \"tags\": [\"a\"]}");
+      assertEquals(2, query.getEqualityCriteria().size());
+      assertEquals(1234, query.getEqualityCriteria().get("foo"));
+      assertEquals("value", query.getEqualityCriteria().get("bar"));
+   }
+}
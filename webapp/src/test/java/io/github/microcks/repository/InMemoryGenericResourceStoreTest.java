@@ -0,0 +1,152 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.repository;
+
+import io.github.microcks.domain.GenericResource;
+
+import org.bson.Document;
+import org.junit.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * This is a test case for InMemoryGenericResourceStore class.
+ * @author laurent
+ */
+public class InMemoryGenericResourceStoreTest {
+
+   @Test
+   public void testStoreWithIndexes() {
+      InMemoryGenericResourceStore store = new InMemoryGenericResourceStore();
+      ReflectionTestUtils.setField(store, "writeBehind", false);
+      ReflectionTestUtils.setField(store, "indexedFields", new String[] {"foo"});
+      store.initialize();
+
+      GenericResource resource = store.save(buildResource("dynamic-1", "{\"foo\": 1234, \"bar\": \"string value\"}"));
+      GenericResource resource1 = store.save(buildResource("dynamic-1", "{\"foo\": 1234, \"bar\": \"other value\"}"));
+      GenericResource resource2 = store.save(buildResource("dynamic-1", "{\"foo\": 1235, \"bar\": \"other value\"}"));
+      store.save(buildResource("dynamic-2", "{\"foo\": 1234, \"bar\": \"other value\"}"));
+      assertNotNull(resource.getId());
+      assertEquals(3, store.countByServiceId("dynamic-1"));
+
+      // Stored resources are not modified through returned ones.
+      GenericResource found = store.findById("dynamic-1", resource.getId());
+      found.getPayload().append("id", found.getId());
+      assertFalse(store.findById("dynamic-1", resource.getId()).getPayload().containsKey("id"));
+      assertNull(store.findById("dynamic-2", resource.getId()));
+
+      // Indexed and non indexed queries.
+      List<GenericResource> results = store.findByServiceIdAndJSONQuery("dynamic-1", "{\"foo\": 1234}");
+      assertEquals(2, results.size());
+      assertEquals(resource.getId(), results.get(0).getId());
+      assertEquals(resource1.getId(), results.get(1).getId());
+      results = store.findByServiceIdAndJSONQuery("dynamic-1", "{\"foo\": 1234, \"bar\": \"other value\"}");
+      assertEquals(1, results.size());
+      assertEquals(resource1.getId(), results.get(0).getId());
+      results = store.findByServiceIdAndJSONQuery("dynamic-1", "{\"foo\": {$gt: 1234, $lt: 1236}}");
+      assertEquals(1, results.size());
+      assertEquals(resource2.getId(), results.get(0).getId());
+
+      // Updates and deletions maintain indexes.
+      resource1.setPayload(Document.parse("{\"foo\": 1235, \"bar\": \"other value\"}"));
+      store.save(resource1);
+      assertEquals(1, store.findByServiceIdAndJSONQuery("dynamic-1", "{\"foo\": 1234}").size());
+      assertEquals(2, store.findByServiceIdAndJSONQuery("dynamic-1", "{\"foo\": 1235}").size());
+      store.deleteById("dynamic-1", resource2.getId());
+      assertEquals(1, store.findByServiceIdAndJSONQuery("dynamic-1", "{\"foo\": 1235}").size());
+
+      // Pages follow identifiers order.
+      results = store.findByServiceId("dynamic-1", PageRequest.of(1, 1));
+      assertEquals(1, results.size());
+      assertEquals(resource1.getId(), results.get(0).getId());
+   }
+
+   private GenericResource buildResource(String serviceId, String json) {
+      GenericResource resource = new GenericResource();
+      resource.setServiceId(serviceId);
+      resource.setPayload(Document.parse(json));
+      return resource;
+   }
+
+   @Test
+   public void testKeysetPages() {
+      InMemoryGenericResourceStore store = new InMemoryGenericResourceStore();
+      ReflectionTestUtils.setField(store, "writeBehind", false);
+      store.initialize();
+
+      List<String> ids = new ArrayList<>();
+      for (int i = 0; i < 5; i++) {
+         ids.add(store.save(buildResource("dynamic-1", "{\"index\": " + i + "}")).getId());
+      }
+
+      String token = store.getContinuationToken("dynamic-1", null, 2);
+      assertEquals(ids.get(1), token);
+      assertEquals(ids.subList(0, 2), store.streamByServiceId("dynamic-1", null, 2)
+            .map(GenericResource::getId).collect(Collectors.toList()));
+      token = store.getContinuationToken("dynamic-1", token, 2);
+      assertEquals(ids.get(3), token);
+      assertEquals(ids.subList(4, 5), store.streamByServiceId("dynamic-1", token, 2)
+            .map(GenericResource::getId).collect(Collectors.toList()));
+      assertNull(store.getContinuationToken("dynamic-1", token, 2));
+      assertNull(store.getContinuationToken("dynamic-1", ids.get(2), 2));
+   }
+
+   @Test
+   public void testBulkWrites() {
+      InMemoryGenericResourceStore store = new InMemoryGenericResourceStore();
+      ReflectionTestUtils.setField(store, "writeBehind", false);
+      store.initialize();
+
+      List<GenericResource> resources = Arrays.asList(buildResource("dynamic-1", "{\"name\": \"Chimay\"}"),
+            buildResource("dynamic-1", "{\"name\": \"Orval\"}"));
+      assertTrue(store.insertAll(resources, true).isEmpty());
+      assertEquals(2, store.countByServiceId("dynamic-1"));
+      String chimayId = resources.get(0).getId();
+      String orvalId = resources.get(1).getId();
+
+      GenericResource unknown = buildResource("dynamic-1", "{\"name\": \"Rochefort\"}");
+      unknown.setId("5f5a3c3c0000000000000000");
+      GenericResource chimay = buildResource("dynamic-1", "{\"name\": \"Chimay Bleue\"}");
+      chimay.setId(chimayId);
+
+      // Ordered update stops at unknown resource.
+      Map<Integer, String> errors = store.updateAll("dynamic-1", Arrays.asList(unknown, chimay), true);
+      assertEquals(1, errors.size());
+      assertTrue(errors.containsKey(0));
+      assertEquals("Chimay", store.findById("dynamic-1", chimayId).getPayload().getString("name"));
+
+      // Unordered update skips unknown resource.
+      errors = store.updateAll("dynamic-1", Arrays.asList(unknown, chimay), false);
+      assertEquals(1, errors.size());
+      assertEquals("Chimay Bleue", store.findById("dynamic-1", chimayId).getPayload().getString("name"));
+
+      errors = store.deleteAll("dynamic-1", Arrays.asList(chimayId, unknown.getId(), orvalId), false);
+      assertEquals(1, errors.size());
+      assertTrue(errors.containsKey(1));
+      assertEquals(0, store.countByServiceId("dynamic-1"));
+   }
+}
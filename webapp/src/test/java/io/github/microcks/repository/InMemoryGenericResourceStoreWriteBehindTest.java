@@ -0,0 +1,150 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.repository;
+
+import io.github.microcks.domain.GenericResource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test case for InMemoryGenericResourceStore class with write-behind to Mongo enabled.
+ * @author laurent
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@ContextConfiguration(classes = RepositoryTestsConfiguration.class)
+@TestPropertySource(locations = {"classpath:/config/test.properties"})
+public class InMemoryGenericResourceStoreWriteBehindTest {
+
+   @Autowired
+   GenericResourceRepository repository;
+
+   @Autowired
+   MongoTemplate mongoTemplate;
+
+   @Test
+   public void testWriteBehindAndLoad() {
+      InMemoryGenericResourceStore store = buildStore(mongoTemplate);
+
+      GenericResource resource = store.save(buildResource("dynamic-1", "{\"foo\": 1234}"));
+      GenericResource resource1 = store.save(buildResource("dynamic-1", "{\"foo\": 1235}"));
+      GenericResource resource2 = store.save(buildResource("dynamic-1", "{\"foo\": 1236}"));
+      resource1.setPayload(Document.parse("{\"foo\": 1245}"));
+      store.save(resource1);
+      store.deleteById("dynamic-1", resource2.getId());
+
+      // Nothing is written to Mongo before flush.
+      assertTrue(repository.findByServiceId("dynamic-1", Pageable.unpaged()).isEmpty());
+
+      store.flush();
+      List<GenericResource> stored = repository.findByServiceId("dynamic-1", Pageable.unpaged());
+      assertEquals(2, stored.size());
+      assertEquals(1234, repository.findById(resource.getId()).get().getPayload().getInteger("foo").intValue());
+      assertEquals(1245, repository.findById(resource1.getId()).get().getPayload().getInteger("foo").intValue());
+      assertFalse(repository.findById(resource2.getId()).isPresent());
+      store.shutdown();
+
+      // A fresh store loads resources from Mongo on first access.
+      InMemoryGenericResourceStore freshStore = buildStore(mongoTemplate);
+      assertEquals(2, freshStore.countByServiceId("dynamic-1"));
+      assertEquals(1245, freshStore.findById("dynamic-1", resource1.getId()).getPayload().getInteger("foo").intValue());
+      assertNull(freshStore.findById("dynamic-1", resource2.getId()));
+      List<GenericResource> results = freshStore.findByServiceIdAndJSONQuery("dynamic-1", "{\"foo\": 1234}");
+      assertEquals(1, results.size());
+      assertEquals(resource.getId(), results.get(0).getId());
+
+      // Deletion from fresh store is written behind too.
+      freshStore.deleteById("dynamic-1", resource.getId());
+      freshStore.flush();
+      assertFalse(repository.findById(resource.getId()).isPresent());
+      assertEquals(1, repository.findByServiceId("dynamic-1", Pageable.unpaged()).size());
+      freshStore.shutdown();
+   }
+
+   @Test
+   public void testFailedBatchIsRetried() {
+      AtomicBoolean failing = new AtomicBoolean(true);
+      InMemoryGenericResourceStore[] holder = new InMemoryGenericResourceStore[1];
+      GenericResource[] newer = new GenericResource[1];
+      MongoTemplate failingTemplate = new MongoTemplate(mongoTemplate.getMongoDatabaseFactory(), mongoTemplate.getConverter()) {
+         @Override
+         public BulkOperations bulkOps(BulkOperations.BulkMode mode, Class<?> entityClass) {
+            if (failing.getAndSet(false)) {
+               // A newer change of a resource arrives while its batch is being written.
+               holder[0].save(newer[0]);
+               throw new IllegalStateException("Mongo is not available");
+            }
+            return super.bulkOps(mode, entityClass);
+         }
+      };
+      InMemoryGenericResourceStore store = buildStore(failingTemplate);
+      holder[0] = store;
+
+      GenericResource resource = store.save(buildResource("dynamic-1", "{\"foo\": 1234}"));
+      GenericResource resource1 = store.save(buildResource("dynamic-1", "{\"foo\": 1235}"));
+      newer[0] = buildResource("dynamic-1", "{\"foo\": 1345}");
+      newer[0].setId(resource1.getId());
+
+      // Failed batch is queued again, without overwriting newer change.
+      store.flush();
+      assertTrue(repository.findByServiceId("dynamic-1", Pageable.unpaged()).isEmpty());
+
+      store.flush();
+      assertEquals(2, repository.findByServiceId("dynamic-1", Pageable.unpaged()).size());
+      assertEquals(1234, repository.findById(resource.getId()).get().getPayload().getInteger("foo").intValue());
+      assertEquals(1345, repository.findById(resource1.getId()).get().getPayload().getInteger("foo").intValue());
+      store.shutdown();
+   }
+
+   private InMemoryGenericResourceStore buildStore(MongoTemplate template) {
+      InMemoryGenericResourceStore store = new InMemoryGenericResourceStore();
+      ReflectionTestUtils.setField(store, "genericResourceRepository", repository);
+      ReflectionTestUtils.setField(store, "template", template);
+      ReflectionTestUtils.setField(store, "meterRegistry", new SimpleMeterRegistry());
+      ReflectionTestUtils.setField(store, "indexedFields", new String[] {"foo"});
+      // Flushes are triggered by test.
+      ReflectionTestUtils.setField(store, "flushInterval", 60000L);
+      store.initialize();
+      return store;
+   }
+
+   private static GenericResource buildResource(String serviceId, String json) {
+      GenericResource resource = new GenericResource();
+      resource.setServiceId(serviceId);
+      resource.setPayload(Document.parse(json));
+      return resource;
+   }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.util;
+
+import org.bson.json.JsonParseException;
+import org.junit.Test;
+
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+/**
+ * This is a test case for BulkDocumentReader class.
+ * @author laurent
+ */
+public class BulkDocumentReaderTest {
+
+   @Test
+   public void testReadJSONArray() throws Exception {
+      BulkDocumentReader reader = new BulkDocumentReader(new StringReader(
+            "  [{\"name\": \"Chimay\", \"price\": 2.5}, \"5f5a3c3c0000000000000000\", 12, {\"name\": \"Orval\"}]"));
+
+      BulkDocumentReader.Item item = reader.next();
+      assertEquals(0, item.getIndex());
+      assertEquals("Chimay", item.getDocument().getString("name"));
+      assertEquals(2.5, item.getDocument().getDouble("price"), 0.0);
+      item = reader.next();
+      assertEquals("5f5a3c3c0000000000000000", item.getString());
+      assertNull(item.getDocument());
+      item = reader.next();
+      assertEquals(2, item.getIndex());
+      assertNotNull(item.getError());
+      item = reader.next();
+      assertEquals("Orval", item.getDocument().getString("name"));
+      assertNull(reader.next());
+      assertNull(reader.next());
+   }
+
+   @Test
+   public void testReadNDJSON() throws Exception {
+      BulkDocumentReader reader = new BulkDocumentReader(new StringReader(
+            "{\"name\": \"Chimay\"}\n\n{\"name\": \n{\"name\": \"Orval\"}\n"));
+
+      assertEquals("Chimay", reader.next().getDocument().getString("name"));
+      BulkDocumentReader.Item item = reader.next();
+      assertEquals(1, item.getIndex());
+      assertNotNull(item.getError());
+      item = reader.next();
+      assertEquals(2, item.getIndex());
+      assertEquals("Orval", item.getDocument().getString("name"));
+      assertNull(reader.next());
+
+      assertNull(new BulkDocumentReader(new StringReader("  \n ")).next());
+   }
+
+   @Test
+   public void testMalformedJSONArray() throws Exception {
+      BulkDocumentReader reader = new BulkDocumentReader(new StringReader("[{\"name\": \"Chimay\"}, {\"name\": }]"));
+      assertEquals("Chimay", reader.next().getDocument().getString("name"));
+      try {
+         reader.next();
+         fail("JsonParseException should have been raised");
+      } catch (JsonParseException jpe) {
+         assertEquals(1, reader.getIndex());
+      }
+   }
+
+   @Test
+   public void testNDJSONLineWithTrailingContent() throws Exception {
+      BulkDocumentReader reader = new BulkDocumentReader(new StringReader(
+            "{\"name\": \"Chimay\"}  \n{\"name\": \"Orval\"} {\"name\": \"Rochefort\"}\n"));
+      assertEquals("Chimay", reader.next().getDocument().getString("name"));
+      try {
+         reader.next();
+         fail("JsonParseException should have been raised");
+      } catch (JsonParseException jpe) {
+         assertEquals(1, reader.getIndex());
+      }
+
+      reader = new BulkDocumentReader(new StringReader("{\"name\": \"Chimay\"} junk\n"));
+      try {
+         reader.next();
+         fail("JsonParseException should have been raised");
+      } catch (JsonParseException jpe) {
+         assertEquals(0, reader.getIndex());
+      }
+   }
+}
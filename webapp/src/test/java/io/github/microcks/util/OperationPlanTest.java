@@ -0,0 +1,79 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.util;
+
+import io.github.microcks.domain.Operation;
+import io.github.microcks.domain.ParameterConstraint;
+import io.github.microcks.domain.ParameterLocation;
+import io.github.microcks.util.dispatcher.EvaluationOperator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * This is a test case for OperationPlan class.
+ * @author laurent
+ */
+public class OperationPlanTest {
+
+   @Test
+   public void testPlanWithFallback() {
+      Operation operation = new Operation();
+      operation.setName("POST /beer");
+      operation.setDispatcher(DispatchStyles.FALLBACK);
+      operation.setDispatcherRules("{\"dispatcher\": \"JSON_BODY\", \"dispatcherRules\": "
+            + "\"{\\\"exp\\\": \\\"/country\\\", \\\"operator\\\": \\\"equals\\\", \\\"cases\\\": {\\\"Belgium\\\": \\\"Accepted\\\", \\\"default\\\": \\\"Rejected\\\"}}\", "
+            + "\"fallback\": \"Unknown\"}");
+
+      ParameterConstraint constraint = new ParameterConstraint();
+      constraint.setName("x-api-key");
+      constraint.setIn(ParameterLocation.header);
+      constraint.setMustMatchRegexp("^[0-9a-f]+$");
+      operation.addParameterConstraint(constraint);
+
+      OperationPlan plan = new OperationPlan(operation);
+      assertSame(operation, plan.getOperation());
+      assertNotNull(plan.getFallback());
+      assertEquals("Unknown", plan.getFallback().getFallback());
+      assertEquals(DispatchStyles.JSON_BODY, plan.getDispatcher());
+      assertNotNull(plan.getJsonEvaluationSpecification());
+      assertEquals("/country", plan.getJsonEvaluationSpecification().getExp());
+      assertEquals(EvaluationOperator.equals, plan.getJsonEvaluationSpecification().getOperator());
+      assertEquals("/beer", plan.getURIPattern());
+
+      assertEquals(1, plan.getConstraints().size());
+      assertTrue(plan.getConstraints().get(0).getMustMatchPattern().matcher("cafe").matches());
+   }
+
+   @Test
+   public void testPlanWithInvalidRules() {
+      Operation operation = new Operation();
+      operation.setName("GET /beer/{name}");
+      operation.setDispatcher(DispatchStyles.JSON_BODY);
+      operation.setDispatcherRules("not a json");
+
+      OperationPlan plan = new OperationPlan(operation);
+      assertNull(plan.getFallback());
+      assertEquals(DispatchStyles.JSON_BODY, plan.getDispatcher());
+      assertNull(plan.getJsonEvaluationSpecification());
+      assertTrue(plan.getConstraints().isEmpty());
+      assertEquals("/beer/{name}", plan.getURIPattern());
+   }
+}
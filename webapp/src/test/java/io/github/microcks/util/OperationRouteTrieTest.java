@@ -0,0 +1,116 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.util;
+
+import io.github.microcks.domain.Operation;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * This is a test case for OperationRouteTrie class.
+ * @author laurent
+ */
+public class OperationRouteTrieTest {
+
+   @Test
+   public void testResolveWithTemplates() {
+      List<Operation> operations = new ArrayList<>();
+      operations.add(buildOperation("GET /pet/findByStatus", "GET", "/pet/findByStatus"));
+      operations.add(buildOperation("GET /pet/{petId}", "GET", "/pet/1", "/pet/2"));
+      operations.add(buildOperation("GET /pet/{petId}/photos/:photoId", "GET", "/pet/1/photos/2"));
+      operations.add(buildOperation("POST /pet/{petId}", "POST", "/pet/1"));
+
+      OperationRouteTrie trie = new OperationRouteTrie(operations, "GET");
+
+      // Exact resource path matching.
+      OperationRouteTrie.RouteMatch match = trie.resolve("/pet/findByStatus");
+      assertNotNull(match);
+      assertEquals("GET /pet/findByStatus", match.getOperation().getName());
+      assertTrue(match.getURIParts().isEmpty());
+
+      match = trie.resolve("/pet/2");
+      assertEquals("GET /pet/{petId}", match.getOperation().getName());
+      assertEquals("2", match.getURIParts().get("petId"));
+
+      // Template matching with decoding of parts.
+      match = trie.resolve("/pet/my%20pet");
+      assertEquals("GET /pet/{petId}", match.getOperation().getName());
+      assertEquals("my pet", match.getURIParts().get("petId"));
+
+      match = trie.resolve("/pet/3/photos/4/");
+      assertEquals("GET /pet/{petId}/photos/:photoId", match.getOperation().getName());
+      assertEquals("3", match.getURIParts().get("petId"));
+      assertEquals("4", match.getURIParts().get("photoId"));
+      assertEquals("/petId=3/photoId=4", DispatchCriteriaHelper.buildFromPartsMap(match.getURIParts()));
+
+      // Historical loose matching is still available but without parts.
+      match = trie.resolve("/pet/3/comments/4");
+      assertEquals("GET /pet/{petId}", match.getOperation().getName());
+      assertNull(match.getURIParts());
+
+      assertNull(trie.resolve("/store/inventory"));
+   }
+
+   @Test
+   public void testResolveWithLiteralPrecedence() {
+      List<Operation> operations = new ArrayList<>();
+      operations.add(buildOperation("GET /orders/{id}/items", "GET"));
+      operations.add(buildOperation("GET /orders/latest/items", "GET"));
+      operations.add(buildOperation("GET /orders/{id}/status", "GET"));
+
+      OperationRouteTrie trie = new OperationRouteTrie(operations, "GET");
+
+      assertEquals("GET /orders/latest/items", trie.resolve("/orders/latest/items").getOperation().getName());
+      assertEquals("GET /orders/{id}/items", trie.resolve("/orders/123/items").getOperation().getName());
+      // Backtracking from literal to variable segment.
+      assertEquals("GET /orders/{id}/status", trie.resolve("/orders/latest/status").getOperation().getName());
+      assertEquals("latest", trie.resolve("/orders/latest/status").getURIParts().get("id"));
+   }
+
+   @Test
+   public void testResolveTemplateBeforeLoosePattern() {
+      List<Operation> operations = new ArrayList<>();
+      operations.add(buildOperation("GET /orders/{id}", "GET"));
+      operations.add(buildOperation("GET /orders/{id}/items", "GET"));
+
+      OperationRouteTrie trie = new OperationRouteTrie(operations, "GET");
+
+      // Historical scan would have picked the first declared operation as its loose pattern matches too.
+      OperationRouteTrie.RouteMatch match = trie.resolve("/orders/1/items");
+      assertEquals("GET /orders/{id}/items", match.getOperation().getName());
+      assertEquals("1", match.getURIParts().get("id"));
+      // Loose pattern still applies when no template matches.
+      match = trie.resolve("/orders/1/items/2");
+      assertEquals("GET /orders/{id}", match.getOperation().getName());
+      assertNull(match.getURIParts());
+   }
+
+   private Operation buildOperation(String name, String method, String... resourcePaths) {
+      Operation operation = new Operation();
+      operation.setName(name);
+      operation.setMethod(method);
+      operation.setResourcePaths(new ArrayList<>(List.of(resourcePaths)));
+      return operation;
+   }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.util;
+
+import io.github.microcks.domain.Header;
+import io.github.microcks.domain.Response;
+
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * This is a test case for PreparedResponse class.
+ * @author laurent
+ */
+public class PreparedResponseTest {
+
+   @Test
+   public void testStaticResponse() {
+      Response response = new Response();
+      response.setStatus("201");
+      response.setMediaType("application/json");
+      response.setContent("{\"name\": \"Chimay\"}");
+      Header location = new Header();
+      location.setName("Location");
+      location.setValues(new HashSet<>(Arrays.asList("/beer/Chimay")));
+      Header cache = new Header();
+      cache.setName("Cache-Control");
+      cache.setValues(new HashSet<>(Arrays.asList("no-cache")));
+      response.addHeader(location);
+      response.addHeader(cache);
+
+      PreparedResponse prepared = new PreparedResponse(response);
+      assertEquals(HttpStatus.CREATED, prepared.getStatus());
+      assertFalse(prepared.isTemplated());
+      assertArrayEquals("{\"name\": \"Chimay\"}".getBytes(StandardCharsets.UTF_8), prepared.getBody());
+      assertEquals("/beer/Chimay", prepared.getLocation());
+
+      HttpHeaders headers = prepared.copyHeaders();
+      assertEquals(MediaType.valueOf("application/json;charset=UTF-8"), headers.getContentType());
+      assertEquals("no-cache", headers.getFirst("Cache-Control"));
+      assertFalse(headers.containsKey("Location"));
+
+      // Copies are independent from prepared response.
+      headers.add("Cache-Control", "no-store");
+      assertEquals(1, prepared.copyHeaders().get("Cache-Control").size());
+   }
+
+   @Test
+   public void testTemplatedResponse() {
+      Response response = new Response();
+      response.setContent("{\"id\": \"{{ uuid() }}\"}");
+
+      PreparedResponse prepared = new PreparedResponse(response);
+      assertEquals(HttpStatus.OK, prepared.getStatus());
+      assertNull(prepared.getContentType());
+      assertTrue(prepared.isTemplated());
+      assertNull(prepared.getBody());
+   }
+
+   @Test
+   public void testLenientResponse() {
+      Response response = new Response();
+      response.setStatus("");
+      response.setMediaType("not a media type");
+      response.setContent("<soap:Envelope/>");
+
+      // Status and media type are not needed for preparing body.
+      PreparedResponse prepared = new PreparedResponse(response);
+      assertFalse(prepared.isTemplated());
+      assertArrayEquals("<soap:Envelope/>".getBytes(StandardCharsets.UTF_8), prepared.getBody());
+      assertEquals(HttpStatus.OK, prepared.getStatus());
+      try {
+         prepared.getContentType();
+         fail("Invalid media type should have been reported on access");
+      } catch (IllegalArgumentException iae) {
+         // Expected.
+      }
+   }
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.util;
+
+import io.github.microcks.domain.Operation;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * This is a test case for SoapOperationReader and SoapOperationIndex classes.
+ * @author laurent
+ */
+public class SoapOperationReaderTest {
+
+   private static final String ENVELOPE_START = "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\">\n"
+         + "   <soapenv:Header><wsa:Action xmlns:wsa=\"http://www.w3.org/2005/08/addressing\">sayHello</wsa:Action></soapenv:Header>\n"
+         + "   <soapenv:Body>\n";
+   private static final String ENVELOPE_END = "   </soapenv:Body>\n</soapenv:Envelope>";
+
+   @Test
+   public void testExtractOperationName() {
+      String payload = ENVELOPE_START
+            + "      <hel:sayHello-World xmlns:hel=\"http://www.example.com/hello\">\n"
+            + "         <name>Karla</name>\n"
+            + "      </hel:sayHello-World>\n"
+            + ENVELOPE_END;
+      assertEquals("sayHello-World", SoapOperationReader.extractOperationName(payload));
+
+      // Reading stops at first body child, whatever follows.
+      assertEquals("sayHello", SoapOperationReader.extractOperationName(ENVELOPE_START + "<sayHello><name>"));
+
+      assertNull(SoapOperationReader.extractOperationName(ENVELOPE_START + ENVELOPE_END));
+      assertNull(SoapOperationReader.extractOperationName("not xml"));
+   }
+
+   @Test
+   public void testLargePayload() {
+      StringBuilder payload = new StringBuilder(ENVELOPE_START).append("<hel:sayHello xmlns:hel=\"http://www.example.com/hello\">");
+      for (int i = 0; i < 100000; i++) {
+         payload.append("<name>Karla ").append(i).append("</name>");
+      }
+      payload.append("</hel:sayHello>").append(ENVELOPE_END);
+
+      assertEquals("sayHello", SoapOperationReader.extractOperationName(payload.toString()));
+      assertTrue(SoapOperationReader.hasPayloadCorrectStructureForOperation(payload.toString(), "sayHello"));
+   }
+
+   @Test
+   public void testPayloadStructure() {
+      String payload = ENVELOPE_START + "<hel:sayHelloWorld xmlns:hel=\"http://www.example.com/hello\"/>" + ENVELOPE_END;
+      assertTrue(SoapOperationReader.hasPayloadCorrectStructureForOperation(payload, "sayHelloWorld"));
+      assertFalse(SoapOperationReader.hasPayloadCorrectStructureForOperation(payload, "sayHello"));
+
+      payload = ENVELOPE_START + "<sayHello/><sayHello/>" + ENVELOPE_END;
+      assertFalse(SoapOperationReader.hasPayloadCorrectStructureForOperation(payload, "sayHello"));
+   }
+
+   @Test
+   public void testOperationIndex() {
+      Operation first = new Operation();
+      first.setName("sayHello");
+      first.setInputName("sayHelloRequest");
+      first.setAction("http://www.example.com/hello/sayHello");
+      Operation second = new Operation();
+      second.setName("sayHelloRequest");
+      second.setAction("http://www.example.com/hello/sayHello");
+
+      SoapOperationIndex index = new SoapOperationIndex(Arrays.asList(first, second));
+      assertSame(first, index.findByAction("http://www.example.com/hello/sayHello"));
+      assertSame(first, index.findByName("sayHelloRequest"));
+      assertSame(first, index.findByName("sayHello"));
+      assertNull(index.findByName("sayGoodbye"));
+   }
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.util.dispatcher;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * This is a test case for CompiledDispatchCases class.
+ * @author laurent
+ */
+public class CompiledDispatchCasesTest {
+
+   @Test
+   public void testRangeCases() {
+      DispatchCases cases = new DispatchCases();
+      cases.put("[0;10[", "Low");
+      cases.put("[10;20]", "Medium");
+      cases.put("]20;100]", "High");
+      cases.put("]100;1000[", "Very high");
+      cases.put("[5;8]", "Nested");
+      cases.put("[foo;bar]", "Invalid");
+      cases.put("default", "Unknown");
+
+      CompiledDispatchCases compiled = new CompiledDispatchCases(buildSpecification(EvaluationOperator.range, cases));
+      assertEquals("Low", compiled.findRangeCase(0));
+      assertEquals("Low", compiled.findRangeCase(9.99));
+      assertEquals("Medium", compiled.findRangeCase(10));
+      assertEquals("Medium", compiled.findRangeCase(20));
+      assertEquals("High", compiled.findRangeCase(20.5));
+      assertEquals("High", compiled.findRangeCase(100));
+      assertEquals("Very high", compiled.findRangeCase(999));
+      assertEquals("Unknown", compiled.findRangeCase(1000));
+      assertEquals("Unknown", compiled.findRangeCase(-1));
+
+      // Overlapping ranges: the one with greatest lower bound wins, enclosing one still matches around.
+      assertEquals("Nested", compiled.findRangeCase(6));
+      assertEquals("Low", compiled.findRangeCase(4));
+      assertEquals("Low", compiled.findRangeCase(9));
+   }
+
+   @Test
+   public void testRegexpCases() {
+      DispatchCases cases = new DispatchCases();
+      cases.put(".*[Bb]eer.*", "Beer");
+      cases.put("(", "Invalid");
+      cases.put("default", "Other");
+
+      CompiledDispatchCases compiled = new CompiledDispatchCases(buildSpecification(EvaluationOperator.regexp, cases));
+      assertEquals("Beer", compiled.findRegexpCase("Belgian beers"));
+      assertEquals("Other", compiled.findRegexpCase("Belgian waffles"));
+   }
+
+   private static JsonEvaluationSpecification buildSpecification(EvaluationOperator operator, DispatchCases cases) {
+      JsonEvaluationSpecification specification = new JsonEvaluationSpecification();
+      specification.setExp("/value");
+      specification.setOperator(operator);
+      specification.setCases(cases);
+      return specification;
+   }
+}
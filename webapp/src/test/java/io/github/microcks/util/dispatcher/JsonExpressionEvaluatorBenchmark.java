@@ -0,0 +1,109 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.util.dispatcher;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A JMH benchmark comparing tree and streaming evaluation of a JSON Pointer expression on 1KB, 100KB and 5MB
+ * payloads. Evaluated field is placed after a list of items so that both modes have to read a significant part
+ * of the payload. This is not run by unit tests; launch it using the {@code main()} method from the test classpath.
+ * @author laurent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonExpressionEvaluatorBenchmark {
+
+   private static final ObjectMapper MAPPER = new ObjectMapper();
+
+   @Param({"1KB", "100KB", "5MB"})
+   public String payloadSize;
+
+   private String payload;
+   private JsonEvaluationSpecification specification;
+
+   @Setup
+   public void setup() {
+      int targetSize = parseSize(payloadSize);
+      StringBuilder builder = new StringBuilder(targetSize + 128);
+      builder.append("{\"items\": [");
+      int i = 0;
+      while (builder.length() < targetSize) {
+         if (i > 0) {
+            builder.append(", ");
+         }
+         builder.append("{\"id\": ").append(i).append(", \"name\": \"Beer ").append(i)
+               .append("\", \"tags\": [\"belgian\", \"trappist\"]}");
+         i++;
+      }
+      builder.append("], \"country\": \"Belgium\"}");
+      payload = builder.toString();
+
+      DispatchCases cases = new DispatchCases();
+      cases.put("Belgium", "OK");
+      cases.put("default", "Bad");
+      specification = new JsonEvaluationSpecification();
+      specification.setExp("/country");
+      specification.setOperator(EvaluationOperator.equals);
+      specification.setCases(cases);
+   }
+
+   @Benchmark
+   public String treeEvaluation() throws Exception {
+      return JsonExpressionEvaluator.evaluate(MAPPER.readTree(payload), specification);
+   }
+
+   @Benchmark
+   public String streamingEvaluation() throws Exception {
+      return JsonExpressionEvaluator.evaluate(payload, specification);
+   }
+
+   private static int parseSize(String size) {
+      if (size.endsWith("MB")) {
+         return Integer.parseInt(size.substring(0, size.length() - 2)) * 1024 * 1024;
+      }
+      return Integer.parseInt(size.substring(0, size.length() - 2)) * 1024;
+   }
+
+   public static void main(String[] args) throws RunnerException {
+      new Runner(new OptionsBuilder()
+            .include(JsonExpressionEvaluatorBenchmark.class.getSimpleName())
+            .build()).run();
+   }
+}
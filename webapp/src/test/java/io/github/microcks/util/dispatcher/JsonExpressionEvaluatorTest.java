@@ -24,6 +24,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 /**
  * This is a test case for JsonExpressionEvaluator.
  * @author laurent
@@ -179,4 +180,48 @@ public class JsonExpressionEvaluatorTest {
       result = JsonExpressionEvaluator.evaluate(ENGLISH_BEER, specifications);
       assertEquals("Normal", result);
    }
+
+   @Test
+   public void testStreamingPointerValue() throws Exception {
+      String json = "{\"beers\": [{\"name\": \"Chimay\", \"rating\": 4.5, \"tags\": [\"trappist\"]}, "
+            + "{\"name\": \"Orval\", \"alcohol\": 6, \"trappist\": true, \"brewer\": null}], \"country\": \"Belgium\"}";
+
+      assertEquals("Belgium", JsonExpressionEvaluator.readPointerValue(json, "/country"));
+      assertEquals("Chimay", JsonExpressionEvaluator.readPointerValue(json, "/beers/0/name"));
+      assertEquals("Orval", JsonExpressionEvaluator.readPointerValue(json, "/beers/1/name"));
+      assertEquals("trappist", JsonExpressionEvaluator.readPointerValue(json, "/beers/0/tags/0"));
+      assertEquals("4.5", JsonExpressionEvaluator.readPointerValue(json, "/beers/0/rating"));
+      assertEquals("6", JsonExpressionEvaluator.readPointerValue(json, "/beers/1/alcohol"));
+      assertEquals("true", JsonExpressionEvaluator.readPointerValue(json, "/beers/1/trappist"));
+      assertEquals("null", JsonExpressionEvaluator.readPointerValue(json, "/beers/1/brewer"));
+
+      // Missing, out of bounds and container targets are rendered as empty text like tree mode.
+      assertEquals("", JsonExpressionEvaluator.readPointerValue(json, "/beers/2/name"));
+      assertEquals("", JsonExpressionEvaluator.readPointerValue(json, "/beers/name"));
+      assertEquals("", JsonExpressionEvaluator.readPointerValue(json, "/country/name"));
+      assertEquals("", JsonExpressionEvaluator.readPointerValue(json, "/brewery"));
+      assertEquals("", JsonExpressionEvaluator.readPointerValue(json, "/beers"));
+
+      // Target reached before trailing content is read.
+      assertEquals("Belgium", JsonExpressionEvaluator.readPointerValue("{\"country\": \"Belgium\", ", "/country"));
+   }
+
+   @Test
+   public void testStreamingMalformedPayload() {
+      DispatchCases cases = new DispatchCases();
+      cases.put("Belgium", "OK");
+      cases.put("default", "Bad");
+
+      JsonEvaluationSpecification specifications = new JsonEvaluationSpecification();
+      specifications.setExp("/country");
+      specifications.setOperator(EvaluationOperator.equals);
+      specifications.setCases(cases);
+
+      try {
+         JsonExpressionEvaluator.evaluate("{\"name\": oops", specifications);
+         fail("JsonMappingException should have been raised");
+      } catch (JsonMappingException jme) {
+         // Expected.
+      }
+   }
 }
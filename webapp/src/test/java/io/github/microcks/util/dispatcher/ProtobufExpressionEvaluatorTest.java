@@ -0,0 +1,146 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.util.dispatcher;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.DescriptorProtos.DescriptorProto;
+import com.google.protobuf.DescriptorProtos.EnumDescriptorProto;
+import com.google.protobuf.DescriptorProtos.EnumValueDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.DescriptorProtos.MessageOptions;
+import com.google.protobuf.Descriptors;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.TimestampProto;
+import com.google.protobuf.util.JsonFormat;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * This is a test case for ProtobufExpressionEvaluator class.
+ * @author laurent
+ */
+public class ProtobufExpressionEvaluatorTest {
+
+   private static final String BEER_JSON = "{\"name\": \"Chimay\", \"alcohol\": 9.0, \"rating\": 4.3,"
+         + " \"stock\": \"9007199254740993\", \"bottles\": 4294967295, \"country\": \"BELGIUM\", \"label\": \"Q2hpbWF5\","
+         + " \"tags\": [\"trappist\", \"blue\"], \"ingredients\": [{\"name\": \"hops\"}, {\"name\": \"malt\"}],"
+         + " \"prices\": {\"bottle\": \"3\", \"keg\": \"120\"}, \"brewedAt\": \"2021-05-20T10:00:00Z\"}";
+
+   @Test
+   public void testSameValuesAsJsonTree() throws Exception {
+      Descriptors.Descriptor beerType = buildBeerDescriptor();
+      DynamicMessage.Builder builder = DynamicMessage.newBuilder(beerType);
+      JsonFormat.parser().merge(BEER_JSON, builder);
+      DynamicMessage beer = builder.build();
+
+      JsonNode tree = new ObjectMapper().readTree(JsonFormat.printer().print(beer));
+      String[] pointers = { "/name", "/alcohol", "/rating", "/stock", "/bottles", "/country", "/label",
+            "/tags", "/tags/1", "/tags/2", "/ingredients/0/name", "/ingredients/1/name", "/ingredients/name",
+            "/prices/keg", "/prices/cask", "/brewedAt", "/brewedAt/seconds", "/brewery", "/name/first", "" };
+      for (String pointer : pointers) {
+         assertEquals("Pointer " + pointer, tree.at(pointer).asText(),
+               ProtobufExpressionEvaluator.readPointerValue(beer, pointer));
+      }
+      // Proto field names are also accepted.
+      assertEquals("2021-05-20T10:00:00Z", ProtobufExpressionEvaluator.readPointerValue(beer, "/brewed_at"));
+      // Default values are not printed as Json, so they are missing.
+      assertEquals("", ProtobufExpressionEvaluator.readPointerValue(DynamicMessage.getDefaultInstance(beerType), "/alcohol"));
+   }
+
+   @Test
+   public void testOperators() throws Exception {
+      DynamicMessage.Builder builder = DynamicMessage.newBuilder(buildBeerDescriptor());
+      JsonFormat.parser().merge(BEER_JSON, builder);
+      DynamicMessage beer = builder.build();
+
+      DispatchCases cases = new DispatchCases();
+      cases.put("[0;2]", "Few");
+      cases.put("]2;10]", "Lot of");
+      cases.put("default", "None");
+      JsonEvaluationSpecification specification = new JsonEvaluationSpecification();
+      specification.setExp("/ingredients");
+      specification.setOperator(EvaluationOperator.size);
+      specification.setCases(cases);
+      CompiledDispatchCases compiledCases = new CompiledDispatchCases(specification);
+      assertEquals("Few", ProtobufExpressionEvaluator.evaluate(beer, specification, compiledCases));
+      specification.setExp("/prices");
+      assertEquals("None", ProtobufExpressionEvaluator.evaluate(beer, specification, compiledCases));
+
+      specification.setExp("/alcohol");
+      specification.setOperator(EvaluationOperator.range);
+      compiledCases = new CompiledDispatchCases(specification);
+      assertEquals("Lot of", ProtobufExpressionEvaluator.evaluate(beer, specification, compiledCases));
+
+      cases = new DispatchCases();
+      cases.put("Chimay", "Trappist");
+      cases.put("default", "Other");
+      specification.setExp("/name");
+      specification.setOperator(EvaluationOperator.equals);
+      specification.setCases(cases);
+      compiledCases = new CompiledDispatchCases(specification);
+      assertEquals("Trappist", ProtobufExpressionEvaluator.evaluate(beer, specification, compiledCases));
+   }
+
+   private static Descriptors.Descriptor buildBeerDescriptor() throws Exception {
+      DescriptorProto ingredient = DescriptorProto.newBuilder().setName("Ingredient")
+            .addField(field("name", 1, FieldDescriptorProto.Type.TYPE_STRING)).build();
+      DescriptorProto pricesEntry = DescriptorProto.newBuilder().setName("PricesEntry")
+            .setOptions(MessageOptions.newBuilder().setMapEntry(true))
+            .addField(field("key", 1, FieldDescriptorProto.Type.TYPE_STRING))
+            .addField(field("value", 2, FieldDescriptorProto.Type.TYPE_INT64)).build();
+      DescriptorProto beer = DescriptorProto.newBuilder().setName("Beer")
+            .addNestedType(ingredient)
+            .addNestedType(pricesEntry)
+            .addEnumType(EnumDescriptorProto.newBuilder().setName("Country")
+                  .addValue(EnumValueDescriptorProto.newBuilder().setName("UNKNOWN").setNumber(0))
+                  .addValue(EnumValueDescriptorProto.newBuilder().setName("BELGIUM").setNumber(1)))
+            .addField(field("name", 1, FieldDescriptorProto.Type.TYPE_STRING))
+            .addField(field("alcohol", 2, FieldDescriptorProto.Type.TYPE_DOUBLE))
+            .addField(field("rating", 3, FieldDescriptorProto.Type.TYPE_FLOAT))
+            .addField(field("stock", 4, FieldDescriptorProto.Type.TYPE_UINT64))
+            .addField(field("bottles", 5, FieldDescriptorProto.Type.TYPE_UINT32))
+            .addField(field("country", 6, FieldDescriptorProto.Type.TYPE_ENUM).setTypeName("Beer.Country"))
+            .addField(field("label", 7, FieldDescriptorProto.Type.TYPE_BYTES))
+            .addField(field("tags", 8, FieldDescriptorProto.Type.TYPE_STRING).setLabel(FieldDescriptorProto.Label.LABEL_REPEATED))
+            .addField(field("ingredients", 9, FieldDescriptorProto.Type.TYPE_MESSAGE).setTypeName("Beer.Ingredient")
+                  .setLabel(FieldDescriptorProto.Label.LABEL_REPEATED))
+            .addField(field("prices", 10, FieldDescriptorProto.Type.TYPE_MESSAGE).setTypeName("Beer.PricesEntry")
+                  .setLabel(FieldDescriptorProto.Label.LABEL_REPEATED))
+            .addField(field("brewed_at", 11, FieldDescriptorProto.Type.TYPE_MESSAGE).setTypeName(".google.protobuf.Timestamp"))
+            .build();
+      FileDescriptorProto file = FileDescriptorProto.newBuilder().setName("beer.proto").setSyntax("proto3")
+            .addDependency("google/protobuf/timestamp.proto").addMessageType(beer).build();
+      return Descriptors.FileDescriptor.buildFrom(file,
+            new Descriptors.FileDescriptor[] { TimestampProto.getDescriptor() }).findMessageTypeByName("Beer");
+   }
+
+   private static FieldDescriptorProto.Builder field(String name, int number, FieldDescriptorProto.Type type) {
+      return FieldDescriptorProto.newBuilder().setName(name).setNumber(number).setType(type)
+            .setLabel(FieldDescriptorProto.Label.LABEL_OPTIONAL).setJsonName(toJsonName(name));
+   }
+
+   private static String toJsonName(String name) {
+      int underscore = name.indexOf('_');
+      return underscore < 0 ? name
+            : name.substring(0, underscore) + Character.toUpperCase(name.charAt(underscore + 1)) + name.substring(underscore + 2);
+   }
+}
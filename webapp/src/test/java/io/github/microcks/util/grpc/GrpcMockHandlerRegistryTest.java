@@ -0,0 +1,152 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.util.grpc;
+
+import io.github.microcks.cache.GrpcMethodCache;
+import io.github.microcks.cache.ServiceCache;
+import io.github.microcks.domain.Operation;
+import io.github.microcks.domain.Resource;
+import io.github.microcks.domain.ResourceType;
+import io.github.microcks.domain.Service;
+import io.github.microcks.event.ChangeType;
+import io.github.microcks.event.ServiceChangeEvent;
+import io.github.microcks.repository.ResourceRepository;
+import io.github.microcks.web.GrpcServerCallHandler;
+
+import com.google.protobuf.DescriptorProtos;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerMethodDefinition;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * This is a test case for GrpcMockHandlerRegistry class.
+ * @author laurent
+ */
+public class GrpcMockHandlerRegistryTest {
+
+   @Test
+   public void testMemoizedDefinitions() {
+      AtomicInteger serviceLookups = new AtomicInteger();
+      GrpcMockHandlerRegistry registry = new GrpcMockHandlerRegistry();
+      ReflectionTestUtils.setField(registry, "serverCallHandler", new GrpcServerCallHandler());
+      ReflectionTestUtils.setField(registry, "grpcMethodCache", buildMethodCache(buildService(), serviceLookups));
+
+      ServerMethodDefinition<?, ?> definition = registry.lookupMethod("io.github.microcks.grpc.hello.v1.HelloService/greeting", null);
+      assertNotNull(definition);
+      assertEquals("io.github.microcks.grpc.hello.v1.HelloService/greeting", definition.getMethodDescriptor().getFullMethodName());
+      assertSame(definition, registry.lookupMethod("io.github.microcks.grpc.hello.v1.HelloService/greeting", null));
+
+      // Unknown services and operations have no definition.
+      assertNull(registry.lookupMethod("io.github.microcks.grpc.goodbye.v1.GoodbyeService/bye", null));
+      assertNull(registry.lookupMethod("io.github.microcks.grpc.hello.v1.HelloService/bye", null));
+      assertNull(registry.lookupMethod("io.github.microcks.grpc.goodbye.v1.GoodbyeService/bye", null));
+      // One lookup per resolution (3 methods) plus one per check of cached method (4 method cache calls).
+      assertEquals(7, serviceLookups.get());
+
+      // Operation without descriptor gets a unary definition that is not kept.
+      ServerMethodDefinition<?, ?> farewell = registry.lookupMethod("io.github.microcks.grpc.hello.v1.HelloService/farewell", null);
+      assertNotNull(farewell);
+      assertNotSame(farewell, registry.lookupMethod("io.github.microcks.grpc.hello.v1.HelloService/farewell", null));
+
+      registry.onApplicationEvent(new ServiceChangeEvent(this, "hello-v1", ChangeType.DELETED));
+      assertNotSame(definition, registry.lookupMethod("io.github.microcks.grpc.hello.v1.HelloService/greeting", null));
+   }
+
+   @Test
+   public void testEvictionDuringLookup() {
+      AtomicBoolean evictDuringLookup = new AtomicBoolean(true);
+      GrpcMockHandlerRegistry registry = new GrpcMockHandlerRegistry() {
+         @Override
+         protected ServerCallHandler<byte[], byte[]> mockServerCallHandler(String fullMethodName) {
+            if (evictDuringLookup.getAndSet(false)) {
+               // Service is changed while definition is being built.
+               onApplicationEvent(new ServiceChangeEvent(this, "hello-v1", ChangeType.UPDATED));
+            }
+            return super.mockServerCallHandler(fullMethodName);
+         }
+      };
+      ReflectionTestUtils.setField(registry, "serverCallHandler", new GrpcServerCallHandler());
+      ReflectionTestUtils.setField(registry, "grpcMethodCache", buildMethodCache(buildService(), new AtomicInteger()));
+
+      ServerMethodDefinition<?, ?> definition = registry.lookupMethod("io.github.microcks.grpc.hello.v1.HelloService/greeting", null);
+      assertNotNull(definition);
+
+      // Definition built concurrently to eviction has not been kept, next one is.
+      ServerMethodDefinition<?, ?> next = registry.lookupMethod("io.github.microcks.grpc.hello.v1.HelloService/greeting", null);
+      assertNotSame(definition, next);
+      assertSame(next, registry.lookupMethod("io.github.microcks.grpc.hello.v1.HelloService/greeting", null));
+   }
+
+   private Service buildService() {
+      Service service = new Service();
+      service.setId("hello-v1");
+      service.setName("HelloService");
+      service.setVersion("v1");
+      Operation operation = new Operation();
+      operation.setName("greeting");
+      service.addOperation(operation);
+      operation = new Operation();
+      operation.setName("farewell");
+      service.addOperation(operation);
+      return service;
+   }
+
+   private GrpcMethodCache buildMethodCache(Service service, AtomicInteger serviceLookups) {
+      ServiceCache serviceCache = new ServiceCache() {
+         @Override
+         public Service getService(String name, String version) {
+            serviceLookups.incrementAndGet();
+            return "HelloService".equals(name) ? service : null;
+         }
+      };
+
+      // Binary descriptor only holds the greeting method.
+      DescriptorProtos.FileDescriptorProto file = DescriptorProtos.FileDescriptorProto.newBuilder()
+            .setName("hello.proto").setPackage("io.github.microcks.grpc.hello.v1")
+            .addMessageType(DescriptorProtos.DescriptorProto.newBuilder().setName("HelloRequest"))
+            .addMessageType(DescriptorProtos.DescriptorProto.newBuilder().setName("HelloResponse"))
+            .addService(DescriptorProtos.ServiceDescriptorProto.newBuilder().setName("HelloService")
+                  .addMethod(DescriptorProtos.MethodDescriptorProto.newBuilder().setName("greeting")
+                        .setInputType(".io.github.microcks.grpc.hello.v1.HelloRequest")
+                        .setOutputType(".io.github.microcks.grpc.hello.v1.HelloResponse")))
+            .build();
+      Resource resource = new Resource();
+      resource.setType(ResourceType.PROTOBUF_DESCRIPTOR);
+      resource.setContent(Base64.getEncoder().encodeToString(
+            DescriptorProtos.FileDescriptorSet.newBuilder().addFile(file).build().toByteArray()));
+
+      GrpcMethodCache methodCache = new GrpcMethodCache();
+      ReflectionTestUtils.setField(methodCache, "serviceCache", serviceCache);
+      ReflectionTestUtils.setField(methodCache, "resourceRepository", Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class[] { ResourceRepository.class }, (proxy, m, args) -> Collections.singletonList(resource)));
+      ReflectionTestUtils.setField(methodCache, "meterRegistry", new SimpleMeterRegistry());
+      methodCache.initialize();
+      return methodCache;
+   }
+}
@@ -0,0 +1,72 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.util.grpc;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static org.junit.Assert.*;
+
+/**
+ * This is a test case for GrpcServerStarter class.
+ * @author laurent
+ */
+public class GrpcServerStarterTest {
+
+   @Test
+   public void testCreateExecutor() throws Exception {
+      ExecutorService executor = GrpcServerStarter.createExecutor(GrpcServerStarter.EXECUTOR_FIXED, 3);
+      try {
+         assertTrue(executor instanceof ThreadPoolExecutor);
+         assertEquals(3, ((ThreadPoolExecutor) executor).getMaximumPoolSize());
+         Future<String> name = executor.submit(() -> Thread.currentThread().getName());
+         assertTrue(name.get().startsWith("grpc-mock-executor-"));
+      } finally {
+         executor.shutdown();
+      }
+
+      // Cached pool is unbounded.
+      executor = GrpcServerStarter.createExecutor(GrpcServerStarter.EXECUTOR_CACHED, 3);
+      try {
+         assertEquals(Integer.MAX_VALUE, ((ThreadPoolExecutor) executor).getMaximumPoolSize());
+         assertTrue(executor.submit(() -> Thread.currentThread().getName()).get().startsWith("grpc-mock-executor-"));
+      } finally {
+         executor.shutdown();
+      }
+
+      // Unknown types fall back to a fixed pool sized from processors.
+      executor = GrpcServerStarter.createExecutor("unknown", 0);
+      try {
+         assertEquals(2 * Runtime.getRuntime().availableProcessors(), ((ThreadPoolExecutor) executor).getMaximumPoolSize());
+      } finally {
+         executor.shutdown();
+      }
+
+      // Virtual threads are used only when JVM supports them.
+      executor = GrpcServerStarter.createExecutor(GrpcServerStarter.EXECUTOR_VIRTUAL, 3);
+      try {
+         assertEquals("done", executor.submit(() -> "done").get());
+      } finally {
+         executor.shutdown();
+      }
+   }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.util.soapui;
+
+import io.github.microcks.util.el.ParsedBody;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A JMH benchmark of the SOAP QUERY_MATCH dispatching path: evaluation of SoapUI XPath rules against a request
+ * envelope, comparing the per-request build of matcher and parser with the cached matcher and shared parsed body.
+ * This is not run by unit tests; launch it using the {@code main()} method from the test classpath.
+ * @author laurent
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class SoapUIXPathBuilderBenchmark {
+
+   private static final String RULES = "declare namespace ser='http://www.example.com/hello';\n"
+         + "//ser:sayHello/name";
+
+   private static final String PAYLOAD = "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\""
+         + " xmlns:hel=\"http://www.example.com/hello\">\n"
+         + "   <soapenv:Header/>\n"
+         + "   <soapenv:Body>\n"
+         + "      <hel:sayHello>\n"
+         + "         <name>Karla</name>\n"
+         + "      </hel:sayHello>\n"
+         + "   </soapenv:Body>\n"
+         + "</soapenv:Envelope>";
+
+   @Benchmark
+   public String buildPerRequest() throws Exception {
+      DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+      factory.setNamespaceAware(true);
+      return SoapUIXPathBuilder.buildXPathMatcherFromRules(RULES)
+            .evaluate(factory.newDocumentBuilder().parse(new InputSource(new StringReader(PAYLOAD))));
+   }
+
+   @Benchmark
+   public String cachedMatcher() throws Exception {
+      return SoapUIXPathBuilder.getXPathMatcherFromRules(RULES).evaluate(new ParsedBody(PAYLOAD).getDocument());
+   }
+
+   public static void main(String[] args) throws RunnerException {
+      new Runner(new OptionsBuilder()
+            .include(SoapUIXPathBuilderBenchmark.class.getSimpleName())
+            .build()).run();
+   }
+}
@@ -0,0 +1,165 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.web;
+
+import io.github.microcks.cache.ServiceCache;
+import io.github.microcks.domain.GenericResource;
+import io.github.microcks.domain.Operation;
+import io.github.microcks.domain.Service;
+import io.github.microcks.domain.ServiceType;
+import io.github.microcks.repository.InMemoryGenericResourceStore;
+
+import org.bson.Document;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * This is a test case for DynamicMockRestController class.
+ * @author laurent
+ */
+public class DynamicMockRestControllerTest {
+
+   private MockDelayScheduler mockDelayScheduler;
+
+   private MockMvc mockMvc;
+
+   private List<String> ids = new ArrayList<>();
+
+   @Before
+   public void setUp() {
+      Service service = new Service();
+      service.setId("pastries-1");
+      service.setName("pastries");
+      service.setVersion("1.0");
+      service.setType(ServiceType.GENERIC_REST);
+      Operation operation = new Operation();
+      operation.setName("GET /pastry");
+      service.addOperation(operation);
+      operation = new Operation();
+      operation.setName("POST /pastry");
+      service.addOperation(operation);
+      ServiceCache serviceCache = new ServiceCache() {
+         @Override
+         public Service getService(String name, String version) {
+            return "pastries".equals(name) && "1.0".equals(version) ? service : null;
+         }
+      };
+
+      InMemoryGenericResourceStore store = new InMemoryGenericResourceStore();
+      ReflectionTestUtils.setField(store, "writeBehind", false);
+      store.initialize();
+      for (String name : new String[] {"Tartelette Fraise", "Eclair Cafe", "Millefeuille"}) {
+         GenericResource resource = new GenericResource();
+         resource.setServiceId("pastries-1");
+         resource.setPayload(new Document("name", name));
+         ids.add(store.save(resource).getId());
+      }
+
+      StaticApplicationContext applicationContext = new StaticApplicationContext();
+      applicationContext.refresh();
+      mockDelayScheduler = new MockDelayScheduler();
+      mockDelayScheduler.initialize();
+
+      DynamicMockRestController controller = new DynamicMockRestController();
+      ReflectionTestUtils.setField(controller, "serviceCache", serviceCache);
+      ReflectionTestUtils.setField(controller, "genericResourceStore", store);
+      ReflectionTestUtils.setField(controller, "applicationContext", applicationContext);
+      ReflectionTestUtils.setField(controller, "mockDelayScheduler", mockDelayScheduler);
+      mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+   }
+
+   @After
+   public void tearDown() {
+      mockDelayScheduler.shutdown();
+   }
+
+   @Test
+   public void testStreamedPages() throws Exception {
+      MvcResult result = mockMvc.perform(get("/dynarest/pastries/1.0/pastry?size=2"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+      mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(header().string(MockHeaders.CONTINUATION_TOKEN_HEADER, ids.get(1)))
+            .andExpect(content().contentType("application/json"))
+            .andExpect(content().json("[{\"name\": \"Tartelette Fraise\", \"id\": \"" + ids.get(0) + "\"}, "
+                  + "{\"name\": \"Eclair Cafe\", \"id\": \"" + ids.get(1) + "\"}]", true));
+
+      // Last page has no continuation token.
+      result = mockMvc.perform(get("/dynarest/pastries/1.0/pastry?size=2&after=" + ids.get(1)))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+      mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist(MockHeaders.CONTINUATION_TOKEN_HEADER))
+            .andExpect(content().json("[{\"name\": \"Millefeuille\", \"id\": \"" + ids.get(2) + "\"}]", true));
+
+      mockMvc.perform(get("/dynarest/pastries/1.0/pastry?after=unknown"))
+            .andExpect(status().isBadRequest());
+   }
+
+   @Test
+   public void testDelayedStreamedPage() throws Exception {
+      MvcResult result = mockMvc.perform(get("/dynarest/pastries/1.0/pastry?size=1&delay=50"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+      // Delayed response is released as a StreamingResponseBody that is then written asynchronously.
+      result = mockMvc.perform(asyncDispatch(result))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+      mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(header().string(MockHeaders.CONTINUATION_TOKEN_HEADER, ids.get(0)))
+            .andExpect(content().json("[{\"name\": \"Tartelette Fraise\", \"id\": \"" + ids.get(0) + "\"}]", true));
+   }
+
+   @Test
+   public void testBulkWithUnreadablePayload() throws Exception {
+      // Payload error is reported apart from items ones.
+      mockMvc.perform(post("/dynarest/pastries/1.0/pastry/_bulk")
+                  .contentType("application/json")
+                  .content("[{\"name\": \"Paris-Brest\"}, {\"name\": "))
+            .andExpect(status().isBadRequest())
+            .andExpect(content().json("{\"processed\": 1, \"succeeded\": 1, \"failed\": 0, \"errors\": [], "
+                  + "\"payloadError\": {\"index\": 1}}"));
+
+      mockMvc.perform(post("/dynarest/pastries/1.0/pastry/_bulk")
+                  .contentType("application/json")
+                  .content("[{\"name\": \"Saint-Honore\"}]"))
+            .andExpect(status().isOk())
+            .andExpect(content().json("{\"processed\": 1, \"succeeded\": 1, \"failed\": 0, \"payloadError\": null}"));
+   }
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed to Laurent Broudoux (the "Author") under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. Author licenses this
+ * file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.github.microcks.web;
+
+import org.junit.Test;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * This is a test case for MockDelayScheduler class.
+ * @author laurent
+ */
+public class MockDelaySchedulerTest {
+
+   @Test
+   public void testRespondAfterDelay() throws Exception {
+      MockDelayScheduler scheduler = new MockDelayScheduler();
+      scheduler.initialize();
+      try {
+         long startTime = System.currentTimeMillis();
+
+         // No delay or expired delay: response is returned directly.
+         assertEquals("now", scheduler.respondAfterDelay(startTime, null, () -> "now"));
+         assertEquals("now", scheduler.respondAfterDelay(startTime - 200, 100L, () -> "now"));
+
+         // Remaining delay: a deferred result is completed later.
+         Object result = scheduler.respondAfterDelay(startTime, 100L, () -> "later");
+         assertTrue(result instanceof DeferredResult);
+         DeferredResult<?> deferredResult = (DeferredResult<?>) result;
+         assertFalse(deferredResult.hasResult());
+
+         CountDownLatch latch = new CountDownLatch(1);
+         scheduler.schedule(startTime, 150L, latch::countDown);
+         assertTrue(latch.await(2, TimeUnit.SECONDS));
+         assertTrue(System.currentTimeMillis() - startTime >= 150);
+         assertEquals("later", deferredResult.getResult());
+      } finally {
+         scheduler.shutdown();
+      }
+   }
+}